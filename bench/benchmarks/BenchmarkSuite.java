@@ -0,0 +1,24 @@
+package benchmarks;
+
+/**
+ * Runs every micro benchmark of the hot paths: parsing, transforming,
+ * parsing into CSV and loading.
+ * <p>
+ * Usage: BenchmarkSuite [regex of the benchmarks to run]
+ * <p>
+ * E.g. java -Dbench.time=2000 benchmarks.BenchmarkSuite "Filter|CSV"
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class BenchmarkSuite {
+
+	public static void main(String[] args) {
+		Harness harness = new Harness(args.length > 0 ? args[0] : null);
+
+		ParserBenchmark.run(harness);
+		TransformationBenchmark.run(harness);
+		CSVBenchmark.run(harness);
+		LoaderBenchmark.run(harness);
+	}
+
+}
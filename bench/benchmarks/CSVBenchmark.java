@@ -0,0 +1,46 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import parsers.CSVMapParser;
+import parsers.JSONStringParser;
+
+/**
+ * Measures the parsing of pages of transformed Maps into CSV,
+ * varying the objects per page.
+ * <p>
+ * Usage: CSVBenchmark [regex of the benchmarks to run]
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class CSVBenchmark {
+
+	public static void main(String[] args) {
+		run(new Harness(args.length > 0 ? args[0] : null));
+	}
+
+
+	static void run(Harness harness) {
+		CSVMapParser csv = new CSVMapParser(",");
+		StringBuilder buffer = new StringBuilder();
+
+		for(int objects : new int[] {10, 100, 1000}) {
+			List<Map<String,Object>> page = ParserBenchmark.parse(new JSONStringParser(ParserBenchmark.WANTED)
+					::parseString, SuggestData.generate(objects, 0, 1));
+			String label = "objects=" + objects;
+
+			harness.run("CSVMapParser.parseMaps", label, () -> csv.parseMaps(page));
+			harness.run("CSVMapParser.firstParsing", label, () -> csv.firstParsing(page));
+			harness.run("CSVMapParser.parseMaps into buffer", label, () -> {
+				buffer.setLength(0);
+				try {
+					csv.parseMaps(page, buffer);
+				} catch (IOException e) {} //StringBuilders don't throw
+				return buffer;
+			});
+		}
+	}
+
+}
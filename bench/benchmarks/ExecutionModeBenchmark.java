@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.io.IOException;
+
+import etl.VirtualThreads;
+
+/**
+ * Compares the execution modes of the pipeline at high query counts,
+ * against a local {@link StubSuggestServer} with a high latency so the
+ * reading threads spend most of the time blocked:
+ * <ul>
+ * <li>Platform threads with the default 8 cities read at a time.
+ * <li>Platform threads with a pool as big as the I/O limit.
+ * <li>A virtual thread per city and page, up to the I/O limit at a time.
+ * </ul>
+ * Responses are streamed, so every city read holds its thread until parsed.
+ * On JVMs without virtual threads the last mode runs a platform thread per
+ * task instead, which is reported.
+ * <p>
+ * Usage: ExecutionModeBenchmark [cities] [objects per city] [latency ms] [I/O limit] [rounds]
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class ExecutionModeBenchmark {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int cities = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int records = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		long latency = args.length > 2 ? Long.parseLong(args[2]) : 100;
+		int ioLimit = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+		int rounds = args.length > 4 ? Integer.parseInt(args[4]) : 3;
+		StubSuggestServer server = new StubSuggestServer(records, 10, 2, latency, 0);
+
+		server.start(ioLimit * 2);
+		System.out.printf("%d cities x %d objects, %dms latency, I/O limit %d, virtual threads %s%n", cities,
+				records, latency, ioLimit, VirtualThreads.isAvailable() ? "available" : "not available");
+		try {
+			for(int roundI = 0; roundI < rounds; roundI++) {
+				String round = roundI == 0 ? " (warm-up)" : " (round " + roundI + ")";
+
+				PipelineBenchmark.run(server, cities, 0, true, "platform x8" + round, false, 8);
+				PipelineBenchmark.run(server, cities, 0, true, "platform x" + ioLimit + round, false, ioLimit);
+				PipelineBenchmark.run(server, cities, 0, true, "virtual x" + ioLimit + round, true, ioLimit);
+			}
+		} finally {
+			server.stop();
+		}
+	}
+
+}
@@ -0,0 +1,179 @@
+package benchmarks;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Harness is the class responsible for running the micro benchmarks
+ * of the hot paths and reporting their throughput and allocation rate.
+ * <p>
+ * Every benchmark is run for some warm up iterations, so the JIT compiles
+ * it, and then for some measured iterations of a fixed time, by one or more
+ * threads at the same time. Results are compared with a volatile sink so
+ * the JIT can't discard the work. For each benchmark it reports:
+ * <ul>
+ * <li>The operations per second, mean and standard deviation of the iterations.
+ * <li>The bytes allocated per operation by the threads running it.
+ * <li>The garbage collections and their time during the measured iterations.
+ * </ul>
+ * Configured by the system properties bench.warmup and bench.iterations
+ * (number of iterations) and bench.time (milliseconds per iteration).
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class Harness {
+
+	private final int warmupIterations = Integer.getInteger("bench.warmup", 3);
+	private final int iterations = Integer.getInteger("bench.iterations", 5);
+	private final long iterationMillis = Long.getLong("bench.time", 1000);
+	private final Pattern filter;
+	private volatile Object sink; //Never equal to a result, read to keep the results alive
+
+
+	/**
+	 * @param filter A regular expression the names of the benchmarks to run must contain, null to run all.
+	 */
+	public Harness(String filter) {
+		this.filter = filter == null ? null : Pattern.compile(filter);
+		this.sink = new Object();
+	}
+
+
+	/**
+	 * Runs a benchmark by a single thread.
+	 * @see #run(String, String, int, Supplier)
+	 */
+	public void run(String name, String params, Supplier<?> operation) {
+		run(name, params, 1, operation);
+	}
+
+
+	/**
+	 * Runs a benchmark and prints its results.
+	 * @param name The name of the benchmark, usually the class and method measured.
+	 * @param params The parameters of this run, printed along the results.
+	 * @param threads The number of threads running the operation at the same time.
+	 * @param operation The work measured, its result is consumed by the harness.
+	 */
+	public void run(String name, String params, int threads, Supplier<?> operation) {
+		double[] throughputs = new double[iterations];
+		long operations = 0;
+		long allocated = 0;
+		long collections;
+		long gcMillis;
+		double mean = 0;
+		double deviation = 0;
+
+		if(filter != null && !filter.matcher(name).find())
+			return;
+
+		for(int iterationI = 0; iterationI < warmupIterations; iterationI++)
+			iterate(threads, operation);
+
+		collections = -gcCount();
+		gcMillis = -gcMillis();
+		for(int iterationI = 0; iterationI < iterations; iterationI++) {
+			long[] result = iterate(threads, operation);
+			operations += result[0];
+			allocated += result[1];
+			throughputs[iterationI] = result[0] * 1e9 / result[2];
+			mean += throughputs[iterationI] / iterations;
+		}
+		collections += gcCount();
+		gcMillis += gcMillis();
+
+		for(double throughput : throughputs)
+			deviation += (throughput - mean) * (throughput - mean) / Math.max(1, iterations - 1);
+		System.out.printf("%-48s %-36s %12.1f +- %9.1f ops/s %12s B/op %5d GCs (%d ms)%n", name, params,
+				mean, Math.sqrt(deviation), allocated < 0 ? "n/a" : allocated / Math.max(1, operations),
+				collections, gcMillis);
+	}
+
+
+	/**
+	 * Runs the operation by every thread until the time of the iteration is over.
+	 * Operations started before the deadline are finished and counted, so
+	 * the time elapsed until the last thread finishes is measured too.
+	 * @return The number of operations, the bytes allocated by the threads
+	 *         (-1 if unknown) and the nanoseconds elapsed.
+	 */
+	private long[] iterate(int threads, Supplier<?> operation) {
+		LongAdder operations = new LongAdder();
+		LongAdder allocated = new LongAdder();
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> workers = new ArrayList<>(threads);
+		long[] deadline = new long[1];
+
+		for(int threadI = 0; threadI < threads; threadI++) {
+			Thread worker = new Thread(() -> {
+				long count = 0;
+				long bytes;
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				bytes = allocatedBytes();
+				while(System.nanoTime() < deadline[0]) {
+					if(operation.get() == sink) //Read only, so threads don't contend
+						throw new IllegalStateException("Unexpected result");
+					count++;
+				}
+				operations.add(count);
+				allocated.add(bytes < 0 ? -1 : allocatedBytes() - bytes);
+			}, "bench-" + threadI);
+			workers.add(worker);
+			worker.start();
+		}
+
+		long started = System.nanoTime();
+		deadline[0] = started + iterationMillis * 1000000; //Published to the workers by the latch
+		start.countDown();
+		for(Thread worker : workers)
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+		return new long[] {operations.sum(), allocated.sum() < 0 ? -1 : allocated.sum(),
+				System.nanoTime() - started};
+	}
+
+
+	/**
+	 * @return The bytes allocated by the current thread so far or -1 if the JVM can't tell.
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+		if(threads instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported())
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return -1;
+	}
+
+
+	private static long gcCount() {
+		long count = 0;
+		for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(0, collector.getCollectionCount());
+		return count;
+	}
+
+
+	private static long gcMillis() {
+		long millis = 0;
+		for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+			millis += Math.max(0, collector.getCollectionTime());
+		return millis;
+	}
+
+}
@@ -0,0 +1,87 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.Map;
+
+import etl.Loader;
+import io.Writer;
+import parsers.CSVMapParser;
+import parsers.JSONStringParser;
+
+/**
+ * Measures the loading of pages of transformed Maps by several threads
+ * at the same time, as the load stage does, into a Writer discarding the data.
+ * Loading is serialized by the lock of the Writer, so this measures its contention.
+ * <p>
+ * Usage: LoaderBenchmark [regex of the benchmarks to run]
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class LoaderBenchmark {
+
+	public static void main(String[] args) {
+		run(new Harness(args.length > 0 ? args[0] : null));
+	}
+
+
+	static void run(Harness harness) {
+		List<Map<String,Object>> page = ParserBenchmark.parse(new JSONStringParser(ParserBenchmark.WANTED)
+				::parseString, SuggestData.generate(100, 0, 1));
+
+		for(int threads : new int[] {1, 2, 4, 8}) {
+			Loader stringLoader = new Loader(new NullWriter(false), new CSVMapParser(","));
+			Loader bufferedLoader = new Loader(new NullWriter(true), new CSVMapParser(","));
+			String label = "objects=100 threads=" + threads;
+
+			harness.run("Loader.load", label, threads, () -> {
+				stringLoader.load(page);
+				return page;
+			});
+			harness.run("Loader.load into buffer", label, threads, () -> {
+				bufferedLoader.load(page);
+				return page;
+			});
+		}
+	}
+
+
+
+	/**
+	 * Writer discarding the data, with or without a buffer of its own.
+	 */
+	private static class NullWriter implements Writer {
+
+		private final StringBuilder buffer;
+		private long written;
+
+
+		NullWriter(boolean buffered) {
+			this.buffer = buffered ? new StringBuilder() : null;
+		}
+
+
+		@Override
+		public void write(String write) {
+			written += write.length();
+		}
+
+
+		@Override
+		public Appendable getBuffer() {
+			return buffer;
+		}
+
+
+		@Override
+		public void flush() {
+			written += buffer.length();
+			buffer.setLength(0);
+		}
+
+
+		@Override
+		public void close() {}
+
+	}
+
+}
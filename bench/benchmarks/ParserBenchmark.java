@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.text.ParseException;
+import java.util.List;
+import java.util.Map;
+
+import parsers.JSONStreamParser;
+import parsers.JSONStringParser;
+import records.Schema;
+
+/**
+ * Measures the parsing of suggest API responses into flat Maps,
+ * varying the objects per response, the extra attributes per object
+ * and how deep they are nested.
+ * <p>
+ * Usage: ParserBenchmark [regex of the benchmarks to run]
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class ParserBenchmark {
+
+	/**
+	 * The objects, extra attributes and depth of each response: a baseline
+	 * and then every parameter varied on its own.
+	 */
+	static final int[][] PARAMS = {{100, 10, 1}, {10, 10, 1}, {1000, 10, 1}, {100, 0, 1}, {100, 40, 1},
+			{100, 10, 3}, {100, 10, 6}};
+
+	static final Schema WANTED = new Schema("_id", "name", "type", "geo_position.latitude", "geo_position.longitude");
+
+
+	public static void main(String[] args) {
+		run(new Harness(args.length > 0 ? args[0] : null));
+	}
+
+
+	static void run(Harness harness) {
+		JSONStringParser stringParser = new JSONStringParser();
+		JSONStringParser projectingParser = new JSONStringParser(WANTED);
+		JSONStreamParser streamParser = new JSONStreamParser();
+
+		for(int[] params : PARAMS) {
+			String json = SuggestData.generate(params[0], params[1], params[2]);
+			String label = describe(params) + " (" + json.length() / 1024 + "KB)";
+
+			harness.run("JSONStringParser.parseString", label, () -> parse(stringParser::parseString, json));
+			harness.run("JSONStringParser.parseString projected", label,
+					() -> parse(projectingParser::parseString, json));
+			harness.run("JSONStreamParser.parseString", label, () -> parse(streamParser::parseString, json));
+		}
+	}
+
+
+	static String describe(int[] params) {
+		return "objects=" + params[0] + " attributes=" + params[1] + " depth=" + params[2];
+	}
+
+
+	/**
+	 * Parses turning parsing errors, a bug of the benchmark, into unchecked exceptions.
+	 */
+	static List<Map<String,Object>> parse(Parse parser, String json) {
+		try {
+			return parser.parse(json);
+		} catch (ParseException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+
+	interface Parse {
+		List<Map<String,Object>> parse(String json) throws ParseException;
+	}
+
+}
@@ -0,0 +1,197 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import etl.ETL;
+import etl.Extractor;
+import etl.Loader;
+import etl.Metrics;
+import etl.Stage;
+import io.AdaptiveLimiter;
+import io.ChannelFileWriter;
+import io.CircuitBreaker;
+import io.HttpReader;
+import io.PaginatedHttpReader;
+import io.Reader;
+import okhttp3.OkHttpClient;
+import parsers.CSVMapParser;
+import parsers.JSONStreamParser;
+import parsers.JSONStringParser;
+import parsers.StringParser;
+import transformations.AttributesFilterAndSort;
+import transformations.Transformation;
+
+/**
+ * Runs the whole pipeline, from the HTTP requests to the CSV file,
+ * against a local {@link StubSuggestServer}, the way {@link etl.Configurator}
+ * sets it up by default.
+ * <p>
+ * Every round reports the objects loaded per second, the MB per second read
+ * from the service, the 50th and 99th percentile of the page latency (the time
+ * until the response headers arrive when streaming), the peak heap used and
+ * the peak platform threads of the pipeline, both sampled every 10ms, and the
+ * requests failed. The first round warms up the JIT.
+ * <p>
+ * Usage: PipelineBenchmark [cities] [objects per city] [extra attributes] [depth]
+ * [latency ms] [error rate] [page size, 0 for whole responses] [streaming] [rounds]
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class PipelineBenchmark {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int cities = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		int records = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int extraAttributes = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		int depth = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+		long latency = args.length > 4 ? Long.parseLong(args[4]) : 20;
+		double errorRate = args.length > 5 ? Double.parseDouble(args[5]) : 0;
+		int pageSize = args.length > 6 ? Integer.parseInt(args[6]) : 0;
+		boolean streaming = args.length > 7 ? Boolean.parseBoolean(args[7]) : true;
+		int rounds = args.length > 8 ? Integer.parseInt(args[8]) : 4;
+		StubSuggestServer server = new StubSuggestServer(records, extraAttributes, depth, latency, errorRate);
+
+		server.start(64);
+		System.out.printf("%d cities x %d objects, %d extra attributes %d deep, %dms latency, %.1f%% errors, "
+				+ "%s, %s%n", cities, records, extraAttributes, depth, latency, errorRate * 100,
+				pageSize > 0 ? "pages of " + pageSize : "whole responses", streaming ? "streaming" : "not streaming");
+		try {
+			for(int roundI = 0; roundI < rounds; roundI++)
+				run(server, cities, pageSize, streaming, roundI == 0 ? "warm-up" : "round " + roundI, false, 8);
+		} finally {
+			server.stop();
+		}
+	}
+
+
+	/**
+	 * Runs the pipeline once and prints its results.
+	 * @param virtualThreads Whether to run a virtual thread per city and page instead of pools.
+	 * @param readers The number of cities read at a time.
+	 */
+	static void run(StubSuggestServer server, int cities, int pageSize, boolean streaming, String name,
+			boolean virtualThreads, int readers) throws IOException, InterruptedException {
+		List<String> attributes = Arrays.asList("_id", "name", "type", "geo_position.latitude",
+				"geo_position.longitude");
+		Transformation transformation = new AttributesFilterAndSort(attributes);
+		StringParser parser = streaming ? new JSONStreamParser(transformation.getProjection())
+				: new JSONStringParser(transformation.getProjection());
+		int maxRequests = Math.max(64, readers);
+		AdaptiveLimiter limiter = new AdaptiveLimiter(readers * 4, 1, maxRequests, 3);
+		OkHttpClient client = limiter.configure(new CircuitBreaker(0.5, 20, 5000)
+				.configure(new OkHttpClient.Builder().readTimeout(1, TimeUnit.MINUTES))).build();
+		List<Extractor> extractors = new ArrayList<>(cities);
+		File file = File.createTempFile("pipeline-benchmark", ".csv");
+		long errors = server.getErrors();
+		HeapSampler heap = new HeapSampler();
+		int transformThreads = Runtime.getRuntime().availableProcessors();
+
+		client.dispatcher().setMaxRequests(maxRequests);
+		client.dispatcher().setMaxRequestsPerHost(maxRequests);
+		for(int cityI = 0; cityI < cities; cityI++) {
+			Reader reader;
+			if(pageSize > 0) {
+				PaginatedHttpReader pages = new PaginatedHttpReader(client, server.getUrl() + "city" + cityI,
+						"offset", "limit", pageSize, 4);
+				pages.setLimiter(limiter);
+				reader = pages;
+			}
+			else {
+				HttpReader page = new HttpReader(client, server.getUrl() + "city" + cityI);
+				page.setLimiter(limiter);
+				reader = page;
+			}
+			extractors.add(new Extractor(reader, parser, 3, 0));
+		}
+
+		ETL etl = new ETL(extractors, new Loader(new ChannelFileWriter(file.getPath()), new CSVMapParser(",")),
+				transformation, streaming ? 500 : 0,
+				virtualThreads ? Stage.ofVirtualThreads("read", readers) : new Stage("read", readers, readers),
+				virtualThreads ? Stage.ofVirtualThreads("parse", 1) : new Stage("parse", 1, 2),
+				virtualThreads ? Stage.ofVirtualThreads("transform", transformThreads)
+						: new Stage("transform", transformThreads, 4),
+				virtualThreads ? Stage.ofVirtualThreads("load", 1) : new Stage("load", 1, 4));
+		Metrics metrics = etl.getMetrics();
+
+		System.gc();
+		heap.start();
+		long start = System.nanoTime();
+		etl.run();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		heap.interrupt();
+		heap.join();
+
+		System.out.printf("%-8s %10.0f objects/s %8.1f MB/s  page latency p50 %7.1fms p99 %7.1fms  "
+				+ "peak heap %6.1fMB  peak pipeline threads %4d  %d objects, %d failed requests, %.1fMB of CSV, "
+				+ "limit %d%n", name,
+				metrics.getRecordsLoaded() / seconds, metrics.getBytesRead() / seconds / 1024 / 1024,
+				metrics.getHistogram(Metrics.READ).getPercentile(50) / 1e6,
+				metrics.getHistogram(Metrics.READ).getPercentile(99) / 1e6, heap.getPeak() / 1024.0 / 1024,
+				heap.getPeakThreads(),
+				metrics.getRecordsLoaded(), server.getErrors() - errors, file.length() / 1024.0 / 1024,
+				limiter.getLimit());
+
+		client.dispatcher().executorService().shutdown();
+		client.connectionPool().evictAll();
+		file.delete();
+	}
+
+
+
+	/**
+	 * Samples the heap used and the platform threads of the pipeline
+	 * until interrupted, keeping the peaks.
+	 */
+	private static class HeapSampler extends Thread {
+
+		private final AtomicLong peak = new AtomicLong();
+		private final AtomicLong peakThreads = new AtomicLong();
+
+
+		HeapSampler() {
+			super("heap-sampler");
+			setDaemon(true);
+		}
+
+
+		@Override
+		public void run() {
+			Runtime runtime = Runtime.getRuntime();
+			Thread[] threads = new Thread[4096];
+
+			while(!isInterrupted()) {
+				int pipelineThreads = 0;
+				int count = Thread.enumerate(threads); //Platform threads of this group only
+
+				for(int threadI = 0; threadI < count; threadI++)
+					if(threads[threadI].getName().startsWith("etl-") || threads[threadI].getName().startsWith("OkHttp"))
+						pipelineThreads++;
+				peak.accumulateAndGet(runtime.totalMemory() - runtime.freeMemory(), Math::max);
+				peakThreads.accumulateAndGet(pipelineThreads, Math::max);
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+
+
+		long getPeak() {
+			return peak.get();
+		}
+
+
+		long getPeakThreads() {
+			return peakThreads.get();
+		}
+
+	}
+
+}
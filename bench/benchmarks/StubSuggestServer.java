@@ -0,0 +1,170 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * StubSuggestServer is the class responsible for standing in for the
+ * suggest API in local load tests.
+ * <p>
+ * Serves generated responses for any city under the same path as the real
+ * API, whole or paginated by the offset and limit query parameters. Every
+ * response is delayed by a fixed latency and fails with a 503 status code
+ * at a given rate, to reproduce a slow and flaky service.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class StubSuggestServer {
+
+	/**
+	 * The path of the service, the city queried follows it.
+	 */
+	public static final String PATH = "/api/v2/position/suggest/en/";
+
+	private final int records;
+	private final int extraAttributes;
+	private final int depth;
+	private final long latencyMillis;
+	private final double errorRate;
+	private final Map<Integer, byte[]> payloads; //By number of objects
+	private final LongAdder requests;
+	private final LongAdder errors;
+	private HttpServer server;
+	private ExecutorService executor;
+
+
+	/**
+	 * @param records The number of objects of each city.
+	 * @param extraAttributes The number of attributes of each object besides the API ones.
+	 * @param depth The nesting levels of the extra attributes.
+	 * @param latencyMillis The delay before every response.
+	 * @param errorRate The fraction of responses failing, from 0 to 1.
+	 */
+	public StubSuggestServer(int records, int extraAttributes, int depth, long latencyMillis, double errorRate) {
+		this.records = records;
+		this.extraAttributes = extraAttributes;
+		this.depth = depth;
+		this.latencyMillis = latencyMillis;
+		this.errorRate = errorRate;
+		this.payloads = new ConcurrentHashMap<>();
+		this.requests = new LongAdder();
+		this.errors = new LongAdder();
+	}
+
+
+	/**
+	 * Starts serving on a free local port.
+	 * @param threads The number of requests served at the same time.
+	 * @throws IOException If the server can't be started.
+	 */
+	public void start(int threads) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+		executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "stub-server");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		server.createContext(PATH, this::handle);
+		server.start();
+	}
+
+
+	/**
+	 * Stops serving and frees the threads.
+	 */
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+		try {
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/**
+	 * @return The URL of the service, the city to query must be appended to it.
+	 */
+	public String getUrl() {
+		return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + PATH;
+	}
+
+
+	/**
+	 * @return The number of requests received.
+	 */
+	public long getRequests() {
+		return requests.sum();
+	}
+
+
+	/**
+	 * @return The number of requests answered with an error.
+	 */
+	public long getErrors() {
+		return errors.sum();
+	}
+
+
+	private void handle(HttpExchange exchange) throws IOException {
+		byte[] body;
+		int status = 200;
+
+		requests.increment();
+		try {
+			Thread.sleep(latencyMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if(ThreadLocalRandom.current().nextDouble() < errorRate) {
+			errors.increment();
+			status = 503;
+			body = "Service unavailable".getBytes(StandardCharsets.UTF_8);
+		}
+		else
+			body = payloads.computeIfAbsent(objectsOf(exchange.getRequestURI().getRawQuery()),
+					objects -> SuggestData.generate(objects, extraAttributes, depth).getBytes(StandardCharsets.UTF_8));
+
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try(OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+
+	/**
+	 * @return The number of objects of the page requested by the offset and limit parameters.
+	 */
+	private int objectsOf(String query) {
+		long offset = 0;
+		long limit = records;
+
+		if(query != null)
+			for(String parameter : query.split("&")) {
+				if(parameter.startsWith("offset="))
+					offset = Long.parseLong(parameter.substring(7));
+				else if(parameter.startsWith("limit="))
+					limit = Long.parseLong(parameter.substring(6));
+			}
+
+		return (int) Math.max(0, Math.min(limit, records - offset));
+	}
+
+}
@@ -0,0 +1,64 @@
+package benchmarks;
+
+import java.util.Random;
+
+/**
+ * SuggestData is the class responsible for generating synthetic responses
+ * of the suggest API, so the benchmarks run offline and reproducibly.
+ * <p>
+ * Every object has the attributes of the real API plus a number of extra
+ * attributes nested some levels deep, to measure how the hot paths scale
+ * with wider and deeper objects.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class SuggestData {
+
+	private static final String[] TYPES = {"location", "airport", "station"};
+	private static final String[] NAMES = {"Berlin", "Leipzig", "München", "Köln", "Frankfurt am Main",
+			"Düsseldorf", "Böhlen (Leipzig)", "Hamburg"};
+
+
+	/**
+	 * Generates a JSON array of suggest API objects.
+	 * @param objects The number of objects of the array.
+	 * @param extraAttributes The number of attributes added to each object besides the API ones.
+	 * @param depth The nesting levels of the extra attributes, 1 to add them at the top level.
+	 * @return The JSON text, always the same for the same arguments.
+	 */
+	public static String generate(int objects, int extraAttributes, int depth) {
+		Random random = new Random(objects * 31 + extraAttributes * 7 + depth);
+		StringBuilder json = new StringBuilder(objects * (350 + extraAttributes * 24));
+
+		json.append('[');
+		for(int objectI = 0; objectI < objects; objectI++) {
+			String name = NAMES[random.nextInt(NAMES.length)];
+
+			if(objectI > 0)
+				json.append(',');
+			json.append("{\"_id\":").append(376000 + objectI)
+				.append(",\"key\":null,\"name\":\"").append(name)
+				.append("\",\"fullName\":\"").append(name).append(", Germany")
+				.append("\",\"iata_airport_code\":null,\"type\":\"").append(TYPES[random.nextInt(TYPES.length)])
+				.append("\",\"country\":\"Germany\",\"geo_position\":{\"latitude\":")
+				.append(Math.round((47 + random.nextDouble() * 8) * 1e5) / 1e5)
+				.append(",\"longitude\":").append(Math.round((6 + random.nextDouble() * 9) * 1e5) / 1e5)
+				.append("},\"locationId\":").append(8000 + random.nextInt(1000))
+				.append(",\"inEurope\":true,\"countryCode\":\"DE\",\"coreCountry\":true,\"distance\":null");
+
+			for(int attributeI = 0; attributeI < extraAttributes; attributeI++) {
+				json.append(",\"extra").append(attributeI).append("\":");
+				for(int levelI = 1; levelI < depth; levelI++)
+					json.append("{\"level").append(levelI).append("\":");
+				json.append(random.nextBoolean() ? "\"value " + random.nextInt(100) + "\"" : random.nextInt());
+				for(int levelI = 1; levelI < depth; levelI++)
+					json.append('}');
+			}
+			json.append('}');
+		}
+		json.append(']');
+
+		return json.toString();
+	}
+
+}
@@ -0,0 +1,45 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.Map;
+
+import parsers.JSONStringParser;
+import transformations.AttributesFilter;
+import transformations.AttributesFilterAndSort;
+import transformations.AttributesSort;
+import transformations.Transformation;
+
+/**
+ * Measures the transformation of pages of parsed Maps, varying the objects
+ * per page, the extra attributes per object and how deep they are nested.
+ * The Maps are parsed without projection so every attribute reaches the transformations.
+ * <p>
+ * Usage: TransformationBenchmark [regex of the benchmarks to run]
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class TransformationBenchmark {
+
+	public static void main(String[] args) {
+		run(new Harness(args.length > 0 ? args[0] : null));
+	}
+
+
+	static void run(Harness harness) {
+		List<String> wanted = ParserBenchmark.WANTED.getColumns();
+		Transformation filter = new AttributesFilter(wanted);
+		Transformation sort = new AttributesSort(wanted);
+		Transformation filterAndSort = new AttributesFilterAndSort(wanted);
+
+		for(int[] params : ParserBenchmark.PARAMS) {
+			List<Map<String,Object>> page = ParserBenchmark.parse(new JSONStringParser()::parseString,
+					SuggestData.generate(params[0], params[1], params[2]));
+			String label = ParserBenchmark.describe(params);
+
+			harness.run("AttributesFilter.transformMaps", label, () -> filter.transformMaps(page));
+			harness.run("AttributesSort.transformMaps", label, () -> sort.transformMaps(page));
+			harness.run("AttributesFilterAndSort.transformMaps", label, () -> filterAndSort.transformMaps(page));
+		}
+	}
+
+}
@@ -0,0 +1,128 @@
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import parsers.CSVMapParser;
+
+/**
+ * Compares the throughput and the number of write system calls of the
+ * local file writers loading the same CSV pages.
+ * The throughput is measured in MB of CSV data, compressed or not.
+ * <p>
+ * Usage: WriterBenchmark [MB to write] [directory]
+ * <p>
+ * System calls are read from /proc/self/io, so they are only reported on Linux.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class WriterBenchmark {
+
+	private static long PAGE_LENGTH; //Characters of CSV data per page
+
+	public static void main(String[] args) throws IOException {
+		long megabytes = args.length > 0 ? Long.parseLong(args[0]) : 256;
+		File directory = new File(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"));
+		CSVMapParser parser = new CSVMapParser(",");
+		List<Map<String, Object>> page = createPage(500);
+		PAGE_LENGTH = parser.parseMaps(page).length();
+		long pages = megabytes * 1024 * 1024 / PAGE_LENGTH;
+
+		for(int roundI = 0; roundI < 3; roundI++) { //First rounds warm up the JIT and the page cache
+			File file = new File(directory, "writer-benchmark.csv");
+
+			run("PrintWriter, String per page", pages, file, () -> new LocalFileWriter(file.getPath()),
+					writer -> writer.write(parser.parseMaps(page)));
+			run("FileChannel, never synced", pages, file,
+					() -> new ChannelFileWriter(file.getPath(), 1024 * 1024, ChannelFileWriter.SYNC_NEVER),
+					writer -> parser.parseMaps(page, writer.getBuffer()));
+			run("FileChannel, synced on close", pages, file,
+					() -> new ChannelFileWriter(file.getPath(), 1024 * 1024, ChannelFileWriter.SYNC_ON_CLOSE),
+					writer -> parser.parseMaps(page, writer.getBuffer()));
+			run("FileChannel, synced every 64MB", pages, file,
+					() -> new ChannelFileWriter(file.getPath(), 1024 * 1024, 64 * 1024 * 1024),
+					writer -> parser.parseMaps(page, writer.getBuffer()));
+			run("Memory-mapped, never synced", pages, file,
+					() -> new MappedFileWriter(file.getPath(), 64 * 1024 * 1024, false),
+					writer -> parser.parseMaps(page, writer.getBuffer()));
+			run("Memory-mapped, synced on close", pages, file,
+					() -> new MappedFileWriter(file.getPath(), 64 * 1024 * 1024, true),
+					writer -> parser.parseMaps(page, writer.getBuffer()));
+			run("Gzip level 6, 1 thread", pages, file,
+					() -> new GzipFileWriter(file.getPath(), 1024 * 1024, 6, 1),
+					writer -> parser.parseMaps(page, writer.getBuffer()));
+			run("Gzip level 6, 1 thread per core", pages, file,
+					() -> new GzipFileWriter(file.getPath()),
+					writer -> parser.parseMaps(page, writer.getBuffer()));
+
+			file.delete();
+			System.out.println();
+		}
+	}
+
+
+	private static <W extends Writer> void run(String name, long pages, File file, WriterFactory<W> factory,
+			PageLoad<W> load) throws IOException {
+		double megabytes = pages * PAGE_LENGTH / 1024.0 / 1024.0;
+		long syscalls = readSyscalls();
+		long start = System.nanoTime();
+		W writer = factory.create();
+
+		for(long pageI = 0; pageI < pages; pageI++)
+			load.load(writer);
+		writer.close();
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		syscalls = readSyscalls() - syscalls;
+		System.out.printf("%-32s %8.1f MB/s %10s write syscalls %10.1f MB written%n", name,
+				megabytes / seconds, syscalls < 0 ? "n/a" : syscalls, file.length() / 1024.0 / 1024.0);
+	}
+
+
+	private static List<Map<String, Object>> createPage(int size) {
+		List<Map<String, Object>> page = new ArrayList<>(size);
+
+		for(int mapI = 0; mapI < size; mapI++) {
+			Map<String, Object> map = new LinkedHashMap<>();
+			map.put("_id", 376809 + mapI);
+			map.put("name", "Böhlen (Leipzig)");
+			map.put("type", "location");
+			map.put("geo_position.latitude", 51.33962);
+			map.put("geo_position.longitude", 12.37129);
+			page.add(map);
+		}
+
+		return page;
+	}
+
+
+	/**
+	 * @return The write system calls made by the process so far or -1 if unknown.
+	 */
+	private static long readSyscalls() {
+		try {
+			for(String line : Files.readAllLines(Paths.get("/proc/self/io"), StandardCharsets.US_ASCII))
+				if(line.startsWith("syscw:"))
+					return Long.parseLong(line.substring(6).trim());
+		} catch (IOException | NumberFormatException e) {}
+		return -1;
+	}
+
+
+	private interface WriterFactory<W extends Writer> {
+		W create() throws IOException;
+	}
+
+
+	private interface PageLoad<W extends Writer> {
+		void load(W writer) throws IOException;
+	}
+
+}
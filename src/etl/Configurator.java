@@ -1,17 +1,36 @@
 
 package etl;
 
+import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.management.JMException;
+
 import io.*;
+import okhttp3.OkHttpClient;
 import parsers.*;
+import records.Schema;
 import transformations.*;
 
 /**
  * Configurator is responsible for configurating the application and starting it.
  * Reads from a configuration file and sets default configuration values when not found.
+ * <p>
+ * Every argument is a city to query, arguments of the form @path name a file with
+ * one city per line. Repeated cities are queried only once.
  * @author Andres Arturo Sanchez Dorantes
  */
 public class Configurator {
@@ -21,18 +40,24 @@ public class Configurator {
 		
 		ETL etl;    // Extract-Transform-Load 
 		
-		Extractor extractor;
-		Reader reader;           // Objects needed for the extraction process
+		List<Extractor> extractors;
+		OkHttpClient client;     // Objects needed for the extraction process
 		StringParser inParser;
 		
 		Transformation transformation; // Object needed for the transformation process
 		
-		Loader loader;
-		Writer writer = null;           // Objects needed for the loading process
-		MapParser outParser;
+		PageLoader loader = null;           // Objects needed for the loading process
+		
 		
+		Set<String> cities = null;
+		try {
+			cities = readCities(args);
+		} catch(IOException ex) {
+			System.err.println("Not possible to read cities file: " + ex.getMessage());
+			System.exit(1);
+		}
 		
-		if(args.length == 0) {
+		if(cities.isEmpty()) {
 			System.err.println("No defined city to query");
 			System.exit(1);
 		}
@@ -49,38 +74,278 @@ public class Configurator {
 		} catch(IOException ex) {}
 		
 		
-		reader = new HttpReader(props.getProperty("API_URL", "http://api.goeuro.com/api/v2/position/suggest/en/") + args[0]);
-		inParser = new JSONStringParser();
+		String serviceUrl = props.getProperty("API_URL", "http://api.goeuro.com/api/v2/position/suggest/en/");
+		boolean streaming = Boolean.parseBoolean(props.getProperty("streaming", "true"));
+		String queryAttribute = props.getProperty("query_attribute", "");
+		List<String> attributes = new ArrayList<>(Arrays.asList(props.getProperty("attributes_wanted", 
+				"_id;name;type;geo_position.latitude;geo_position.longitude").split(";")));
+		if(!queryAttribute.isEmpty() && !attributes.contains(queryAttribute))
+			attributes.add(0, queryAttribute); //Tags each row with its query
 		StringParser.DELIMITER.setLength(0);
 		StringParser.DELIMITER.append(props.getProperty("attributes_delimiter", "."));
+		transformation = new AttributesFilterAndSort(attributes);
+		Schema projection = transformation.getProjection(); //Only the wanted attributes are parsed
+		inParser = streaming ? new JSONStreamParser(projection) : new JSONStringParser(projection);
+		if(props.getProperty("input_format", "json").equals("ndjson")) //One document per line
+			inParser = new NDJSONParser(inParser);
 		int connectionAttempts = 1;
 		int reconnectionDelay = 1000;
+		long reconnectionMaxDelay = 1000;
+		int retryBudget = 0;
+		int streamBatchSize = 0;
+		int reorderWindow = ETL.DEFAULT_REORDER_WINDOW;
+		int pageSize = 0;
+		int prefetchPages = 1;
+		int concurrency = 1;
+		int parallelThreshold = 0;
+		int parallelThreads = 0;
+		int ndjsonParallelThreshold = 0;
+		int csvShards = 1;
+		int shardQueueSize = 4;
+		long cacheSize = 0;
+		int cacheMemoryEntries = 0;
+		long cacheTtl = 0;
+		boolean adaptiveConcurrency = false;
+		int maxConcurrency = 0;
+		double latencyTolerance = 0;
+		double breakerErrorRate = 0;
+		int breakerWindow = 0;
+		long breakerOpenTime = 0;
+		boolean virtualThreads = props.getProperty("execution_mode", "platform").equals("virtual");
+		int ioLimit = 0;
 		try {
+			cacheSize = Long.parseLong(props.getProperty("cache_size", "50")) * 1024 * 1024;
+			cacheMemoryEntries = Integer.parseInt(props.getProperty("cache_memory_entries", "256"));
+			cacheTtl = Long.parseLong(props.getProperty("cache_ttl", "0"));
+			concurrency = Math.max(1, Integer.parseInt(props.getProperty("batch_concurrency", "8")));
+			parallelThreshold = Integer.parseInt(props.getProperty("transform_parallel_threshold", "5000"));
+			parallelThreads = Integer.parseInt(props.getProperty("transform_parallel_threads", "0"));
+			ndjsonParallelThreshold = Integer.parseInt(props.getProperty("ndjson_parallel_threshold", "1000"));
+			csvShards = Math.max(1, Integer.parseInt(props.getProperty("csv_shards", "1")));
+			shardQueueSize = Math.max(1, Integer.parseInt(props.getProperty("csv_shard_queue_size", "4")));
+			pageSize = Integer.parseInt(props.getProperty("page_size", "0"));
+			prefetchPages = Integer.parseInt(props.getProperty("prefetch_pages", "4"));
+			reorderWindow = Integer.parseInt(props.getProperty("reorder_window", ETL.DEFAULT_REORDER_WINDOW + ""));
+			if(streaming)
+				streamBatchSize = Math.max(1, Integer.parseInt(props.getProperty("stream_batch_size", "500")));
 			connectionAttempts = Integer.parseInt(props.getProperty("connection_attempts", "3"));
 			reconnectionDelay *= Long.parseLong(props.getProperty("reconnection_delay", "1"));
 			if(reconnectionDelay < 0) reconnectionDelay = 0;
+			reconnectionMaxDelay *= Long.parseLong(props.getProperty("reconnection_max_delay", "30"));
+			retryBudget = Integer.parseInt(props.getProperty("retry_budget", "10"));
+			adaptiveConcurrency = Boolean.parseBoolean(props.getProperty("adaptive_concurrency", "true"));
+			maxConcurrency = Integer.parseInt(props.getProperty("max_concurrency", "64"));
+			latencyTolerance = Double.parseDouble(props.getProperty("latency_tolerance", "3"));
+			breakerErrorRate = Double.parseDouble(props.getProperty("breaker_error_rate", "0.5"));
+			breakerWindow = Integer.parseInt(props.getProperty("breaker_window", "20"));
+			breakerOpenTime = Long.parseLong(props.getProperty("breaker_open_time", "5")) * 1000;
+			ioLimit = Math.max(1, Integer.parseInt(props.getProperty("virtual_io_limit", "256")));
 		} catch(NumberFormatException ex) {
 			System.err.println("Bad configuration file");
 			System.exit(2);
 		}
-		extractor = new Extractor(reader, inParser, connectionAttempts, reconnectionDelay);
 		
-		transformation = new AttributesFilterAndSort(props.getProperty("attributes_wanted", 
-				"_id;name;type;geo_position.latitude;geo_position.longitude").split(";"));
+		OkHttpClient.Builder clientBuilder = new OkHttpClient.Builder();
+		HttpCache httpCache = null;
+		if(!props.getProperty("cache_dir", "").isEmpty()) {
+			httpCache = new HttpCache(new File(props.getProperty("cache_dir")), cacheSize, cacheMemoryEntries, cacheTtl);
+			httpCache.configure(clientBuilder);
+		}
+		int maxRequests = concurrency * Math.max(1, prefetchPages);
+		if(virtualThreads) //As many requests as cities read at a time
+			maxRequests = Math.max(maxRequests, ioLimit);
+		CircuitBreaker breaker = breakerErrorRate > 0 //Fails fast while the service is failing
+				? new CircuitBreaker(breakerErrorRate, breakerWindow, breakerOpenTime) : null;
+		AdaptiveLimiter limiter = adaptiveConcurrency //Adapts the concurrent requests to the latency of the service
+				? new AdaptiveLimiter(maxRequests, 1, Math.max(maxRequests, maxConcurrency), latencyTolerance) : null;
+		if(breaker != null)
+			breaker.configure(clientBuilder);
+		if(limiter != null) {
+			limiter.configure(clientBuilder);
+			maxRequests = Math.max(maxRequests, maxConcurrency); //Room for the limit to grow
+		}
+		client = clientBuilder.build(); //One connection pool for all the cities
+		client.dispatcher().setMaxRequests(maxRequests);
+		client.dispatcher().setMaxRequestsPerHost(maxRequests);
 		
-
+		extractors = new ArrayList<>(cities.size());
+		for(String city : cities) {
+			Reader reader;
+			if(pageSize > 0) {
+				PaginatedHttpReader pages = new PaginatedHttpReader(client, serviceUrl + city, "offset", "limit",
+						pageSize, prefetchPages);
+				pages.setLimiter(limiter); //Requests wait for room without holding a thread of the client
+				reader = pages;
+			}
+			else {
+				HttpReader page = new HttpReader(client, serviceUrl + city);
+				page.setLimiter(limiter);
+				reader = page;
+			}
+			Map<String,Object> tags = queryAttribute.isEmpty() ? Collections.emptyMap()
+					: Collections.singletonMap(queryAttribute, city);
+			
+			Extractor extractor = new Extractor(reader, inParser, connectionAttempts, reconnectionDelay, tags);
+			
+			extractor.setRetryPolicy(new RetryPolicy(connectionAttempts, reconnectionDelay, reconnectionMaxDelay,
+					retryBudget));
+			extractors.add(extractor);
+		}
+		
+		ForkJoinPool parallelPool = parallelThreads > 0 ? new ForkJoinPool(parallelThreads) : ForkJoinPool.commonPool();
+		if(parallelThreshold > 0) //Big pages transformed by several threads
+			transformation.setParallelism(parallelPool, parallelThreshold);
+		if(ndjsonParallelThreshold > 0 && inParser instanceof NDJSONParser) //Big inputs parsed by several threads
+			((NDJSONParser) inParser).setParallelism(parallelPool, ndjsonParallelThreshold);
 		
-		outParser = new CSVMapParser(props.getProperty("csv_delimiter", ","));
 		try {
-			writer = new LocalFileWriter(props.getProperty("csv_path", "GoEuroTest.csv"));
-		} catch (FileNotFoundException e) {
+			String csvPath = props.getProperty("csv_path", "GoEuroTest.csv");
+			if(csvShards > 1) { //One file per shard, e.g. GoEuroTest-0.csv
+				List<Loader> shards = new ArrayList<>(csvShards);
+				int extension = csvPath.lastIndexOf('.') > csvPath.lastIndexOf(File.separatorChar)
+						? csvPath.lastIndexOf('.') : csvPath.length();
+				for(int shardI = 0; shardI < csvShards; shardI++)
+					shards.add(createLoader(props, csvPath.substring(0, extension) + "-" + shardI
+							+ csvPath.substring(extension)));
+				loader = new PartitionedLoader(shards, props.getProperty("csv_shard_key", "_id"), shardQueueSize);
+			}
+			else
+				loader = createLoader(props, csvPath);
+		} catch (IOException e) {
 			System.err.println("Not possible to write CSV file");
 			System.exit(3);
+		} catch(NumberFormatException ex) {
+			System.err.println("Bad configuration file");
+			System.exit(2);
+		}
+		
+		try {
+			if(virtualThreads && !VirtualThreads.isAvailable())
+				System.err.println("Virtual threads not supported by this JVM, using a platform thread per task");
+			etl = new ETL(extractors, loader, transformation, streamBatchSize,
+					virtualThreads ? Stage.ofVirtualThreads("read", ioLimit) : new Stage("read", concurrency, concurrency),
+					createStage(props, "parse", "1", "2", virtualThreads),
+					createStage(props, "transform", Runtime.getRuntime().availableProcessors() + "", "4", virtualThreads),
+					createStage(props, "load", "1", "4", virtualThreads));
+			etl.setReorderWindow(reorderWindow);
+			if(!Boolean.parseBoolean(props.getProperty("metrics_transform_steps", "true"))
+					&& transformation instanceof TransformationChain) //Only the whole chain is timed
+				((TransformationChain) transformation).setStepListener(null);
+			Thread etlThread = virtualThreads && VirtualThreads.isAvailable()
+					? VirtualThreads.factory("etl-").newThread(etl) : new Thread(etl);
+			if(limiter != null) {
+				etl.getMetrics().addGauge("http.limit", limiter::getLimit);
+				etl.getMetrics().addGauge("http.in_flight", limiter::getInFlight);
+				etl.getMetrics().addGauge("http.latency_us", () -> limiter.getLatency() / 1000);
+			}
+			if(breaker != null) {
+				etl.getMetrics().addGauge("http.breaker_state", () -> breaker.getState().ordinal());
+				etl.getMetrics().addGauge("http.breaker_rejected", breaker::getRejected);
+			}
+			if(Boolean.parseBoolean(props.getProperty("metrics_jmx", "true")))
+				try {
+					etl.getMetrics().register("GoEuroTest");
+				} catch (JMException e) {
+					System.err.println("Not possible to expose the metrics: " + e.getMessage());
+				}
+			etlThread.start();
+			etlThread.join();
+			
+			if(Boolean.parseBoolean(props.getProperty("metrics_summary", "true")))
+				System.err.print(etl.getMetrics().getSummary());
+			if(httpCache != null) { //Reports the cache usage at the end of the run
+				System.err.println(httpCache.getStats());
+				httpCache.close();
+			}
+			etl.getMetrics().unregister();
+		} catch(NumberFormatException ex) {
+			System.err.println("Bad configuration file");
+			System.exit(2);
+		} catch(InterruptedException ex) {}
+	}
+	
+	
+	/**
+	 * Gathers the cities to query without repetitions.
+	 * @param args City names or @-prefixed paths to files with one city per line.
+	 * @return The cities in order of first appearance.
+	 * @throws IOException If a file of cities can't be read.
+	 */
+	private static Set<String> readCities(String[] args) throws IOException {
+		Set<String> cities = new LinkedHashSet<>();
+		
+		for(String arg : args) {
+			List<String> names = arg.startsWith("@") 
+					? Files.readAllLines(Paths.get(arg.substring(1)), StandardCharsets.UTF_8)
+					: Collections.singletonList(arg);
+			
+			for(String name : names)
+				if(!name.trim().isEmpty())
+					cities.add(name.trim());
 		}
-		loader = new Loader(writer, outParser);
 		
-		etl = new ETL(extractor, loader, transformation);
-		new Thread(etl).start();
+		return cities;
+	}
+	
+	
+	/**
+	 * Creates the Writer of a CSV file configured by the properties csv_writer,
+	 * csv_buffer_size, csv_sync, csv_gzip_level and csv_gzip_threads.
+	 * @throws IOException If the file can't be created.
+	 * @throws NumberFormatException If the properties are not numbers.
+	 */
+	private static Writer createWriter(Properties props, String path) throws IOException {
+		String type = props.getProperty("csv_writer", "channel");
+		int bufferSize = Integer.parseInt(props.getProperty("csv_buffer_size", "1024")) * 1024;
+		String sync = props.getProperty("csv_sync", "close");
+		long syncInterval = sync.equals("never") ? ChannelFileWriter.SYNC_NEVER
+				: sync.equals("close") ? ChannelFileWriter.SYNC_ON_CLOSE
+				: Long.parseLong(sync) * 1024 * 1024;
+		
+		if(type.equals("mapped"))
+			return new MappedFileWriter(path, bufferSize, syncInterval != ChannelFileWriter.SYNC_NEVER);
+		if(type.equals("gzip"))
+			return new GzipFileWriter(path, bufferSize, Integer.parseInt(props.getProperty("csv_gzip_level", "6")),
+					Integer.parseInt(props.getProperty("csv_gzip_threads",
+							Runtime.getRuntime().availableProcessors() + "")));
+		return new ChannelFileWriter(path, bufferSize, syncInterval);
+	}
+	
+	
+	/**
+	 * Creates the Loader of an output file with its Writer and the parser configured
+	 * by the properties output_format, csv_delimiter, columnar_row_group_size and ndjson_nested.
+	 * Columnar parsers keep the state of their file so each file needs its own.
+	 * @throws IOException If the file can't be created.
+	 * @throws NumberFormatException If the properties are not numbers.
+	 */
+	private static Loader createLoader(Properties props, String path) throws IOException {
+		String format = props.getProperty("output_format", "csv");
+		
+		if(format.equals("columnar"))
+			return new Loader(createWriter(props, path),
+					new ColumnarMapParser(Integer.parseInt(props.getProperty("columnar_row_group_size", "10000"))));
+		if(format.equals("ndjson"))
+			return new Loader(createWriter(props, path),
+					new NDJSONMapParser(Boolean.parseBoolean(props.getProperty("ndjson_nested", "false"))));
+		return new Loader(createWriter(props, path), new CSVMapParser(props.getProperty("csv_delimiter", ",")));
+	}
+	
+	
+	/**
+	 * Creates a pipeline Stage configured by the properties
+	 * <name>_threads and <name>_queue_size.
+	 * @param virtualThreads Whether to run each task on a virtual thread, up to
+	 *        <name>_threads at a time, instead of on a pool.
+	 * @throws NumberFormatException If the properties are not numbers.
+	 */
+	private static Stage createStage(Properties props, String name, String defaultThreads, String defaultQueueSize,
+			boolean virtualThreads) {
+		int threads = Integer.parseInt(props.getProperty(name + "_threads", defaultThreads));
+		int queueSize = Integer.parseInt(props.getProperty(name + "_queue_size", defaultQueueSize));
+		
+		return virtualThreads ? Stage.ofVirtualThreads(name, Math.max(1, threads))
+				: new Stage(name, Math.max(1, threads), Math.max(1, queueSize));
 	}
 	
 
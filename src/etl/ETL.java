@@ -2,59 +2,314 @@
 package etl;
 
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.Map;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import transformations.Transformation;
+import transformations.TransformationChain;
 
 /**
  * ETL is responsible to handle the ETL process.
  * Administers the extraction, transformation and load process in
  * a multi-threaded fashion. 
+ * <p>
+ * The process is a pipeline of read, parse, transform and load stages.
+ * Each step runs on its own {@link Stage} so that a slow step blocks the
+ * reading instead of letting pages pile up in memory. The pages of a source
+ * are read one after the other but several sources can be read concurrently,
+ * all of them loaded to the same destination. A source waiting to retry a
+ * failed read, or for a whole page from an {@link io.AsyncReader}, gives its
+ * thread back to the other sources in the meantime, so a few threads can keep
+ * many sources in flight.
+ * <p>
+ * Every stage reports to the same {@link Metrics}, along with the depth
+ * of the queues of the stages and the number of pages in flight. Each step
+ * of a {@link TransformationChain} is reported on its own as well.
  * @author Andres Arturo Sanchez Dorantes
  *
  */
 public class ETL implements Runnable {
 	
-	private Extractor extractor;
-	private Loader loader;
+	
+	/**
+	 * The number of pages a page can get ahead of the oldest one not loaded yet by default.
+	 */
+	public static final int DEFAULT_REORDER_WINDOW = 64;
+	
+	private List<Extractor> extractors;
+	private PageLoader loader;
 	private Transformation transformation;
+	private int streamBatchSize;
+	private long reorderWindow;
+	private Stage readStage;
+	private Stage parseStage;
+	private Stage transformStage;
+	private Stage loadStage;
+	private AtomicLong pages; //Sequence number of the next extracted page
+	private AtomicLong inFlight; //Pages extracted but not loaded yet
+	private Metrics metrics;
 	
 
-	public ETL(Extractor extractor, Loader loader, Transformation transformation) {
+	public ETL(Extractor extractor, PageLoader loader, Transformation transformation) {
+		this(extractor, loader, transformation, 0);
+	}
+	
+	
+	/**
+	 * @param streamBatchSize The number of Maps to gather from the extraction stream
+	 *        before transforming and loading them, or 0 to process whole pages at a time.
+	 */
+	public ETL(Extractor extractor, PageLoader loader, Transformation transformation, int streamBatchSize) {
+		this(Collections.singletonList(extractor), loader, transformation, streamBatchSize,
+				new Stage("read", 1, 1),
+				new Stage("parse", 1, 1),
+				new Stage("transform", Runtime.getRuntime().availableProcessors(), 4),
+				new Stage("load", 1, 4));
+	}
+	
+	
+	/**
+	 * @param extractors The sources to extract from, all loaded by the same PageLoader.
+	 * @param streamBatchSize The number of Maps to gather from the extraction stream
+	 *        before transforming and loading them, or 0 to process whole pages at a time.
+	 * @param readStage The Stage where sources are read, its threads limit how
+	 *        many sources are read concurrently unless their Readers are asynchronous.
+	 * @param parseStage The Stage where pages are parsed, unused when streaming
+	 *        since then pages are parsed while being read.
+	 * @param transformStage The Stage where pages are transformed.
+	 * @param loadStage The Stage where pages are loaded.
+	 */
+	public ETL(List<Extractor> extractors, PageLoader loader, Transformation transformation, int streamBatchSize,
+			Stage readStage, Stage parseStage, Stage transformStage, Stage loadStage) {
 		super();
-		this.extractor = extractor;
+		this.extractors = extractors;
 		this.loader = loader;
 		this.transformation = transformation;
+		this.streamBatchSize = streamBatchSize;
+		this.reorderWindow = DEFAULT_REORDER_WINDOW;
+		this.readStage = readStage;
+		this.parseStage = parseStage;
+		this.transformStage = transformStage;
+		this.loadStage = loadStage;
+		this.pages = new AtomicLong();
+		this.inFlight = new AtomicLong();
+		this.metrics = new Metrics();
+		
+		for(Extractor extractor : extractors)
+			extractor.setMetrics(metrics);
+		if(transformation instanceof TransformationChain) //Each link counted and timed on its own
+			((TransformationChain) transformation).setStepListener((step, recordsIn, recordsOut, nanos) ->
+					metrics.stepTransformed(stepName(step), recordsIn, recordsOut, nanos));
+		loader.setMetrics(metrics);
+		metrics.addGauge("queue.read", readStage::getQueued);
+		metrics.addGauge("queue.parse", parseStage::getQueued);
+		metrics.addGauge("queue.transform", transformStage::getQueued);
+		metrics.addGauge("queue.load", loadStage::getQueued);
+		metrics.addGauge("pages.in_flight", inFlight::get);
+	}
+	
+	
+	/**
+	 * Bounds the pages extracted but not loaded yet. Pages are loaded in order
+	 * of extraction, so the pages after a slow one wait in the Loader until it
+	 * is loaded. A page can't be handed to the next stages while it is more than
+	 * the given number of pages ahead of the oldest one not loaded yet, its
+	 * extraction waits instead.
+	 * @param reorderWindow The number of pages, {@link #DEFAULT_REORDER_WINDOW} by default.
+	 */
+	public void setReorderWindow(int reorderWindow) {
+		this.reorderWindow = Math.max(1, reorderWindow);
+	}
+	
+	
+	/**
+	 * @return The metrics of the run, updated while it goes on.
+	 */
+	public Metrics getMetrics() {
+		return metrics;
 	}
 
 
 	@Override
 	public void run()
 	{	
-		LinkedList<CompletableFuture<Void>> futureETLs = new LinkedList<>();
+		List<CompletableFuture<Void>> extracted = new ArrayList<>(extractors.size());
 		
-		while(extractor.canExtract()) //Implements pagination
-		{ 
-			List<Map<String,Object>> extractedMaps = extractor.extract();
-			
-			if(extractedMaps != null)
-				futureETLs.add(CompletableFuture  //Asynchronously transforms and loads the data
-							   .supplyAsync(()->transformation.transformMaps(extractedMaps))
-							   .thenAccept(loader::load));
+		for(Extractor extractor : extractors) {
+			CompletableFuture<Void> sourceExtracted = new CompletableFuture<>();
+			extracted.add(sourceExtracted);
+			readStage.execute(() -> extract(extractor, sourceExtracted));
 		}
 		
+		//Sources waiting to retry still need the read stage
+		CompletableFuture.allOf(extracted.toArray(new CompletableFuture<?>[extracted.size()]))
+				.handle((nothing, e) -> nothing).join();
+		//Every stage hands its last tasks to the next one before finishing
+		readStage.finish();
+		parseStage.finish();
+		transformStage.finish();
+		loadStage.finish();
 		
-		for(CompletableFuture<Void> futureETL : futureETLs)
-			try {
-				futureETL.get();
-			} catch (InterruptedException | ExecutionException e) {
-				System.err.println(e.getMessage());
+		loader.finish();
+	}
+	
+	
+	/**
+	 * Extracts all the pages of a source and hands them to the next stages.
+	 * When a page has to be read again the extraction is resumed by the
+	 * read stage after the delay of the retry, instead of waiting for it.
+	 * Pages of asynchronous readers are requested without waiting for them
+	 * either, the extraction goes on once the read stage is handed the response.
+	 * @param extracted Completed once the source has no more pages.
+	 */
+	private void extract(Extractor extractor, CompletableFuture<Void> extracted) {
+		try {
+			while(extractor.canExtract()) //Implements pagination
+			{ 
+				CompletableFuture<?> page;
+				
+				if(streamBatchSize > 0) { //Transforms and loads while the page is still being extracted
+					Batcher batcher = new Batcher();
+					page = extractor.extractAsync(batcher, readStage)
+							.thenRun(batcher::flush);
+				}
+				else {
+					page = extractor.readAsync(readStage)
+							.thenAccept(toParse -> {
+								if(toParse != null)
+									transformAndLoad(nextPage(),
+											CompletableFuture.supplyAsync(()->extractor.parse(toParse), parseStage));
+							});
+				}
+				
+				if(!page.isDone()) { //Waiting for the data or to retry, resumed by the read stage completing the page
+					page.whenComplete((nothing, e) -> {
+						if(e == null)
+							extract(extractor, extracted);
+						else
+							failed(e, extracted);
+					});
+					return;
+				}
+				page.join(); //Rethrows unexpected failures
 			}
+			extracted.complete(null);
+			
+		} catch (RuntimeException e) {
+			failed(e, extracted);
+		}
+	}
+
+
+	/**
+	 * Stops the extraction of a source after an unexpected failure.
+	 */
+	private static void failed(Throwable e, CompletableFuture<Void> extracted) {
+		System.err.println(e.getMessage());
+		extracted.complete(null);
+	}
+	
+	
+	
+	/**
+	 * Numbers the next extracted page, waiting first while it would be
+	 * too far ahead of the oldest page not loaded yet.
+	 * @return The order of the page in the extraction.
+	 * @see #setReorderWindow(int)
+	 */
+	private long nextPage() {
+		long sequence = pages.getAndIncrement();
 		
+		loader.awaitLoaded(sequence - reorderWindow);
+		return sequence;
+	}
+	
+	
+	
+	/**
+	 * Asynchronously transforms and loads a list of extracted Maps.
+	 * Pages are transformed in parallel but loaded in order of extraction.
+	 * @param sequence The order of the page in the extraction.
+	 * @param extractedMaps The future Maps, null if the extraction failed.
+	 */
+	private void transformAndLoad(long sequence, CompletableFuture<List<Map<String,Object>>> extractedMaps) {
+		inFlight.incrementAndGet();
+		extractedMaps
+				.thenApplyAsync(maps -> maps == null ? null : transform(maps), transformStage)
+				.handle((maps, e) -> {
+					if(e != null)
+						System.err.println(e.getMessage());
+					return e == null ? maps : null;
+				})
+				.thenAcceptAsync(maps -> {
+					if(maps != null)
+						loader.load(sequence, maps);
+					else
+						loader.skip(sequence); //Doesn't hold back the following pages
+				}, loadStage)
+				.whenComplete((nothing, e) -> inFlight.decrementAndGet());
+	}
+	
+	
+	/**
+	 * Transforms a page timing it, the steps of a chain are timed by its listener.
+	 */
+	private List<Map<String,Object>> transform(List<Map<String,Object>> maps) {
+		long start = System.nanoTime();
+		List<Map<String,Object>> transformed = transformation.transformMaps(maps);
+		
+		metrics.pageTransformed(maps.size(), transformed.size(), System.nanoTime() - start);
+		return transformed;
+	}
+	
+	
+	
+	/**
+	 * @return The name of a step of a chained transformation in the metrics, the name of its class.
+	 */
+	private static String stepName(Transformation step) {
+		String name = step.getClass().getSimpleName();
+		return name.isEmpty() ? step.getClass().getName() : name; //Anonymous classes
+	}
+	
+	
+	
+	/**
+	 * Gathers the Maps streamed by the extraction in batches of
+	 * {@link ETL#streamBatchSize} and hands every full batch to
+	 * the transformation and load process.
+	 */
+	private class Batcher implements Consumer<Map<String,Object>> {
+		
+		private List<Map<String,Object>> batch;
+		
+		
+		Batcher() {
+			this.batch = new ArrayList<>(streamBatchSize);
+		}
+		
+		
+		@Override
+		public void accept(Map<String,Object> map) {
+			batch.add(map);
+			if(batch.size() >= streamBatchSize)
+				flush();
+		}
+		
+		
+		/**
+		 * Hands the Maps gathered so far to the transformation and load process.
+		 */
+		void flush() {
+			if(!batch.isEmpty()) {
+				transformAndLoad(nextPage(), CompletableFuture.completedFuture(batch));
+				batch = new ArrayList<>(streamBatchSize);
+			}
+		}
 		
-		loader.finish();
 	}
 	
 	
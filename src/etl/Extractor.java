@@ -1,18 +1,36 @@
 
 package etl;
 
+import io.AsyncReader;
+import io.CircuitOpenException;
 import io.Reader;
+import parsers.StreamParser;
 import parsers.StringParser;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 /**
  * Extractor is the class responsible for extracting data from a given
  * source to make it available for internal processing.
  * It uses for that purpose a Reader to read information from a source
  * and a StringParser to make it understandable by the program.
+ * <p>
+ * Failed reads are attempted again as dictated by a {@link RetryPolicy}.
+ * The blocking methods wait for the retries, while the asynchronous ones
+ * schedule them and free the calling thread in the meantime. Reads rejected
+ * by an open {@link io.CircuitBreaker} are not counted as failed attempts,
+ * they are just retried once the breaker lets requests through again.
  * @author Andres Arturo Sanchez Dorantes
  *
  */
@@ -20,21 +38,56 @@ public class Extractor {
 	
 	private Reader reader;
 	private StringParser parser;
-	private int maxConnectionAttempts;
-	private int connectionAttempts;
-	private long reconnectionDelay;
-	private boolean badConfig;
+	private RetryPolicy retryPolicy;
+	private int connectionAttempts; //Consecutive failures
+	private int failures; //Failures of the whole extraction
+	private volatile boolean badConfig; //Set by parsing threads
+	private Map<String,Object> tags;
+	private Metrics metrics;
 	
 	
 	
 	public Extractor(Reader reader, StringParser parser, int maxConnectionAttempts, long reconnectionDelay) {
+		this(reader, parser, maxConnectionAttempts, reconnectionDelay, Collections.emptyMap());
+	}
+	
+	
+	
+	/**
+	 * @param tags Attributes added to every extracted Map, e.g. to identify its source.
+	 */
+	public Extractor(Reader reader, StringParser parser, int maxConnectionAttempts, long reconnectionDelay,
+			Map<String,Object> tags) {
 		super();
+		this.tags = tags;
 		this.reader = reader;
 		this.parser = parser;
-		this.maxConnectionAttempts = maxConnectionAttempts;
-		this.reconnectionDelay = reconnectionDelay;
+		this.retryPolicy = new RetryPolicy(maxConnectionAttempts, reconnectionDelay, Long.MAX_VALUE,
+				Integer.MAX_VALUE);
 		this.connectionAttempts = 0;
+		this.failures = 0;
 		this.badConfig = false;
+		this.metrics = new Metrics();
+	}
+	
+	
+	
+	/**
+	 * Makes the Extractor count the data read and parsed and time the
+	 * reading and parsing in the given metrics.
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	
+	
+	/**
+	 * Replaces the policy given by the maximum connection attempts and
+	 * reconnection delay of the constructor.
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
 	}
 	
 
@@ -48,48 +101,368 @@ public class Extractor {
 	 * @return The list of extracted Maps or null in case of a fatal exception.
 	 */
 	public List<Map<String,Object>> extract()  {
-		String toParse = "";
+		String toParse = read();
 		
-		try {
-			toParse = reader.read(); // Reads from the connection
-			connectionAttempts = 0; // Successful connection, restarts the counting of failed connections
-			return parser.parseString(toParse);
+		return toParse == null ? null : parse(toParse);
+	}
+	
+	
+	
+	/**
+	 * Reads the next raw data from the source without parsing it.
+	 * Used to read and parse in different threads.
+	 * <p>
+	 * Implements a mechanism of reconnection to attempt to recover from any exceptions
+	 * resulting from the reading process.
+	 * @return The raw data read or null if the connection couldn't be recovered,
+	 *         or if the thread was interrupted while waiting to retry.
+	 * @see #parse(String)
+	 */
+	public String read() {
+		while(true) {
+			try {
+				return tryRead();
+				
+			} catch (CircuitOpenException ex) { // Not sent, waits for the breaker
+				if(!sleep(rejected(ex)))
+					return null;
+			} catch (IOException ex) { // Try to recover
+				if(!recover(ex) || !sleep(retryPolicy.getDelay(connectionAttempts))) // Waits to read again
+					return null;
+			}
+		}
+	}
+	
+	
+	
+	/**
+	 * Reads the next raw data from the source without parsing it or blocking
+	 * while waiting to retry.
+	 * <p>
+	 * If the Reader is an {@link AsyncReader} no thread waits for the data either
+	 * and the page is completed by the executor once the data arrives, so the
+	 * thread of the Reader is not held by what follows. A full {@link Stage} is
+	 * offered the page until it takes it instead of blocking that thread. Otherwise the first
+	 * attempt is made by the calling thread. The following attempts are scheduled
+	 * by the {@link RetryPolicy} and made by the executor, so no thread is held
+	 * during the delays.
+	 * @param executor Makes the retries and completes the pages of an AsyncReader.
+	 * @return The raw data read or null if the connection couldn't be recovered.
+	 * @see #read()
+	 */
+	public CompletableFuture<String> readAsync(Executor executor) {
+		CompletableFuture<String> page = new CompletableFuture<>();
+		
+		attemptRead(page, executor);
+		return page;
+	}
+	
+	
+	
+	/**
+	 * Makes one attempt of {@link #readAsync(Executor)}.
+	 */
+	private void attemptRead(CompletableFuture<String> page, Executor executor) {
+		if(reader instanceof AsyncReader) {
+			long start = System.nanoTime();
 			
-		} catch (IOException ex) { // Try to recover
-			System.err.println(ex.getMessage() + " at " + reader.getClass()); // Logs the exception
-			return retry(); // Attempts to extract again
+			((AsyncReader) reader).readAsync().whenComplete((toParse, e) -> // Reads from the connection
+				RetryPolicy.handOver(() -> { // Without blocking the thread of the Reader on a full Stage
+					if(e == null)
+						page.complete(pageRead(toParse, start));
+					else
+						readFailed(e instanceof CompletionException ? e.getCause() : e, page, executor);
+				}, executor));
+			return;
+		}
+		
+		try {
+			page.complete(tryRead());
+		} catch (IOException | RuntimeException ex) {
+			readFailed(ex, page, executor);
+		}
+	}
+	
+	
+	
+	/**
+	 * Retries a failed attempt of {@link #readAsync(Executor)} if possible.
+	 */
+	private void readFailed(Throwable e, CompletableFuture<String> page, Executor executor) {
+		if(!(e instanceof IOException))
+			page.completeExceptionally(e);
+		else if(e instanceof CircuitOpenException) // Not sent, waits for the breaker
+			RetryPolicy.schedule(() -> attemptRead(page, executor), executor, rejected((CircuitOpenException) e));
+		else if(recover((IOException) e)) // Try to recover
+			RetryPolicy.schedule(() -> attemptRead(page, executor), executor,
+					retryPolicy.getDelay(connectionAttempts));
+		else
+			page.complete(null);
+	}
+	
+	
+	
+	/**
+	 * Reads from the connection once, counting it in the metrics.
+	 */
+	private String tryRead() throws IOException {
+		long start = System.nanoTime();
+		
+		return pageRead(reader.read(), start); // Reads from the connection
+	}
+	
+	
+	
+	/**
+	 * Counts a page read successfully.
+	 * @param start When the reading started.
+	 * @return The page.
+	 */
+	private String pageRead(String toParse, long start) {
+		connectionAttempts = 0; // Successful connection, restarts the counting of failed connections
+		metrics.pageRead(utf8Length(toParse), System.nanoTime() - start);
+		return toParse;
+	}
+	
+	
+	
+	/**
+	 * Parses raw data previously read from the source.
+	 * A parsing error stops any further extraction.
+	 * @param toParse The raw data as returned by {@link #read()}.
+	 * @return The list of extracted Maps or null in case of a fatal exception.
+	 */
+	public List<Map<String,Object>> parse(String toParse) {
+		long start = System.nanoTime();
+		
+		try {
+			List<Map<String,Object>> maps = parser.parseString(toParse);
+			if(!tags.isEmpty())
+				maps.forEach(map -> map.putAll(tags));
+			metrics.pageParsed(maps.size(), System.nanoTime() - start);
+			return maps;
 			
 		} catch (ParseException e) { // Parser incompatible with data read
 			System.err.println(e.getMessage()); // Logs the exception
 			badConfig = true;
 			return null; // Can't recover configuration errors
 		}
+	}
+	
+	
+	
+	/**
+	 * Extracts data from the source as a stream of Maps.
+	 * Reads data from the source and parses it while it is still arriving
+	 * if the parser is a {@link StreamParser}, otherwise the whole data is
+	 * read first and then parsed.
+	 * <p>
+	 * Implements the same mechanism of reconnection as {@link #extract()} as long
+	 * as no Map has been handed out yet, failures after that point can't be
+	 * recovered without duplicating data.
+	 * @param consumer Receives each extracted Map as soon as it is parsed.
+	 * @return Whether the data was completely extracted, false as well if the
+	 *         thread was interrupted while waiting to retry.
+	 */
+	public boolean extract(Consumer<Map<String,Object>> consumer) {
+		int[] extracted = {0};
+		
+		while(true) {
+			try {
+				return tryExtract(consumer, extracted);
+				
+			} catch (CircuitOpenException ex) { // Not sent, waits for the breaker
+				if(!sleep(rejected(ex)))
+					return false;
+			} catch (IOException ex) { // Try to recover
+				if(!recover(ex, extracted[0]) || !sleep(retryPolicy.getDelay(connectionAttempts))) // Waits to extract again
+					return false;
+			}
+		}
+	}
+	
+	
+	
+	/**
+	 * Extracts data from the source as a stream of Maps without blocking
+	 * while waiting to retry.
+	 * <p>
+	 * The first attempt is made by the calling thread, the following ones
+	 * are scheduled by the {@link RetryPolicy} and made by the executor,
+	 * so no thread is held during the delays.
+	 * @param consumer Receives each extracted Map as soon as it is parsed.
+	 * @param executor Makes the retries.
+	 * @return Whether the data was completely extracted.
+	 * @see #extract(Consumer)
+	 */
+	public CompletableFuture<Boolean> extractAsync(Consumer<Map<String,Object>> consumer, Executor executor) {
+		CompletableFuture<Boolean> done = new CompletableFuture<>();
+		
+		attemptExtract(consumer, new int[] {0}, done, executor);
+		return done;
+	}
+	
+	
+	
+	/**
+	 * Makes one attempt of {@link #extractAsync(Consumer, Executor)}.
+	 */
+	private void attemptExtract(Consumer<Map<String,Object>> consumer, int[] extracted,
+			CompletableFuture<Boolean> done, Executor executor) {
+		try {
+			done.complete(tryExtract(consumer, extracted));
+			
+		} catch (CircuitOpenException ex) { // Not sent, waits for the breaker
+			RetryPolicy.schedule(() -> attemptExtract(consumer, extracted, done, executor), executor, rejected(ex));
+			
+		} catch (IOException ex) { // Try to recover
+			if(recover(ex, extracted[0]))
+				RetryPolicy.schedule(() -> attemptExtract(consumer, extracted, done, executor), executor,
+						retryPolicy.getDelay(connectionAttempts));
+			else
+				done.complete(false);
+			
+		} catch (RuntimeException ex) {
+			done.completeExceptionally(ex);
+		}
+	}
+	
+	
+	
+	/**
+	 * Opens the connection once and parses the stream, counting it in the metrics.
+	 * @param extracted Counts the Maps handed out, shared by all the attempts.
+	 * @return Whether the data was completely extracted, false after a parsing error.
+	 * @throws IOException If reading fails, recoverable only if no Map was handed out.
+	 */
+	private boolean tryExtract(Consumer<Map<String,Object>> consumer, int[] extracted) throws IOException {
+		long start = System.nanoTime();
+		long opened;
+		Consumer<Map<String,Object>> countingConsumer = map -> {
+			extracted[0]++;
+			if(!tags.isEmpty())
+				map.putAll(tags);
+			consumer.accept(map);
+		};
 		
+		try (InputStream toParse = new CountingInputStream(reader.readStream())) { // Opens the connection
+			connectionAttempts = 0; // Successful connection, restarts the counting of failed connections
+			opened = System.nanoTime();
+			metrics.pageRead(0, opened - start);
+			
+			if(parser instanceof StreamParser)
+				((StreamParser) parser).parseStream(toParse, countingConsumer);
+			else
+				parser.parseString(readFully(toParse)).forEach(countingConsumer);
+			metrics.pageParsed(extracted[0], System.nanoTime() - opened);
+			return true;
+			
+		} catch (ParseException e) { // Parser incompatible with data read
+			System.err.println(e.getMessage()); // Logs the exception
+			badConfig = true;
+			return false; // Can't recover configuration errors
+		}
 	}
 	
 	
 	
 	/**
-	 * Attempts to reconnect after a failed reading.
-	 * @return The list of extracted Maps or null if the recover is unsuccessful.
+	 * Counts a failed reading and decides whether to attempt it again.
+	 * @return Whether the reading should be retried.
 	 */
-	private List<Map<String,Object>> retry() {
+	private boolean recover(IOException ex) {
+		System.err.println(ex.getMessage() + " at " + reader.getClass()); // Logs the exception
+		metrics.readError();
 		connectionAttempts++; //Increases the number of failed connections
+		failures++;
 		
-		if(this.canExtract()) {
-			try {
-				Thread.sleep(reconnectionDelay); //Waits to retry connection
-			} catch (InterruptedException e) {}
-			return this.extract();
+		if(this.canExtract())
+			return true;
+		System.err.println("Cannot recover failed connection");
+		return false;
+	}
+	
+	
+	
+	/**
+	 * Counts a failed streaming and decides whether to attempt it again.
+	 * @param extracted The number of Maps already handed out, which can't be extracted again.
+	 * @return Whether the streaming should be retried.
+	 */
+	private boolean recover(IOException ex, int extracted) {
+		if(extracted > 0) {
+			System.err.println(ex.getMessage() + " at " + reader.getClass()); // Logs the exception
+			metrics.readError();
+			System.err.println("Cannot recover connection lost after " + extracted + " extracted objects");
+			return false;
 		}
-		else {
-			System.err.println("Cannot recover failed connection");
-			return null;
+		return recover(ex);
+	}
+	
+	
+	
+	/**
+	 * Decides when to retry a read rejected by an open circuit breaker, without
+	 * counting it as a failed attempt since the request was never sent.
+	 * @return The milliseconds until the breaker lets requests through, plus
+	 *         the delay of a first retry so that the sources don't retry all at once.
+	 */
+	private long rejected(CircuitOpenException ex) {
+		return ex.getRetryAfter() + retryPolicy.getDelay(1);
+	}
+	
+	
+	
+	/**
+	 * Waits before a blocking retry.
+	 * @return Whether to retry, false if the thread was interrupted, keeping its interrupt status.
+	 */
+	private static boolean sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			System.err.println("Interrupted while waiting to retry");
+			return false;
 		}
 	}
 	
 	
 	
+	/**
+	 * Reads a whole UTF-8 encoded stream into a String.
+	 */
+	private static String readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		
+		while((read = in.read(buffer)) != -1)
+			bytes.write(buffer, 0, read);
+		
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	
+	
+	/**
+	 * Counts the bytes of a String once encoded as UTF-8 without encoding it.
+	 */
+	private static long utf8Length(String str) {
+		long length = 0;
+		
+		if(str == null)
+			return 0;
+		for(int charI = 0; charI < str.length(); charI++) {
+			char c = str.charAt(charI);
+			length += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3; //Surrogate pairs take 4
+		}
+		return length;
+	}
+	
+	
+	
 	/**
 	 * Indicates whether there is more data that should be attempted to extract.
 	 * Used for pagination and resilience purposes.
@@ -97,9 +470,39 @@ public class Extractor {
 	 */
 	public boolean canExtract() {
 		return  !badConfig 
-				&& connectionAttempts < maxConnectionAttempts 
+				&& retryPolicy.canRetry(connectionAttempts, failures)
 				&& reader.isDataLeft();
 	}
 	
-
+	
+	
+	/**
+	 * Counts the bytes read from a stream in the metrics.
+	 */
+	private class CountingInputStream extends FilterInputStream {
+		
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+		
+		
+		@Override
+		public int read() throws IOException {
+			int read = super.read();
+			if(read >= 0)
+				metrics.bytesRead(1);
+			return read;
+		}
+		
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if(read > 0)
+				metrics.bytesRead(read);
+			return read;
+		}
+		
+	}
+	
 }
@@ -2,10 +2,14 @@
 package etl;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.Writer;
+import parsers.BinaryMapParser;
 import parsers.MapParser;
 
 /**
@@ -14,22 +18,85 @@ import parsers.MapParser;
  * Uses for that purpose a MapParser to make the internal data 
  * understandable for an external resource and a Writer to
  * to write it to it.
+ * <p>
+ * Pages are parsed straight into the buffer of the Writer when it has
+ * one, otherwise into a reusable buffer of the Loader. Binary formats,
+ * parsed by a BinaryMapParser, are parsed straight into the stream of the Writer.
  * @author Andres Arturo Sanchez Dorantes
  *
  */
-public class Loader {
+public class Loader implements PageLoader {
 	
 	
+	/**
+	 * The biggest page buffer kept between pages, in characters.
+	 */
+	private static final int MAX_KEPT_BUFFER = 1 << 20;
+	
 	private Writer writer;
-	private MapParser parser;
-	private Boolean firstLoad;
+	private MapParser parser; //Null for binary formats
+	private BinaryMapParser binaryParser; //Null for text formats
+	private boolean firstLoad;
+	private AtomicLong arrivals;
+	private long nextToWrite;
+	private TreeMap<Long, List<Map<String,Object>>> pendingPages;
+	private StringBuilder pageBuffer; //For writers without buffer
+	private Metrics metrics;
 	
 	
 	public Loader(Writer writer, MapParser parser) {
+		this(writer, parser, null);
+	}
+	
+	
+	/**
+	 * Creates a Loader of a binary format, the Writer has to give access to its stream.
+	 * @see Writer#getOutputStream()
+	 */
+	public Loader(Writer writer, BinaryMapParser parser) {
+		this(writer, null, parser);
+	}
+	
+	
+	private Loader(Writer writer, MapParser parser, BinaryMapParser binaryParser) {
 		super();
 		this.writer = writer;
 		this.parser = parser;
-		this.firstLoad = new Boolean(true);
+		this.binaryParser = binaryParser;
+		this.firstLoad = true;
+		this.arrivals = new AtomicLong();
+		this.nextToWrite = 0;
+		this.pendingPages = new TreeMap<>();
+		this.pageBuffer = new StringBuilder();
+		this.metrics = new Metrics();
+	}
+	
+	
+	/**
+	 * Makes the Loader count the pages loaded and time their serialization
+	 * and writing in the given metrics, which also report the pages waiting.
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+		metrics.addGauge("load.pending", this::getPendingPages);
+	}
+	
+	
+	/**
+	 * @return The number of pages waiting for previous ones to be written.
+	 *         Sampled without locking, so it may be slightly outdated.
+	 */
+	public long getPendingPages() {
+		return pendingPages.size();
+	}
+	
+	
+	/**
+	 * Loads data into the resource in order of arrival.
+	 * @see #load(long, List)
+	 */
+	public void load(List<Map<String,Object>> maps) {
+		load(arrivals.getAndIncrement(), maps);
 	}
 	
 	
@@ -37,33 +104,140 @@ public class Loader {
 	 * Loads data into the resource.
 	 * Parses the internal data and writes it to the resource.
 	 * <p>
+	 * Pages are parsed and written strictly in order of sequence number,
+	 * so those arriving ahead of time are kept until every previous page
+	 * has been loaded or skipped.
 	 * Handles the logic whether it is the first time loading to a resource
 	 * or a middle operation to ensure the data is loaded logically. 
 	 * <p>
 	 * Synchronizes by intrinsic lock the writing process and if it fails
 	 * then logs the non-saved data.
+	 * @param sequence The position of the page in the output, starting at 0
+	 *        and without gaps. Should not be mixed with {@link #load(List)}.
+	 * @param maps The page of Maps to load.
+	 * @see #skip(long)
 	 */
-	public void load(List<Map<String,Object>> maps) {
-		boolean tmpFirstLoad;
-		String parsedStr;
+	public void load(long sequence, List<Map<String,Object>> maps) {
+		release(sequence, maps);
+	}
+	
+	
+	/**
+	 * Informs that a page will never be loaded, e.g. because its extraction
+	 * failed, so that the pages after it are not held back.
+	 * @param sequence The position of the missing page.
+	 */
+	public void skip(long sequence) {
+		release(sequence, null);
+	}
+	
+	
+	/**
+	 * Queues a page and writes every page that is next in order.
+	 * @param page The page or null if it was skipped.
+	 */
+	private void release(long sequence, List<Map<String,Object>> page) {
+		//Only one thread writes the same resource at a time
+		synchronized (writer) {
+			pendingPages.put(sequence, page);
+			
+			if(pendingPages.firstKey() != nextToWrite)
+				return;
+			while(!pendingPages.isEmpty() && pendingPages.firstKey() == nextToWrite) {
+				write(pendingPages.remove(nextToWrite));
+				nextToWrite++;
+			}
+			writer.notifyAll(); //Wakes up whoever waits for the pages written
+		}
+	}
+	
+	
+	/**
+	 * Waits until every page before the given one has been written or skipped.
+	 * @see etl.PageLoader#awaitLoaded(long)
+	 */
+	public void awaitLoaded(long sequence) {
+		synchronized (writer) {
+			while(nextToWrite < sequence)
+				try {
+					writer.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+		}
+	}
+	
+	
+	/**
+	 * Parses and writes a page, adding the headers if it is the first one written.
+	 * Should be called holding the writer's lock.
+	 */
+	private void write(List<Map<String,Object>> page) {
+		Appendable buffer = writer.getBuffer();
+		long start = System.nanoTime();
+		long serialized;
+		
+		if(page == null)
+			return;
 		
-		synchronized(firstLoad) {
-			tmpFirstLoad = firstLoad;
-			firstLoad = false;
+		if(binaryParser != null) {
+			writeBinary(page);
+			return;
 		}
 		
-		//Frees the threads to parse without locking
-		parsedStr = tmpFirstLoad ? parser.firstParsing(maps) : parser.parseMaps(maps);
+		if(buffer == null) {
+			pageBuffer.setLength(0);
+			buffer = pageBuffer;
+		}
 		
-		//Only one thread writes the same resource at a time
-		synchronized (writer) {
-			try {
-				writer.write(parsedStr);
-			} catch (IOException e) {
-				System.err.println(e.getMessage());
-				System.err.println("Lost data: " + parsedStr);
-			}
+		try {
+			if(firstLoad) //Previous pages skipped or not, the first written gets the headers
+				parser.firstParsing(page, buffer);
+			else
+				parser.parseMaps(page, buffer);
+			serialized = System.nanoTime();
+			
+			if(buffer == pageBuffer)
+				writer.write(pageBuffer.toString());
+			else
+				writer.flush();
+			metrics.pageLoaded(page.size(), serialized - start, System.nanoTime() - serialized);
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Lost data: " + page);
+		}
+		firstLoad = false;
+		
+		if(pageBuffer.capacity() > MAX_KEPT_BUFFER) //Doesn't hold the memory of huge pages
+			pageBuffer = new StringBuilder();
+	}
+	
+	
+	/**
+	 * Parses and writes a page of a binary format.
+	 * Should be called holding the writer's lock.
+	 */
+	private void writeBinary(List<Map<String,Object>> page) {
+		OutputStream stream = writer.getOutputStream();
+		long start = System.nanoTime();
+		long serialized;
+		
+		try {
+			if(stream == null)
+				throw new IOException("The writer can't write binary data");
+			if(firstLoad)
+				binaryParser.firstParsing(page, stream);
+			else
+				binaryParser.parseMaps(page, stream);
+			serialized = System.nanoTime();
+			writer.flush();
+			metrics.pageLoaded(page.size(), serialized - start, System.nanoTime() - serialized);
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Lost data: " + page);
 		}
+		firstLoad = false;
 	}
 	
 	
@@ -74,9 +248,25 @@ public class Loader {
 	 * Should only be called once at the end of the loading process.
 	 */
 	public void finish() {
+		synchronized (writer) {
+			if(!pendingPages.isEmpty()) { //Missing pages never arrived, writes the rest anyway
+				System.err.println("Pages missing before page " + pendingPages.firstKey());
+				pendingPages.values().forEach(this::write);
+				pendingPages.clear();
+			}
+		}
+		
 		try {
-			writer.write(parser.getEndings());
-		} catch (IOException e) {}
+			if(binaryParser != null) {
+				if(writer.getOutputStream() == null)
+					throw new IOException("The writer can't write binary data");
+				binaryParser.writeEndings(writer.getOutputStream());
+			}
+			else
+				writer.write(parser.getEndings());
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+		}
 		writer.close();
 	}
 
@@ -0,0 +1,418 @@
+package etl;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics is the class responsible for measuring an ETL run stage by stage,
+ * so the stage limiting the throughput can be found.
+ * <p>
+ * Counts the bytes, pages and objects going through the pipeline and times
+ * every step in histograms: reading (the HTTP latency), parsing, transforming,
+ * serializing and writing each page. Each step of a chained transformation
+ * is also timed and counted on its own, as transform.<name of its class>. Gauges report values sampled when asked,
+ * such as the tasks queued in each stage or the pages in flight.
+ * <p>
+ * When streaming, the read time only covers opening the connection and the
+ * parse time includes waiting for the data to arrive. The serialize time of
+ * writers with a buffer includes the writes made while the buffer fills up.
+ * <p>
+ * Thread-safe, updates don't block each other. The metrics can be exposed
+ * as a JMX MXBean by {@link #register(String)}.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class Metrics implements MetricsMXBean {
+
+
+	/*
+	 * The timed steps.
+	 */
+	public static final String READ = "read";
+	public static final String PARSE = "parse";
+	public static final String TRANSFORM = "transform";
+	public static final String SERIALIZE = "serialize";
+	public static final String WRITE = "write";
+
+	private final LongAdder bytesRead = new LongAdder();
+	private final LongAdder pagesRead = new LongAdder();
+	private final LongAdder readErrors = new LongAdder();
+	private final LongAdder recordsParsed = new LongAdder();
+	private final LongAdder recordsTransformedIn = new LongAdder();
+	private final LongAdder recordsTransformedOut = new LongAdder();
+	private final LongAdder recordsLoaded = new LongAdder();
+	private final LongAdder pagesLoaded = new LongAdder();
+	private final Map<String,LongAdder[]> stepRecords = new LinkedHashMap<>(); //In and out by step
+	private final Map<String,Histogram> histograms = new LinkedHashMap<>();
+	private final Map<String,LongSupplier> gauges = new LinkedHashMap<>();
+	private ObjectName registeredName;
+
+
+	public Metrics() {
+		for(String step : new String[] {READ, PARSE, TRANSFORM, SERIALIZE, WRITE})
+			histograms.put(step, new Histogram());
+	}
+
+
+	/**
+	 * Counts a page read from a source.
+	 * @param bytes The size of the page.
+	 * @param nanos The time taken to read it.
+	 */
+	public void pageRead(long bytes, long nanos) {
+		bytesRead.add(bytes);
+		pagesRead.increment();
+		time(READ, nanos);
+	}
+
+
+	/**
+	 * Counts bytes read from a source while streaming.
+	 */
+	public void bytesRead(long bytes) {
+		bytesRead.add(bytes);
+	}
+
+
+	/**
+	 * Counts a failed attempt to read from a source.
+	 */
+	public void readError() {
+		readErrors.increment();
+	}
+
+
+	/**
+	 * Counts a page parsed.
+	 * @param records The number of objects parsed.
+	 * @param nanos The time taken to parse them.
+	 */
+	public void pageParsed(long records, long nanos) {
+		recordsParsed.add(records);
+		time(PARSE, nanos);
+	}
+
+
+	/**
+	 * Counts a page transformed.
+	 * @param recordsIn The number of objects handed to the transformation.
+	 * @param recordsOut The number of objects returned by it.
+	 * @param nanos The time taken to transform them.
+	 */
+	public void pageTransformed(long recordsIn, long recordsOut, long nanos) {
+		recordsTransformedIn.add(recordsIn);
+		recordsTransformedOut.add(recordsOut);
+		time(TRANSFORM, nanos);
+	}
+
+
+	/**
+	 * Counts a page transformed by one step of a chained transformation.
+	 * @param step The name of the step, counted and timed as transform.step.
+	 * @param recordsIn The number of objects handed to the step.
+	 * @param recordsOut The number of objects returned by it.
+	 * @param nanos The time taken to transform them.
+	 */
+	public void stepTransformed(String step, long recordsIn, long recordsOut, long nanos) {
+		LongAdder[] records;
+
+		synchronized (stepRecords) {
+			records = stepRecords.computeIfAbsent(TRANSFORM + "." + step,
+					name -> new LongAdder[] {new LongAdder(), new LongAdder()});
+		}
+		records[0].add(recordsIn);
+		records[1].add(recordsOut);
+		time(TRANSFORM + "." + step, nanos);
+	}
+
+
+	/**
+	 * Counts a page loaded.
+	 * @param records The number of objects written.
+	 * @param serializeNanos The time taken to parse them into the output format.
+	 * @param writeNanos The time taken to write them.
+	 */
+	public void pageLoaded(long records, long serializeNanos, long writeNanos) {
+		recordsLoaded.add(records);
+		pagesLoaded.increment();
+		time(SERIALIZE, serializeNanos);
+		time(WRITE, writeNanos);
+	}
+
+
+	/**
+	 * Records the duration of a step.
+	 * @param step The name of the step, new steps are added to the metrics.
+	 * @param nanos The duration.
+	 */
+	public void time(String step, long nanos) {
+		Histogram histogram;
+
+		synchronized (histograms) {
+			histogram = histograms.computeIfAbsent(step, name -> new Histogram());
+		}
+		histogram.record(nanos);
+	}
+
+
+	/**
+	 * @param step The name of the step.
+	 * @return The histogram of the durations of the step or null if it was never timed.
+	 */
+	public Histogram getHistogram(String step) {
+		synchronized (histograms) {
+			return histograms.get(step);
+		}
+	}
+
+
+	/**
+	 * Adds a value sampled every time the metrics are read.
+	 * @param name The name of the gauge, replaces any previous gauge with the same name.
+	 * @param gauge Gives the current value.
+	 */
+	public void addGauge(String name, LongSupplier gauge) {
+		synchronized (gauges) {
+			gauges.put(name, gauge);
+		}
+	}
+
+
+	/**
+	 * Exposes the metrics in the platform MBean server.
+	 * @param name The name distinguishing this run from others in the same JVM.
+	 * @throws JMException If the metrics can't be registered.
+	 */
+	public synchronized void register(String name) throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName objectName = new ObjectName("etl:type=Metrics,name=" + ObjectName.quote(name));
+
+		if(server.isRegistered(objectName))
+			server.unregisterMBean(objectName);
+		server.registerMBean(this, objectName);
+		registeredName = objectName;
+	}
+
+
+	/**
+	 * Removes the metrics from the platform MBean server, if registered.
+	 */
+	public synchronized void unregister() {
+		if(registeredName == null)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+		} catch (JMException e) {} //Already unregistered
+		registeredName = null;
+	}
+
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.sum();
+	}
+
+
+	@Override
+	public long getPagesRead() {
+		return pagesRead.sum();
+	}
+
+
+	@Override
+	public long getReadErrors() {
+		return readErrors.sum();
+	}
+
+
+	@Override
+	public long getRecordsParsed() {
+		return recordsParsed.sum();
+	}
+
+
+	@Override
+	public long getRecordsTransformedIn() {
+		return recordsTransformedIn.sum();
+	}
+
+
+	@Override
+	public long getRecordsTransformedOut() {
+		return recordsTransformedOut.sum();
+	}
+
+
+	@Override
+	public long getRecordsLoaded() {
+		return recordsLoaded.sum();
+	}
+
+
+	@Override
+	public long getPagesLoaded() {
+		return pagesLoaded.sum();
+	}
+
+
+	@Override
+	public Map<String,Long> getStepRecords() {
+		Map<String,Long> records = new LinkedHashMap<>();
+
+		synchronized (stepRecords) {
+			stepRecords.forEach((step, inAndOut) -> {
+				records.put(step + ".in", inAndOut[0].sum());
+				records.put(step + ".out", inAndOut[1].sum());
+			});
+		}
+		return records;
+	}
+
+
+	@Override
+	public Map<String,Long> getGauges() {
+		Map<String,Long> values = new LinkedHashMap<>();
+
+		synchronized (gauges) {
+			gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+		}
+		return values;
+	}
+
+
+	@Override
+	public Map<String,Double> getLatencies() {
+		Map<String,Double> latencies = new LinkedHashMap<>();
+
+		synchronized (histograms) {
+			histograms.forEach((step, histogram) -> {
+				latencies.put(step + ".mean", histogram.getMean() / 1e6);
+				latencies.put(step + ".p50", histogram.getPercentile(50) / 1e6);
+				latencies.put(step + ".p99", histogram.getPercentile(99) / 1e6);
+				latencies.put(step + ".max", histogram.getMax() / 1e6);
+			});
+		}
+		return latencies;
+	}
+
+
+	@Override
+	public String getSummary() {
+		StringBuilder summary = new StringBuilder();
+
+		summary.append(String.format("Read %d bytes in %d pages (%d errors), parsed %d objects, "
+				+ "transformed %d into %d, loaded %d in %d pages%n", getBytesRead(), getPagesRead(),
+				getReadErrors(), getRecordsParsed(), getRecordsTransformedIn(), getRecordsTransformedOut(),
+				getRecordsLoaded(), getPagesLoaded()));
+		synchronized (stepRecords) {
+			stepRecords.forEach((step, inAndOut) -> summary.append(String.format("%s transformed %d into %d%n",
+					step, inAndOut[0].sum(), inAndOut[1].sum())));
+		}
+		synchronized (histograms) {
+			histograms.forEach((step, histogram) -> {
+				if(histogram.getCount() > 0)
+					summary.append(String.format("%-10s %6d times, total %9.1fms, mean %8.3fms, "
+							+ "p50 %8.3fms, p99 %8.3fms, max %8.3fms%n", step, histogram.getCount(),
+							histogram.getTotal() / 1e6, histogram.getMean() / 1e6,
+							histogram.getPercentile(50) / 1e6, histogram.getPercentile(99) / 1e6,
+							histogram.getMax() / 1e6));
+			});
+		}
+		getGauges().forEach((name, value) -> summary.append(name).append(" = ").append(value)
+				.append(System.lineSeparator()));
+
+		return summary.toString();
+	}
+
+
+
+	/**
+	 * Histogram of durations in buckets of powers of two nanoseconds.
+	 * Percentiles are estimated by the upper bound of their bucket,
+	 * so they are at most twice the exact value.
+	 */
+	public static class Histogram {
+
+		private final AtomicLongArray buckets = new AtomicLongArray(64);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder total = new LongAdder();
+		private final AtomicLong max = new AtomicLong();
+
+
+		/**
+		 * @param nanos A duration, negative ones are counted as 0.
+		 */
+		public void record(long nanos) {
+			nanos = Math.max(0, nanos);
+			buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+			count.increment();
+			total.add(nanos);
+			max.accumulateAndGet(nanos, Math::max);
+		}
+
+
+		/**
+		 * @return The number of durations recorded.
+		 */
+		public long getCount() {
+			return count.sum();
+		}
+
+
+		/**
+		 * @return The sum of the durations in nanoseconds.
+		 */
+		public long getTotal() {
+			return total.sum();
+		}
+
+
+		/**
+		 * @return The mean duration in nanoseconds, 0 if none was recorded.
+		 */
+		public double getMean() {
+			long recorded = count.sum();
+			return recorded == 0 ? 0 : (double) total.sum() / recorded;
+		}
+
+
+		/**
+		 * @return The longest duration in nanoseconds.
+		 */
+		public long getMax() {
+			return max.get();
+		}
+
+
+		/**
+		 * @param percentile From 0 to 100.
+		 * @return The estimated duration in nanoseconds below which the percentile of durations fall.
+		 */
+		public long getPercentile(double percentile) {
+			long recorded = 0;
+			long rank;
+
+			for(int bucketI = 0; bucketI < buckets.length(); bucketI++)
+				recorded += buckets.get(bucketI);
+			rank = (long) Math.ceil(recorded * percentile / 100);
+
+			for(int bucketI = 0; bucketI < buckets.length() && recorded > 0; bucketI++) {
+				rank -= buckets.get(bucketI);
+				if(rank <= 0)
+					return Math.min(max.get(), bucketI == 62 ? Long.MAX_VALUE : (2L << bucketI) - 1);
+			}
+			return max.get();
+		}
+
+	}
+
+}
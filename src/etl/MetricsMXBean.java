@@ -0,0 +1,73 @@
+package etl;
+
+import java.util.Map;
+
+/**
+ * Management interface of the {@link Metrics} of an ETL run, exposed through JMX.
+ * @author Andres Arturo Sanchez Dorantes
+ */
+public interface MetricsMXBean {
+
+	/**
+	 * @return The number of bytes read from the sources.
+	 */
+	public long getBytesRead();
+
+	/**
+	 * @return The number of pages read from the sources.
+	 */
+	public long getPagesRead();
+
+	/**
+	 * @return The number of failed attempts to read from the sources.
+	 */
+	public long getReadErrors();
+
+	/**
+	 * @return The number of objects parsed from the sources.
+	 */
+	public long getRecordsParsed();
+
+	/**
+	 * @return The number of objects handed to the transformation.
+	 */
+	public long getRecordsTransformedIn();
+
+	/**
+	 * @return The number of objects returned by the transformation.
+	 */
+	public long getRecordsTransformedOut();
+
+	/**
+	 * @return The number of objects handed to and returned by each step of a chained
+	 *         transformation, by keys of the form transform.step.in and transform.step.out.
+	 */
+	public Map<String,Long> getStepRecords();
+
+	/**
+	 * @return The number of objects written to the destination.
+	 */
+	public long getRecordsLoaded();
+
+	/**
+	 * @return The number of pages written to the destination.
+	 */
+	public long getPagesLoaded();
+
+	/**
+	 * @return The current value of every gauge, e.g. the tasks queued in each stage.
+	 */
+	public Map<String,Long> getGauges();
+
+	/**
+	 * @return The mean, 50th and 99th percentile and maximum milliseconds of each
+	 *         timed step, by keys of the form step.mean, step.p50, step.p99 and step.max.
+	 */
+	public Map<String,Double> getLatencies();
+
+	/**
+	 * @return A human readable summary of every metric.
+	 */
+	public String getSummary();
+
+}
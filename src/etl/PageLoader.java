@@ -0,0 +1,61 @@
+package etl;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provides a common interface to load the pages of transformed data
+ * handed out by the {@link ETL} process into one or more resources.
+ * <p>
+ * Pages are identified by their position in the extraction, so they
+ * can be loaded in order even if they arrive out of it.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public interface PageLoader {
+
+	/**
+	 * Makes the loader count the pages loaded and time their serialization
+	 * and writing in the given metrics, which also report the pages waiting.
+	 */
+	public void setMetrics(Metrics metrics);
+
+
+	/**
+	 * Loads a page of data into the resources.
+	 * @param sequence The position of the page in the extraction, starting at 0 and without gaps.
+	 * @param maps The page of Maps to load.
+	 */
+	public void load(long sequence, List<Map<String,Object>> maps);
+
+
+	/**
+	 * Informs that a page will never be loaded, e.g. because its extraction
+	 * failed, so that the pages after it are not held back.
+	 * @param sequence The position of the missing page.
+	 */
+	public void skip(long sequence);
+
+
+	/**
+	 * Waits until every page before the given one has been loaded or skipped.
+	 * Used to stop pages from getting too far ahead of the ones holding them back.
+	 * Returns at once if the thread is interrupted, keeping its interrupt status.
+	 * @param sequence The position of the page, nothing is waited for if not positive.
+	 */
+	public void awaitLoaded(long sequence);
+
+
+	/**
+	 * Loads last data and closes connections.
+	 * Should only be called once at the end of the loading process.
+	 */
+	public void finish();
+
+
+	/**
+	 * @return The number of pages waiting for previous ones to be written.
+	 */
+	public long getPendingPages();
+
+}
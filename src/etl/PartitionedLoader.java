@@ -0,0 +1,144 @@
+package etl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * PartitionedLoader is the class responsible for loading transformed
+ * data into several resources at the same time.
+ * <p>
+ * Each Map is routed by the hash of the value of a key attribute to one of
+ * several shards, so Maps with the same value always end up in the same
+ * shard. Every shard is a {@link Loader} with its own Writer and its own
+ * thread: shards write in parallel, each of them in order of extraction
+ * and with its own headers on its first page. The PartitionedLoader has no
+ * resource of its own, it only hands the pages to the shards.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class PartitionedLoader implements PageLoader {
+
+	private List<Loader> shards;
+	private List<Stage> shardStages;
+	private String key;
+
+
+	/**
+	 * @param shards The Loaders of each shard.
+	 * @param key The attribute whose value decides the shard of each Map.
+	 * @param queueSize The number of pages each shard can hold waiting
+	 *        before blocking whoever loads new ones.
+	 */
+	public PartitionedLoader(List<Loader> shards, String key, int queueSize) {
+		this.shards = new ArrayList<>(shards);
+		this.shardStages = new ArrayList<>(shards.size());
+		this.key = key;
+
+		for(int shardI = 0; shardI < shards.size(); shardI++)
+			shardStages.add(new Stage("load-shard-" + shardI, 1, Math.max(1, queueSize)));
+	}
+
+
+	/**
+	 * Makes every shard report to the same metrics, which also report
+	 * the pages queued for each shard.
+	 * @see etl.PageLoader#setMetrics(etl.Metrics)
+	 */
+	@Override
+	public void setMetrics(Metrics metrics) {
+		for(int shardI = 0; shardI < shards.size(); shardI++) {
+			Stage stage = shardStages.get(shardI);
+			shards.get(shardI).setMetrics(metrics);
+			metrics.addGauge("queue.load-shard-" + shardI, stage::getQueued);
+		}
+		metrics.addGauge("load.pending", this::getPendingPages); //The pending pages of all the shards
+	}
+
+
+	/**
+	 * @return The pages waiting in every shard.
+	 * @see etl.PageLoader#getPendingPages()
+	 */
+	@Override
+	public long getPendingPages() {
+		long pending = 0;
+		for(Loader shard : shards)
+			pending += shard.getPendingPages();
+		return pending;
+	}
+
+
+	/**
+	 * Splits a page among the shards.
+	 * Shards without Maps of the page skip it, so the following pages are not held back.
+	 * @see etl.PageLoader#load(long, java.util.List)
+	 */
+	@Override
+	public void load(long sequence, List<Map<String,Object>> maps) {
+		List<List<Map<String,Object>>> parts = new ArrayList<>(shards.size());
+
+		for(int shardI = 0; shardI < shards.size(); shardI++)
+			parts.add(new ArrayList<>(maps.size() / shards.size() + 1));
+		for(Map<String,Object> map : maps)
+			parts.get(shardOf(map)).add(map);
+
+		for(int shardI = 0; shardI < shards.size(); shardI++) {
+			Loader shard = shards.get(shardI);
+			List<Map<String,Object>> part = parts.get(shardI);
+
+			shardStages.get(shardI).execute(() -> {
+				if(part.isEmpty())
+					shard.skip(sequence);
+				else
+					shard.load(sequence, part);
+			});
+		}
+	}
+
+
+	/* (non-Javadoc)
+	 * @see etl.PageLoader#skip(long)
+	 */
+	@Override
+	public void skip(long sequence) {
+		for(int shardI = 0; shardI < shards.size(); shardI++) {
+			Loader shard = shards.get(shardI);
+			shardStages.get(shardI).execute(() -> shard.skip(sequence));
+		}
+	}
+
+
+	/**
+	 * Waits until every shard has written or skipped the pages before the given one.
+	 * @see etl.PageLoader#awaitLoaded(long)
+	 */
+	@Override
+	public void awaitLoaded(long sequence) {
+		for(Loader shard : shards)
+			shard.awaitLoaded(sequence);
+	}
+
+
+	/**
+	 * Waits for every shard to write its pages and finishes all of them.
+	 * @see etl.PageLoader#finish()
+	 */
+	@Override
+	public void finish() {
+		for(int shardI = 0; shardI < shards.size(); shardI++)
+			shardStages.get(shardI).execute(shards.get(shardI)::finish);
+		for(Stage stage : shardStages)
+			stage.finish();
+	}
+
+
+	/**
+	 * @return The index of the shard where to load a Map.
+	 */
+	private int shardOf(Map<String,Object> map) {
+		return Math.floorMod(Objects.hashCode(map.get(key)), shards.size());
+	}
+
+}
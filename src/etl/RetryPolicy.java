@@ -0,0 +1,143 @@
+package etl;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RetryPolicy is the class responsible for deciding when a failed
+ * read from a source is attempted again.
+ * <p>
+ * Delays grow exponentially with the consecutive failures up to a maximum,
+ * and each one is drawn at random between 0 and that value (full jitter),
+ * so many sources failing at the same time don't retry in lockstep.
+ * Besides the consecutive failures allowed, every source has a budget of
+ * failures for the whole extraction, so a flaky source can't keep
+ * retrying forever by succeeding every now and then.
+ * <p>
+ * Retries are scheduled on a shared timer instead of sleeping, so no
+ * thread is held while waiting for them. Once due, a retry is offered to
+ * the {@link Stage} running it and offered again a moment later while the
+ * Stage is full, so a busy Stage holds up its own retries only, without
+ * holding any thread either.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class RetryPolicy {
+
+	/**
+	 * The milliseconds to wait before offering a task again to a full Stage.
+	 */
+	private static final long FULL_STAGE_DELAY = 10;
+
+	private static ScheduledExecutorService scheduler;
+
+	private int maxAttempts;
+	private long baseDelay;
+	private long maxDelay;
+	private int budget;
+
+
+	/**
+	 * @param maxAttempts The number of consecutive attempts to read before giving up.
+	 * @param baseDelay The milliseconds the first retry waits at most.
+	 * @param maxDelay The milliseconds any retry waits at most.
+	 * @param budget The number of failures a source can recover from in the whole extraction.
+	 */
+	public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay, int budget) {
+		super();
+		this.maxAttempts = maxAttempts;
+		this.baseDelay = Math.max(0, baseDelay);
+		this.maxDelay = Math.max(this.baseDelay, maxDelay);
+		this.budget = budget;
+	}
+
+
+
+	/**
+	 * @param failures The number of consecutive failures so far.
+	 * @param totalFailures The number of failures of the source in the whole extraction.
+	 * @return Whether a read should be attempted again.
+	 */
+	public boolean canRetry(int failures, int totalFailures) {
+		return failures < maxAttempts && totalFailures <= budget;
+	}
+
+
+
+	/**
+	 * Draws the delay of the next retry.
+	 * @param failures The number of consecutive failures so far, from 1.
+	 * @return A random number of milliseconds between 0 and the exponential backoff.
+	 */
+	public long getDelay(int failures) {
+		int doublings = Math.min(62, Math.max(0, failures - 1));
+		long backoff = baseDelay > maxDelay >> doublings ? maxDelay : baseDelay << doublings;
+
+		return backoff == 0 ? 0 : ThreadLocalRandom.current().nextLong(backoff + 1);
+	}
+
+
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+
+
+	public int getBudget() {
+		return budget;
+	}
+
+
+
+	/**
+	 * Hands a retry to the executor once its delay is over.
+	 * @param retry The attempt to make again.
+	 * @param executor Makes the retry.
+	 * @param delay The milliseconds to wait before handing in the retry.
+	 * @see #handOver(Runnable, Executor)
+	 */
+	static void schedule(Runnable retry, Executor executor, long delay) {
+		getScheduler().schedule(() -> handOver(retry, executor), delay, TimeUnit.MILLISECONDS);
+	}
+
+
+
+	/**
+	 * Hands a task to the executor without blocking the calling thread.
+	 * A {@link Stage} with no room for the task is offered it again by the
+	 * shared timer a moment later, until it takes it. Any other executor is
+	 * handed the task right away, so it should never block.
+	 * @param task The task to run.
+	 * @param executor Runs the task.
+	 */
+	static void handOver(Runnable task, Executor executor) {
+		if(!(executor instanceof Stage))
+			executor.execute(task);
+		else if(!((Stage) executor).offer(task))
+			getScheduler().schedule(() -> handOver(task, executor), FULL_STAGE_DELAY, TimeUnit.MILLISECONDS);
+	}
+
+
+
+	/**
+	 * @return The timer shared by every retry, its only thread never waits
+	 *         for whoever runs the retries.
+	 */
+	private static synchronized ScheduledExecutorService getScheduler() {
+		if(scheduler == null) {
+			ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+				Thread thread = new Thread(runnable, "etl-retry");
+				thread.setDaemon(true);
+				return thread;
+			});
+			executor.setRemoveOnCancelPolicy(true);
+			scheduler = executor;
+		}
+		return scheduler;
+	}
+
+}
@@ -0,0 +1,227 @@
+
+package etl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stage is the class responsible for running one step of the ETL
+ * pipeline (parsing, transforming or loading) on its own pool of threads.
+ * <p>
+ * Tasks wait in a bounded queue and whoever hands a task to a full Stage
+ * is blocked until there is room for it, so a slow Stage applies
+ * backpressure to all the ones before it down to the extraction.
+ * <p>
+ * Alternatively, a Stage can run every task on a thread of its own, meant for
+ * virtual threads, and block whoever hands in a task while a maximum number
+ * of them are running instead. It suits steps blocked on I/O most of the time,
+ * which then need no pool sized to the number of requests in flight.
+ * <p>
+ * Tasks can also be offered to a Stage, which takes them only if it can
+ * without blocking, for threads that must never wait for a Stage.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class Stage implements Executor {
+
+	private String name;
+	private ThreadPoolExecutor executor; //Null when running a thread per task
+	private ThreadFactory threadFactory;
+	private Semaphore permits; //Tasks that can still start when running a thread per task
+	private int maxRunning;
+	private volatile boolean finished;
+
+
+	/**
+	 * @param name The name of the Stage, used to name its threads.
+	 * @param threads The number of threads working on the Stage.
+	 * @param queueSize The number of tasks that can wait for a thread
+	 *        before blocking whoever hands in new ones.
+	 */
+	public Stage(String name, int threads, int queueSize) {
+		super();
+		AtomicInteger threadsCount = new AtomicInteger();
+
+		this.name = name;
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueSize),
+				runnable -> new Thread(runnable, "etl-" + name + "-" + threadsCount.incrementAndGet()),
+				(runnable, pool) -> { //Blocks until there is room in the queue
+					if(pool.isShutdown())
+						throw new RejectedExecutionException("Stage " + name + " already finished");
+					if(runnable instanceof Offered)
+						throw new RejectedExecutionException("Stage " + name + " full");
+					try {
+						pool.getQueue().put(runnable);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new RejectedExecutionException("Interrupted while waiting for stage " + name);
+					}
+				});
+	}
+
+
+	/**
+	 * Creates a Stage running every task on a thread of its own.
+	 * @param name The name of the Stage, used to name its threads.
+	 * @param maxRunning The number of tasks that can run at the same time
+	 *        before blocking whoever hands in new ones.
+	 * @param threadFactory Creates the thread of each task.
+	 */
+	public Stage(String name, int maxRunning, ThreadFactory threadFactory) {
+		super();
+		this.name = name;
+		this.threadFactory = threadFactory;
+		this.maxRunning = Math.max(1, maxRunning);
+		this.permits = new Semaphore(this.maxRunning);
+	}
+
+
+	/**
+	 * Creates a Stage running every task on a virtual thread of its own, or
+	 * on a platform thread of its own if the JVM has no virtual threads.
+	 * @param name The name of the Stage, used to name its threads.
+	 * @param maxRunning The number of tasks that can run at the same time
+	 *        before blocking whoever hands in new ones.
+	 * @see VirtualThreads
+	 */
+	public static Stage ofVirtualThreads(String name, int maxRunning) {
+		AtomicInteger threadsCount = new AtomicInteger();
+
+		return new Stage(name, maxRunning, VirtualThreads.isAvailable()
+				? VirtualThreads.factory("etl-" + name + "-")
+				: runnable -> new Thread(runnable, "etl-" + name + "-" + threadsCount.incrementAndGet()));
+	}
+
+
+	/**
+	 * Hands a task to the Stage.
+	 * Blocks the calling thread while the queue of the Stage is full or,
+	 * running a thread per task, while the maximum of tasks are running.
+	 * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+	 */
+	@Override
+	public void execute(Runnable task) {
+		if(executor != null) {
+			executor.execute(task);
+			return;
+		}
+		
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException("Interrupted while waiting for stage " + name);
+		}
+		start(task);
+	}
+
+
+	/**
+	 * Hands a task to the Stage only if there is room for it right away.
+	 * @return Whether the Stage took the task, false while the queue of the
+	 *         Stage is full or, running a thread per task, while the maximum
+	 *         of tasks are running.
+	 * @throws RejectedExecutionException If the Stage already finished.
+	 */
+	public boolean offer(Runnable task) {
+		if(executor != null) {
+			try {
+				executor.execute(new Offered(task));
+				return true;
+			} catch (RejectedExecutionException e) {
+				if(executor.isShutdown())
+					throw e;
+				return false;
+			}
+		}
+		
+		if(!permits.tryAcquire())
+			return false;
+		start(task);
+		return true;
+	}
+
+
+	/**
+	 * Runs a task on a thread of its own once its permit is taken.
+	 */
+	private void start(Runnable task) {
+		if(finished) {
+			permits.release();
+			throw new RejectedExecutionException("Stage " + name + " already finished");
+		}
+		threadFactory.newThread(() -> {
+			try {
+				task.run();
+			} finally {
+				permits.release();
+			}
+		}).start();
+	}
+
+
+	/**
+	 * Waits for all the tasks handed to the Stage to finish and frees its threads.
+	 * No more tasks can be handed in afterwards.
+	 */
+	public void finish() {
+		if(executor == null) {
+			finished = true;
+			try { //Every task gives its permit back when done
+				while(!permits.tryAcquire(maxRunning, 1, TimeUnit.MINUTES))
+					System.err.println("Waiting for stage " + name + " to finish");
+				permits.release(maxRunning); //Lets late tasks be rejected instead of blocked
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return;
+		}
+		
+		executor.shutdown();
+		try {
+			while(!executor.awaitTermination(1, TimeUnit.MINUTES))
+				System.err.println("Waiting for stage " + name + " to finish");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/**
+	 * @return The number of tasks waiting in the queue of the Stage,
+	 *         or waiting to start when running a thread per task.
+	 */
+	public int getQueued() {
+		return executor != null ? executor.getQueue().size() : permits.getQueueLength();
+	}
+
+
+
+	/**
+	 * A task offered to the Stage, rejected instead of waiting if the queue is full.
+	 */
+	private static class Offered implements Runnable {
+		
+		private final Runnable task;
+		
+		
+		Offered(Runnable task) {
+			this.task = task;
+		}
+		
+		
+		@Override
+		public void run() {
+			task.run();
+		}
+		
+	}
+
+}
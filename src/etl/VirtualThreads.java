@@ -0,0 +1,68 @@
+package etl;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * VirtualThreads is the class responsible for creating virtual threads
+ * on JVMs that have them while the code stays compatible with older ones.
+ * <p>
+ * Virtual threads are cheap to create and to block, so a blocking call
+ * such as an HTTP request or a write to a file can have a thread of its
+ * own instead of holding a thread of a pool. They are found by reflection,
+ * on JVMs without them (before Java 21, or 19 without preview features)
+ * {@link #isAvailable()} is false.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class VirtualThreads {
+
+	private static final Method OF_VIRTUAL = find();
+
+
+	private VirtualThreads() {}
+
+
+	/**
+	 * @return Whether the JVM can create virtual threads.
+	 */
+	public static boolean isAvailable() {
+		return OF_VIRTUAL != null;
+	}
+
+
+	/**
+	 * @param prefix The beginning of the names of the threads, followed by a counter.
+	 * @return A factory of virtual threads.
+	 * @throws UnsupportedOperationException If the JVM can't create virtual threads.
+	 */
+	public static ThreadFactory factory(String prefix) {
+		if(OF_VIRTUAL == null)
+			throw new UnsupportedOperationException("Virtual threads not supported by this JVM");
+		try {
+			Object builder = OF_VIRTUAL.invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Virtual threads not supported by this JVM", e);
+		}
+	}
+
+
+	/**
+	 * @return The method creating builders of virtual threads, null if not supported.
+	 */
+	private static Method find() {
+		try {
+			Method ofVirtual = Thread.class.getMethod("ofVirtual");
+
+			ofVirtual.invoke(null); //Fails if they are a preview feature not enabled
+			return ofVirtual;
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+}
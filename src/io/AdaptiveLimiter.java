@@ -0,0 +1,320 @@
+package io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * AdaptiveLimiter is the class responsible for finding out how many
+ * concurrent requests an HTTP service can take and holding back the
+ * requests beyond that.
+ * <p>
+ * The limit follows an AIMD scheme driven by the latency: every response
+ * arriving in time raises it by a fraction so that it grows by about one
+ * per round trip, while every failure, overloaded status code or response
+ * slower than a tolerance over the baseline latency cuts it by a factor.
+ * The baseline is the lowest latency of the last two windows of responses,
+ * so it follows lasting changes of the service. The latency is measured
+ * until the headers arrive, regardless of the size of the body. Responses
+ * served by the cache of the client leave the limit as it is, their latency
+ * says nothing of the service.
+ * <p>
+ * Requests beyond the limit wait for others to finish. Requests sent by the
+ * client itself block their thread meanwhile, even a thread of its dispatcher,
+ * so asynchronous requests should be sent through {@link #enqueue(OkHttpClient,
+ * Request, Callback)} instead, which doesn't hand them to the client until
+ * there is room for them. Thread-safe.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class AdaptiveLimiter {
+
+
+	/**
+	 * The factor the limit is multiplied by on congestion.
+	 */
+	private static final double BACKOFF_RATIO = 0.9;
+
+	/**
+	 * The number of responses of each window of the baseline latency.
+	 */
+	private static final int BASELINE_WINDOW = 500;
+
+	/**
+	 * The tag of the requests enqueued once there was room for them.
+	 */
+	private static final Object ADMITTED = new Object();
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double tolerance;
+	private double limit;
+	private int inFlight;
+	private long baseline; //Lowest latency of the previous window
+	private long windowMin; //Lowest latency of the current window
+	private int windowSamples;
+	private double smoothedLatency;
+	private ArrayDeque<CompletableFuture<Void>> waiting; //Requests to enqueue once there is room
+
+
+	/**
+	 * @param initialLimit The number of concurrent requests allowed at first.
+	 * @param minLimit The lowest the limit can be cut to.
+	 * @param maxLimit The highest the limit can grow to.
+	 * @param tolerance How many times the baseline latency a response can
+	 *        take before it is considered a sign of congestion.
+	 */
+	public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+		this.tolerance = tolerance;
+		this.baseline = Long.MAX_VALUE;
+		this.windowMin = Long.MAX_VALUE;
+		this.waiting = new ArrayDeque<>();
+	}
+
+
+	/**
+	 * Makes a client go through the limiter.
+	 * The dispatcher of the client should allow at least the maximum limit.
+	 * @param builder The builder of the client.
+	 * @return The same builder.
+	 */
+	public OkHttpClient.Builder configure(OkHttpClient.Builder builder) {
+		return builder.addInterceptor(this::intercept);
+	}
+
+
+	/**
+	 * Sends a request through the dispatcher of a client once it fits in the
+	 * limit, no thread waits for the room meanwhile.
+	 * @param client The client to send the request through, configured with this limiter.
+	 * @param request The request to send.
+	 * @param callback Receives the response as if the request was enqueued directly.
+	 * @return The future call, completed once enqueued. Cancelling it before
+	 *         drops the request, cancelling the call afterwards fails it.
+	 */
+	public CompletableFuture<Call> enqueue(OkHttpClient client, Request request, Callback callback) {
+		CompletableFuture<Call> enqueued = new CompletableFuture<>();
+
+		acquireAsync().thenRun(() -> {
+			Call call = client.newCall(request.newBuilder().tag(ADMITTED).build());
+
+			if(!enqueued.complete(call)) { //Dropped while waiting
+				release();
+				return;
+			}
+			call.enqueue(new Callback() {
+				@Override
+				public void onFailure(Call call, IOException e) {
+					release(); //Even if failed before reaching the limiter
+					callback.onFailure(call, e);
+				}
+
+				@Override
+				public void onResponse(Call call, Response response) throws IOException {
+					release();
+					callback.onResponse(call, response);
+				}
+			});
+		});
+		return enqueued;
+	}
+
+
+	/**
+	 * Holds the request until it fits in the limit and adapts the limit to its outcome.
+	 * Requests given room by {@link #enqueue(OkHttpClient, Request, Callback)} are not
+	 * held, their room is given back by their callbacks.
+	 */
+	private Response intercept(Interceptor.Chain chain) throws IOException {
+		long start;
+		boolean admitted = chain.request().tag() == ADMITTED;
+		boolean congested = true;
+		boolean cached = false;
+
+		if(!admitted)
+			acquire();
+		start = System.nanoTime();
+		try {
+			Response response = chain.proceed(chain.request());
+			congested = HttpReader.isTransient(response.code());
+			cached = response.networkResponse() == null; //Served from disk without asking the service
+			return response;
+		} finally {
+			if(admitted) {
+				if(!cached)
+					sample(System.nanoTime() - start, congested);
+			}
+			else if(cached)
+				release();
+			else
+				release(System.nanoTime() - start, congested);
+		}
+	}
+
+
+	/**
+	 * Waits until there is room for another request.
+	 */
+	synchronized void acquire() throws InterruptedIOException {
+		while(inFlight >= (int) limit)
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the concurrency limit");
+			}
+		inFlight++;
+	}
+
+
+	/**
+	 * Takes room for another request without waiting for it.
+	 * @return Completed once there is room, by the thread giving it back.
+	 */
+	synchronized CompletableFuture<Void> acquireAsync() {
+		CompletableFuture<Void> admitted;
+
+		if(inFlight < (int) limit && waiting.isEmpty()) {
+			inFlight++;
+			return CompletableFuture.completedFuture(null);
+		}
+		admitted = new CompletableFuture<>();
+		waiting.add(admitted);
+		return admitted;
+	}
+
+
+	/**
+	 * Frees the room of a finished request and adapts the limit.
+	 * @param latency The nanoseconds the request took.
+	 * @param congested Whether it failed or the service said to be overloaded.
+	 */
+	void release(long latency, boolean congested) {
+		List<CompletableFuture<Void>> admitted;
+
+		synchronized(this) {
+			boolean limited = inFlight >= (int) limit; //Only a limit in use can be proven too low
+
+			inFlight--;
+			adapt(latency, congested, limited);
+			admitted = admitWaiting();
+		}
+		admitted.forEach(request -> request.complete(null)); //Enqueued outside the lock
+	}
+
+
+	/**
+	 * Frees the room of a finished request without adapting the limit.
+	 */
+	void release() {
+		List<CompletableFuture<Void>> admitted;
+
+		synchronized(this) {
+			inFlight--;
+			notifyAll();
+			admitted = admitWaiting();
+		}
+		admitted.forEach(request -> request.complete(null));
+	}
+
+
+	/**
+	 * Adapts the limit to the outcome of a request still holding its room.
+	 * @param latency The nanoseconds the request took.
+	 * @param congested Whether it failed or the service said to be overloaded.
+	 */
+	void sample(long latency, boolean congested) {
+		List<CompletableFuture<Void>> admitted;
+
+		synchronized(this) {
+			adapt(latency, congested, inFlight >= (int) limit);
+			admitted = admitWaiting();
+		}
+		admitted.forEach(request -> request.complete(null));
+	}
+
+
+	/**
+	 * Adapts the limit to the outcome of a request, waking up the requests
+	 * waiting if there is room for them.
+	 * @param limited Whether the limit was in use when the request finished.
+	 */
+	private void adapt(long latency, boolean congested, boolean limited) {
+		int before = (int) limit;
+
+		if(!congested) {
+			windowMin = Math.min(windowMin, latency);
+			if(++windowSamples >= BASELINE_WINDOW) {
+				baseline = windowMin;
+				windowMin = Long.MAX_VALUE;
+				windowSamples = 0;
+			}
+			smoothedLatency = smoothedLatency == 0 ? latency : smoothedLatency * 0.9 + latency * 0.1;
+		}
+
+		if(congested || latency > Math.min(baseline, windowMin) * tolerance)
+			limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+		else if(limited || inFlight * 2 >= limit)
+			limit = Math.min(maxLimit, limit + 1 / limit);
+
+		if((int) limit > before || inFlight < (int) limit)
+			notifyAll();
+	}
+
+
+	/**
+	 * Gives the room left to the requests waiting for it, in order.
+	 * @return The requests to enqueue.
+	 */
+	private List<CompletableFuture<Void>> admitWaiting() {
+		List<CompletableFuture<Void>> admitted;
+
+		if(waiting.isEmpty() || inFlight >= (int) limit)
+			return Collections.emptyList();
+		admitted = new ArrayList<>();
+		while(!waiting.isEmpty() && inFlight < (int) limit) {
+			inFlight++;
+			admitted.add(waiting.poll());
+		}
+		return admitted;
+	}
+
+
+	/**
+	 * @return The number of concurrent requests currently allowed.
+	 */
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+
+	/**
+	 * @return The number of requests being sent.
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+
+	/**
+	 * @return The moving average of the latency of the successful requests in nanoseconds.
+	 */
+	public synchronized long getLatency() {
+		return (long) smoothedLatency;
+	}
+
+}
@@ -0,0 +1,26 @@
+package io;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Provides a common interface to progressively query resources
+ * and services for information without blocking while waiting
+ * for the responses.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public interface AsyncReader extends Reader {
+
+	/**
+	 * Queries a specific resource or service and returns at once,
+	 * the response is handed out when it arrives.
+	 * <p>
+	 * Behaves as {@link read()} regarding pagination once the
+	 * response arrives, so only one query should be in flight at a time.
+	 * @return The future encoded String representing the information
+	 *         queried, completed with an IOException if the query to the
+	 *         resource or service fails or the answer is corrupted.
+	 */
+	public CompletableFuture<String> readAsync();
+
+}
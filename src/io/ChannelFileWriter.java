@@ -0,0 +1,141 @@
+package io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * ChannelFileWriter is the class responsible for writing big amounts
+ * of data to a local file with few system calls.
+ * <p>
+ * The data is encoded as UTF-8 into a reusable direct buffer which is
+ * written to the file channel only once it is full, so pages are batched
+ * into large writes. Errors are reported by the appends filling the buffer.
+ * How often the data is forced to the storage device is configurable:
+ * never, only on close or every given number of bytes.
+ * <p>
+ * Not thread-safe, the writer must be used by one thread at a time.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class ChannelFileWriter extends EncodingWriter {
+
+
+	/**
+	 * Never forces the data to the storage device, the OS decides when.
+	 */
+	public static final long SYNC_NEVER = -1;
+
+	/**
+	 * Forces the data to the storage device only when closing the file.
+	 */
+	public static final long SYNC_ON_CLOSE = 0;
+
+	private FileChannel channel;
+	private long syncInterval;
+	private long unsyncedBytes;
+	private long writes;
+	private long syncs;
+
+
+	/**
+	 * @param path The path of the file to create or replace.
+	 * @param bufferSize The number of bytes to write to the file at a time.
+	 * @param syncInterval The number of bytes after which the data is forced
+	 *        to the storage device, {@link #SYNC_NEVER} or {@link #SYNC_ON_CLOSE}.
+	 * @throws IOException If the file can't be opened.
+	 */
+	public ChannelFileWriter(String path, int bufferSize, long syncInterval) throws IOException {
+		super(ByteBuffer.allocateDirect(Math.max(1024, bufferSize)));
+		this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		this.syncInterval = syncInterval;
+	}
+
+
+	/**
+	 * Creates a writer with a 1MB buffer forcing the data only on close.
+	 * @see #ChannelFileWriter(String, int, long)
+	 */
+	public ChannelFileWriter(String path) throws IOException {
+		this(path, 1024 * 1024, SYNC_ON_CLOSE);
+	}
+
+
+	/**
+	 * Writes the data left and forces it to the storage device unless
+	 * the sync policy is {@link #SYNC_NEVER}.
+	 * @see io.Writer#close()
+	 */
+	@Override
+	public void close() {
+		try {
+			writeBytes(finishEncoding());
+
+			if(syncInterval != SYNC_NEVER && unsyncedBytes > 0)
+				sync();
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+		} finally { //Released even if the data can't be written
+			try {
+				channel.close();
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+			}
+		}
+	}
+
+
+	/**
+	 * @return The number of writes made to the file.
+	 */
+	public long getWrites() {
+		return writes;
+	}
+
+
+	/**
+	 * @return The number of times the data was forced to the storage device.
+	 */
+	public long getSyncs() {
+		return syncs;
+	}
+
+
+	/**
+	 * Writes the full buffer and reuses it.
+	 * @see io.EncodingWriter#nextBuffer(java.nio.ByteBuffer)
+	 */
+	@Override
+	protected ByteBuffer nextBuffer(ByteBuffer full) throws IOException {
+		writeBytes(full);
+		return full;
+	}
+
+
+	/**
+	 * Writes the whole buffer of bytes to the file.
+	 */
+	private void writeBytes(ByteBuffer bytes) throws IOException {
+		bytes.flip();
+		unsyncedBytes += bytes.remaining();
+		while(bytes.hasRemaining()) {
+			channel.write(bytes);
+			writes++;
+		}
+		bytes.clear();
+
+		if(syncInterval > 0 && unsyncedBytes >= syncInterval)
+			sync();
+	}
+
+
+	private void sync() throws IOException {
+		channel.force(false);
+		syncs++;
+		unsyncedBytes = 0;
+	}
+
+}
@@ -0,0 +1,173 @@
+package io;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+
+/**
+ * CircuitBreaker is the class responsible for failing requests fast
+ * while an HTTP service is failing, instead of adding load to it.
+ * <p>
+ * While closed, the outcomes of the last requests are kept and once the
+ * rate of failures (connection errors and server error status codes)
+ * reaches a threshold the breaker opens. While open, every request fails
+ * at once with a {@link CircuitOpenException} telling when to retry it, which
+ * readers don't count as a failed attempt. After some time the breaker lets a
+ * single request through to probe the service: it closes if the probe succeeds
+ * and opens again otherwise.
+ * <p>
+ * Thread-safe.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class CircuitBreaker {
+
+
+	/**
+	 * The states of the breaker, by their number in the metrics.
+	 */
+	public enum State { CLOSED, OPEN, HALF_OPEN }
+
+	private final double failureThreshold;
+	private final boolean[] outcomes; //Whether each of the last requests failed, circular
+	private final long openMillis;
+	private int outcomeI;
+	private int recorded;
+	private int failures;
+	private State state;
+	private long openedAt;
+	private boolean probing;
+	private long rejected;
+
+
+	/**
+	 * @param failureThreshold The rate of failed requests, over 0 and up to 1, that opens the breaker.
+	 * @param window The number of last requests the rate is calculated on, at least
+	 *        half of them have to be completed before opening.
+	 * @param openMillis The milliseconds to fail fast before probing the service.
+	 */
+	public CircuitBreaker(double failureThreshold, int window, long openMillis) {
+		this.failureThreshold = failureThreshold;
+		this.outcomes = new boolean[Math.max(1, window)];
+		this.openMillis = openMillis;
+		this.state = State.CLOSED;
+	}
+
+
+	/**
+	 * Makes a client go through the breaker.
+	 * @param builder The builder of the client.
+	 * @return The same builder.
+	 */
+	public OkHttpClient.Builder configure(OkHttpClient.Builder builder) {
+		return builder.addInterceptor(this::intercept);
+	}
+
+
+	/**
+	 * Lets the request through if the breaker allows it and records its outcome.
+	 */
+	private Response intercept(Interceptor.Chain chain) throws IOException {
+		boolean probe = admit(chain);
+		boolean failed = true;
+
+		try {
+			Response response = chain.proceed(chain.request());
+			failed = isFailure(response.code());
+			return response;
+		} finally {
+			record(probe, failed);
+		}
+	}
+
+
+	/**
+	 * @return Whether the request is the probe of a half-open breaker.
+	 * @throws CircuitOpenException If the breaker is open.
+	 */
+	private synchronized boolean admit(Interceptor.Chain chain) throws CircuitOpenException {
+		long openFor = System.currentTimeMillis() - openedAt;
+
+		if(state == State.OPEN && openFor >= openMillis)
+			state = State.HALF_OPEN;
+
+		if(state == State.CLOSED)
+			return false;
+		if(state == State.HALF_OPEN && !probing) {
+			probing = true;
+			return true;
+		}
+		rejected++;
+		throw new CircuitOpenException("Circuit breaker open, " + chain.request().url() + " not requested",
+				state == State.OPEN ? openMillis - openFor : openMillis); //The probe may fail and reopen it
+	}
+
+
+	/**
+	 * Records the outcome of a request, opening or closing the breaker if needed.
+	 * @param probe Whether the request was the probe of a half-open breaker.
+	 * @param failed Whether the request failed.
+	 */
+	synchronized void record(boolean probe, boolean failed) {
+		if(probe) {
+			probing = false;
+			if(failed)
+				open();
+			else
+				close();
+		}
+		else if(state == State.CLOSED) { //Requests sent before opening don't count
+			if(recorded == outcomes.length && outcomes[outcomeI])
+				failures--;
+			outcomes[outcomeI] = failed;
+			outcomeI = (outcomeI + 1) % outcomes.length;
+			recorded = Math.min(outcomes.length, recorded + 1);
+			if(failed)
+				failures++;
+
+			if(recorded * 2 >= outcomes.length && failures >= failureThreshold * recorded)
+				open();
+		}
+	}
+
+
+	private void open() {
+		state = State.OPEN;
+		openedAt = System.currentTimeMillis();
+	}
+
+
+	private void close() {
+		state = State.CLOSED;
+		recorded = 0;
+		failures = 0;
+		outcomeI = 0;
+	}
+
+
+	/**
+	 * @return Whether the status code is a failure of the service rather than of the request.
+	 */
+	private static boolean isFailure(int code) {
+		return code >= 500 || HttpReader.isTransient(code);
+	}
+
+
+	/**
+	 * @return The current state, an open breaker is reported as such until probed.
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+
+
+	/**
+	 * @return The number of requests failed fast.
+	 */
+	public synchronized long getRejected() {
+		return rejected;
+	}
+
+}
@@ -0,0 +1,39 @@
+package io;
+
+import java.io.IOException;
+
+/**
+ * A request failed fast by an open {@link CircuitBreaker} without being sent.
+ * <p>
+ * As opposed to other IOExceptions it says nothing of the request itself,
+ * so it is not worth counting as a failed attempt, only to retry the request
+ * once the breaker lets requests through again.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class CircuitOpenException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long retryAfter;
+
+
+	/**
+	 * @param message The detail message.
+	 * @param retryAfter The milliseconds until the breaker probes the service.
+	 */
+	public CircuitOpenException(String message, long retryAfter) {
+		super(message);
+		this.retryAfter = Math.max(0, retryAfter);
+	}
+
+
+	/**
+	 * @return The milliseconds until the breaker probes the service, the
+	 *         request may be rejected again if the probe is still running or fails.
+	 */
+	public long getRetryAfter() {
+		return retryAfter;
+	}
+
+}
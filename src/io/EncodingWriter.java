@@ -0,0 +1,183 @@
+package io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * EncodingWriter is the base of the writers encoding the data as UTF-8
+ * straight into a byte buffer, without building Strings nor byte arrays.
+ * Binary data can be written into the same buffer as well.
+ * <p>
+ * Subclasses decide what a buffer is and what to do with it once full.
+ * <p>
+ * Not thread-safe, the writer must be used by one thread at a time.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public abstract class EncodingWriter implements Writer {
+
+	private CharsetEncoder encoder;
+	private CharBuffer chars; //Characters appended waiting to be encoded
+	private ByteBuffer bytes; //Encoded bytes waiting to be handled
+	private Appendable buffer;
+	private OutputStream stream;
+
+
+	/**
+	 * @param bytes The first buffer where to encode the data.
+	 */
+	protected EncodingWriter(ByteBuffer bytes) {
+		this.encoder = StandardCharsets.UTF_8.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.chars = CharBuffer.allocate(8192);
+		this.bytes = bytes;
+		this.buffer = new Encoder();
+		this.stream = new ByteStream();
+	}
+
+
+	/* (non-Javadoc)
+	 * @see io.Writer#write(java.lang.String)
+	 */
+	@Override
+	public void write(String write) throws IOException {
+		buffer.append(write);
+	}
+
+
+	/**
+	 * Encodes straight into the byte buffer.
+	 * @see io.Writer#getBuffer()
+	 */
+	@Override
+	public Appendable getBuffer() {
+		return buffer;
+	}
+
+
+	/**
+	 * Writes straight into the byte buffer, after the text appended so far.
+	 * @see io.Writer#getOutputStream()
+	 */
+	@Override
+	public OutputStream getOutputStream() {
+		return stream;
+	}
+
+
+	/**
+	 * Handles a buffer full of encoded bytes.
+	 * @param full The buffer, its position is the number of bytes encoded.
+	 * @return The buffer where to keep encoding, either the same cleared or a new one.
+	 * @throws IOException If the bytes can't be handled.
+	 */
+	protected abstract ByteBuffer nextBuffer(ByteBuffer full) throws IOException;
+
+
+	/**
+	 * Encodes every character left, should only be called once when closing.
+	 * @return The buffer holding the last bytes encoded, its position is their number.
+	 */
+	protected ByteBuffer finishEncoding() throws IOException {
+		chars.flip();
+		while(encoder.encode(chars, bytes, true).isOverflow())
+			bytes = nextBuffer(bytes);
+		while(encoder.flush(bytes).isOverflow())
+			bytes = nextBuffer(bytes);
+		return bytes;
+	}
+
+
+	/**
+	 * Encodes the characters appended so far, handing the bytes each time the buffer fills up.
+	 * Characters of incomplete surrogate pairs are kept for the next call.
+	 */
+	private void encodeChars() throws IOException {
+		CoderResult result;
+
+		chars.flip();
+		while((result = encoder.encode(chars, bytes, false)).isOverflow())
+			bytes = nextBuffer(bytes);
+		if(result.isError())
+			result.throwException();
+		chars.compact();
+	}
+
+
+
+	/**
+	 * Writes bytes to the buffer of the writer.
+	 */
+	private class ByteStream extends OutputStream {
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] {(byte) b}, 0, 1);
+		}
+
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if(chars.position() > 0) //Text appended before
+				encodeChars();
+
+			while(len > 0) {
+				int length;
+				if(!bytes.hasRemaining())
+					bytes = nextBuffer(bytes);
+				length = Math.min(len, bytes.remaining());
+				bytes.put(b, off, length);
+				off += length;
+				len -= length;
+			}
+		}
+
+	}
+
+
+
+	/**
+	 * Appends characters to the buffer of the writer.
+	 */
+	private class Encoder implements Appendable {
+
+		@Override
+		public Appendable append(CharSequence csq) throws IOException {
+			String str = csq == null ? "null" : csq.toString();
+			int offset = 0;
+
+			while(offset < str.length()) {
+				int length = Math.min(chars.remaining(), str.length() - offset);
+				chars.put(str, offset, offset + length);
+				offset += length;
+				if(!chars.hasRemaining())
+					encodeChars();
+			}
+			return this;
+		}
+
+
+		@Override
+		public Appendable append(CharSequence csq, int start, int end) throws IOException {
+			return append(csq == null ? "null" : csq.subSequence(start, end));
+		}
+
+
+		@Override
+		public Appendable append(char c) throws IOException {
+			chars.put(c);
+			if(!chars.hasRemaining())
+				encodeChars();
+			return this;
+		}
+
+	}
+
+}
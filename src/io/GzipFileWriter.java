@@ -0,0 +1,186 @@
+package io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * GzipFileWriter is the class responsible for writing compressed data
+ * to a local file using several threads.
+ * <p>
+ * The data is encoded as UTF-8 into blocks of a fixed size, each of which
+ * is compressed on its own by a pool of threads into a complete gzip member.
+ * Members are written in order, so the file is a standard multi-member gzip
+ * file any gzip tool can decompress. Only a few blocks per thread are
+ * compressed at a time, appends wait for the oldest one beyond that.
+ * <p>
+ * Not thread-safe, the writer must be used by one thread at a time.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class GzipFileWriter extends EncodingWriter {
+
+	private FileChannel channel;
+	private ExecutorService compressors;
+	private int level;
+	private int blockSize;
+	private int maxPending;
+	private Queue<CompletableFuture<byte[]>> pendingBlocks; //In order of the data
+	private Queue<ByteBuffer> freeBlocks;
+	private long compressedBytes;
+	private long uncompressedBytes;
+
+
+	/**
+	 * @param path The path of the file to create or replace.
+	 * @param blockSize The number of bytes of data to compress in each block.
+	 * @param level The compression level from 1 (fastest) to 9 (smallest).
+	 * @param threads The number of threads compressing blocks.
+	 * @throws IOException If the file can't be opened.
+	 */
+	public GzipFileWriter(String path, int blockSize, int level, int threads) throws IOException {
+		super(ByteBuffer.allocate(Math.max(4096, blockSize)));
+		this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		this.compressors = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+			Thread thread = new Thread(runnable, "gzip-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.level = level;
+		this.blockSize = Math.max(4096, blockSize);
+		this.maxPending = 2 * Math.max(1, threads);
+		this.pendingBlocks = new ArrayDeque<>();
+		this.freeBlocks = new ConcurrentLinkedQueue<>();
+	}
+
+
+	/**
+	 * Creates a writer compressing blocks of 1MB at the default level with a thread per core.
+	 * @see #GzipFileWriter(String, int, int, int)
+	 */
+	public GzipFileWriter(String path) throws IOException {
+		this(path, 1024 * 1024, 6, Runtime.getRuntime().availableProcessors());
+	}
+
+
+	/**
+	 * Compresses the data left, waits for every block to be written and releases the file.
+	 * Without any data a single empty member is written, so the file is still valid gzip.
+	 * @see io.Writer#close()
+	 */
+	@Override
+	public void close() {
+		try {
+			ByteBuffer last = finishEncoding();
+			if(last.position() > 0 || uncompressedBytes == 0) //An empty file still needs a member
+				compress(last);
+			while(!pendingBlocks.isEmpty())
+				writeBlock();
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+		} finally {
+			compressors.shutdownNow();
+			try {
+				channel.close();
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+			}
+		}
+	}
+
+
+	/**
+	 * @return The ratio between the size of the data and the size of the file.
+	 */
+	public double getCompressionRatio() {
+		return compressedBytes == 0 ? 0 : uncompressedBytes / (double) compressedBytes;
+	}
+
+
+	/**
+	 * Compresses the full block in the background and keeps encoding into a free one.
+	 * @see io.EncodingWriter#nextBuffer(java.nio.ByteBuffer)
+	 */
+	@Override
+	protected ByteBuffer nextBuffer(ByteBuffer full) throws IOException {
+		ByteBuffer next;
+
+		compress(full);
+		while(pendingBlocks.size() >= maxPending || (!pendingBlocks.isEmpty() && pendingBlocks.peek().isDone()))
+			writeBlock(); //Bounds the memory, writing what is ready
+
+		next = freeBlocks.poll();
+		return next != null ? next : ByteBuffer.allocate(blockSize);
+	}
+
+
+	/**
+	 * Queues the compression of a block into a gzip member.
+	 */
+	private void compress(ByteBuffer block) {
+		uncompressedBytes += block.position();
+		pendingBlocks.add(CompletableFuture.supplyAsync(() -> {
+			ByteArrayOutputStream member = new ByteArrayOutputStream(block.position() / 4 + 64);
+
+			try(GZIPOutputStream gzip = new LeveledGZIPOutputStream(member, level)) {
+				gzip.write(block.array(), block.arrayOffset(), block.position());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			block.clear();
+			freeBlocks.add(block);
+
+			return member.toByteArray();
+		}, compressors));
+	}
+
+
+	/**
+	 * Waits for the oldest block to be compressed and writes it.
+	 */
+	private void writeBlock() throws IOException {
+		byte[] member;
+
+		try {
+			member = pendingBlocks.remove().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while compressing", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Could not compress the data", e.getCause());
+		}
+
+		ByteBuffer bytes = ByteBuffer.wrap(member);
+		while(bytes.hasRemaining())
+			channel.write(bytes);
+		compressedBytes += member.length;
+	}
+
+
+
+	/**
+	 * GZIPOutputStream with a given compression level.
+	 */
+	private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+
+		LeveledGZIPOutputStream(ByteArrayOutputStream out, int level) throws IOException {
+			super(out, 64 * 1024);
+			def.setLevel(level);
+		}
+
+	}
+
+}
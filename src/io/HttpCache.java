@@ -0,0 +1,206 @@
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Cache;
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * HttpCache is the class responsible for keeping the responses of
+ * HTTP services between queries and runs.
+ * <p>
+ * Responses are kept in two tiers: a bounded on-disk cache with LRU
+ * eviction that honors Cache-Control and revalidates stale responses
+ * with ETag and Last-Modified conditional requests, and a small in-memory
+ * tier keyed by request URL for fresh responses queried repeatedly.
+ * Optionally the freshness lifetime given by the services can be overridden.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class HttpCache {
+
+
+	/**
+	 * Responses bigger than this are only kept on disk.
+	 */
+	private static final long MAX_MEMORY_ENTRY_SIZE = 256 * 1024;
+
+	private Cache diskCache;
+	private Map<String, CachedResponse> memoryCache;
+	private long ttlSeconds;
+	private AtomicInteger memoryHits;
+	private AtomicInteger revalidations;
+
+
+	/**
+	 * @param directory The directory where to store the responses.
+	 * @param maxDiskSize The maximum number of bytes to store on disk.
+	 * @param maxMemoryEntries The maximum number of responses to keep in memory.
+	 * @param ttlSeconds The number of seconds a response is fresh regardless
+	 *        of what the service says, 0 to honor the service.
+	 */
+	public HttpCache(File directory, long maxDiskSize, int maxMemoryEntries, long ttlSeconds) {
+		this.diskCache = new Cache(directory, maxDiskSize);
+		this.ttlSeconds = ttlSeconds;
+		this.memoryHits = new AtomicInteger();
+		this.revalidations = new AtomicInteger();
+		this.memoryCache = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) { //Access order for LRU
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+				return size() > maxMemoryEntries;
+			}
+		};
+	}
+
+
+	/**
+	 * Makes a client use the cache.
+	 * @param builder The builder of the client.
+	 * @return The same builder.
+	 */
+	public OkHttpClient.Builder configure(OkHttpClient.Builder builder) {
+		return builder
+				.cache(diskCache)
+				.addInterceptor(this::interceptFromMemory)
+				.addNetworkInterceptor(this::interceptFromNetwork);
+	}
+
+
+	/**
+	 * Serves fresh responses from memory and keeps there the small ones
+	 * that can be cached.
+	 */
+	private Response interceptFromMemory(Interceptor.Chain chain) throws IOException {
+		Request request = chain.request();
+		String key = request.url().toString();
+		CachedResponse cached;
+		Response response;
+
+		if(!request.method().equals("GET"))
+			return chain.proceed(request);
+
+		synchronized(memoryCache) {
+			cached = memoryCache.get(key);
+			if(cached != null && cached.expiresAt < System.currentTimeMillis()) { //Stale, revalidated from disk
+				memoryCache.remove(key);
+				cached = null;
+			}
+		}
+		if(cached != null) {
+			memoryHits.incrementAndGet();
+			return cached.toResponse(request);
+		}
+
+		response = chain.proceed(request);
+		long freshSeconds = ttlSeconds > 0 ? ttlSeconds : response.cacheControl().maxAgeSeconds();
+		if(response.isSuccessful() && !response.cacheControl().noStore() && freshSeconds > 0) {
+			ResponseBody body = response.peekBody(MAX_MEMORY_ENTRY_SIZE + 1);
+			if(body.contentLength() <= MAX_MEMORY_ENTRY_SIZE)
+				synchronized(memoryCache) {
+					memoryCache.put(key, new CachedResponse(response, body.bytes(),
+							System.currentTimeMillis() + freshSeconds * 1000));
+				}
+		}
+
+		return response;
+	}
+
+
+	/**
+	 * Counts conditional requests answered with no changes and
+	 * overrides the freshness lifetime of the responses if configured.
+	 */
+	private Response interceptFromNetwork(Interceptor.Chain chain) throws IOException {
+		Response response = chain.proceed(chain.request());
+
+		if(response.code() == HttpURLConnection.HTTP_NOT_MODIFIED)
+			revalidations.incrementAndGet();
+
+		if(ttlSeconds > 0 && response.isSuccessful())
+			response = response.newBuilder()
+					.removeHeader("Pragma")
+					.header("Cache-Control", "public, max-age=" + ttlSeconds)
+					.build();
+
+		return response;
+	}
+
+
+	/**
+	 * @return A summary of the cache hits and misses.
+	 */
+	public String getStats() {
+		int diskHits = diskCache.hitCount();
+		int misses = diskCache.networkCount() - revalidations.get();
+
+		return "HTTP cache: " + memoryHits.get() + " memory hits, " + diskHits + " disk hits ("
+				+ revalidations.get() + " revalidated), " + misses + " misses";
+	}
+
+
+	/**
+	 * Writes pending entries to disk and releases the cache.
+	 */
+	public void close() {
+		try {
+			diskCache.close();
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+		}
+	}
+
+
+
+	/**
+	 * A response kept in memory.
+	 */
+	private static class CachedResponse {
+
+		private final Protocol protocol;
+		private final int code;
+		private final String message;
+		private final Headers headers;
+		private final MediaType contentType;
+		private final byte[] body;
+		private final long expiresAt;
+
+
+		CachedResponse(Response response, byte[] body, long expiresAt) {
+			this.protocol = response.protocol();
+			this.code = response.code();
+			this.message = response.message();
+			this.headers = response.headers();
+			this.contentType = response.body().contentType();
+			this.body = body;
+			this.expiresAt = expiresAt;
+		}
+
+
+		Response toResponse(Request request) {
+			return new Response.Builder()
+					.request(request)
+					.protocol(protocol)
+					.code(code)
+					.message(message)
+					.headers(headers)
+					.body(ResponseBody.create(contentType, body))
+					.build();
+		}
+
+	}
+
+}
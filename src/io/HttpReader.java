@@ -1,7 +1,11 @@
 package io;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
 
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -12,26 +16,49 @@ import okhttp3.Response;
  * @author Andres Arturo Sanchez Dorantes
  *
  */
-public class HttpReader implements Reader {
+public class HttpReader implements AsyncReader {
 	
 	
 	private OkHttpClient client;
+	private AdaptiveLimiter limiter; //Null if the client has none
 	private Request request;
-	private boolean dataLeft;
+	private volatile boolean dataLeft; //Set by the threads of the client when reading asynchronously
 	
 	
 	/**
 	 * @param httpUrl The complete URL of the service to query.
 	 */
 	public HttpReader(String httpUrl) {
+		this(new OkHttpClient(), httpUrl);
+	}
+	
+	
+	/**
+	 * @param client The client to send the request through, can be shared
+	 *        by many readers to reuse its connections.
+	 * @param httpUrl The complete URL of the service to query.
+	 */
+	public HttpReader(OkHttpClient client, String httpUrl) {
 		dataLeft = true;
-		client = new OkHttpClient();
+		this.client = client;
 		request = new Request.Builder()
 				.url(httpUrl)
 				.build();
 	}
 
 	
+	/**
+	 * Makes the asynchronous requests wait for room in the limiter of the
+	 * client before being handed to its dispatcher, instead of holding one
+	 * of its threads while waiting.
+	 * @param limiter The limiter the client is configured with.
+	 * @see AdaptiveLimiter#enqueue(OkHttpClient, Request, Callback)
+	 */
+	public void setLimiter(AdaptiveLimiter limiter) {
+		this.limiter = limiter;
+	}
+
+	
 	/**
 	 * Sends a GET request to a HTTP service.
 	 * @return The whole response not chunks.
@@ -41,14 +68,58 @@ public class HttpReader implements Reader {
 	 */
 	@Override
 	public String read() throws IOException {
-		Response response;
+		return bodyOf(client.newCall(request).execute());
+	}
+
+
+	/**
+	 * Sends a GET request to a HTTP service through the dispatcher of the
+	 * client, so no thread waits for the response.
+	 * @return The whole future response not chunks, completed with an IOException
+	 *         if the connection can't be established, is interrupted or the
+	 *         HTTP response has an error status code.
+	 * @see io.AsyncReader#readAsync()
+	 */
+	@Override
+	public CompletableFuture<String> readAsync() {
+		CompletableFuture<String> body = new CompletableFuture<>();
+		Callback callback = new Callback() {
+			@Override
+			public void onFailure(Call call, IOException e) {
+				body.completeExceptionally(e);
+			}
+
+			@Override
+			public void onResponse(Call call, Response response) {
+				try {
+					body.complete(bodyOf(response));
+				} catch (IOException e) {
+					body.completeExceptionally(e);
+				}
+			}
+		};
+
+		if(limiter != null)
+			limiter.enqueue(client, request, callback);
+		else
+			client.newCall(request).enqueue(callback);
+		return body;
+	}
+
+
+	/**
+	 * Reads the whole body of a response and checks its status code.
+	 */
+	private String bodyOf(Response response) throws IOException {
 		String responseBody;
 		
-		response = client.newCall(request).execute();
-		responseBody = response.body().string();
-		response.close();
+		try {
+			responseBody = response.body().string();
+		} finally {
+			response.close();
+		}
 		
-		dataLeft = false;
+		dataLeft = !response.isSuccessful() && isTransient(response.code());
 		
 		if(!response.isSuccessful()) 
 			throw new IOException("HTTP server at " + request.url() + " responded with "
@@ -58,12 +129,40 @@ public class HttpReader implements Reader {
 	}
 
 
+	/**
+	 * Sends a GET request to a HTTP service.
+	 * The status code is checked as soon as the headers arrive and the body
+	 * is handed out without buffering it, closing the stream releases the connection.
+	 * @return The response body as a stream.
+	 * @throws IOException If the connection can't be established,
+	 *         is interrupted or the HTTP response has an error status code.
+	 * @see io.Reader#readStream()
+	 */
+	@Override
+	public InputStream readStream() throws IOException {
+		Response response;
+
+		response = client.newCall(request).execute();
+		dataLeft = !response.isSuccessful() && isTransient(response.code());
+
+		if(!response.isSuccessful()) {
+			String responseBody = response.body().string();
+			response.close();
+			throw new IOException("HTTP server at " + request.url() + " responded with "
+					+ "error status code: " + responseBody);
+		}
+
+		return response.body().byteStream();
+	}
+
+
 	/**
 	 * Indicates whether logically speaking there is still more data to query from
 	 * the HTTP service.
-	 * After a connection failure it is considered that there is still more data to read.
-	 * Only after the whole data has been queried (regardless of the HTTP status code)
-	 * it is considered that there is no more data left to retrieve.
+	 * After a connection failure or a transient error status code (the service
+	 * overloaded or unavailable for a while) it is considered that there is still
+	 * more data to read. Only after the whole data has been queried (regardless of
+	 * any other HTTP status code) it is considered that there is no more data left to retrieve.
 	 * @return Whether there is more data to GET.
 	 * @see input.Reader#isDataLeft()
 	 */
@@ -71,6 +170,14 @@ public class HttpReader implements Reader {
 	public boolean isDataLeft() {	
 		return dataLeft;
 	}
+
+
+	/**
+	 * @return Whether an error status code is likely to go away, so the request is worth repeating.
+	 */
+	static boolean isTransient(int code) {
+		return code == 408 || code == 429 || code == 502 || code == 503 || code == 504;
+	}
 	
 	
 	
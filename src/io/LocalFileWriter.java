@@ -25,6 +25,26 @@ public class LocalFileWriter implements Writer {
 	}
 	
 	
+	/**
+	 * The buffered stream of the file itself.
+	 * @see io.Writer#getBuffer()
+	 */
+	@Override
+	public Appendable getBuffer() {
+		return writer;
+	}
+	
+	
+	/* (non-Javadoc)
+	 * @see io.Writer#flush()
+	 */
+	@Override
+	public void flush() throws IOException {
+		if(writer.checkError()) //Also flushes the stream
+			throw new IOException("Could not write to local file");
+	}
+	
+	
 	/* (non-Javadoc)
 	 * @see io.Writer#close()
 	 */
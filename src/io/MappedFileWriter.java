@@ -0,0 +1,138 @@
+package io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MappedFileWriter is the class responsible for writing very big
+ * amounts of data to a local file through memory mapping.
+ * <p>
+ * The file is grown in chunks of a fixed size, each of which is mapped
+ * into memory once, and the data is encoded as UTF-8 straight into the
+ * mapping. No data is copied to the kernel and no system call is made
+ * until the next chunk is needed. When closing, the file is truncated
+ * to the exact size of the data written.
+ * <p>
+ * The OS writes the mapped data back to the file on its own, it can be
+ * forced to the storage device chunk by chunk, the last one on close.
+ * Mappings are released by the garbage collector.
+ * <p>
+ * Not thread-safe, the writer must be used by one thread at a time.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class MappedFileWriter extends EncodingWriter {
+
+	private FileChannel channel;
+	private long chunkSize;
+	private long chunkStart; //Position in the file of the current chunk
+	private boolean syncOnClose;
+	private int chunks;
+
+
+	/**
+	 * @param path The path of the file to create or replace.
+	 * @param chunkSize The number of bytes to preallocate and map at a time.
+	 * @param syncOnClose Whether to force every full chunk to the storage device, and the
+	 *        rest of the data when closing.
+	 * @throws IOException If the file can't be opened or mapped.
+	 */
+	public MappedFileWriter(String path, long chunkSize, boolean syncOnClose) throws IOException {
+		this(FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), chunkSize, syncOnClose);
+	}
+
+
+	/**
+	 * Creates a writer mapping 64MB at a time and forcing the data on close.
+	 * @see #MappedFileWriter(String, long, boolean)
+	 */
+	public MappedFileWriter(String path) throws IOException {
+		this(path, 64 * 1024 * 1024, true);
+	}
+
+
+	private MappedFileWriter(FileChannel channel, long chunkSize, boolean syncOnClose) throws IOException {
+		super(mapFirst(channel, chunkSize(chunkSize)));
+		this.channel = channel;
+		this.chunkSize = chunkSize(chunkSize);
+		this.syncOnClose = syncOnClose;
+		this.chunks = 1;
+	}
+
+
+	/**
+	 * Truncates the file to the data written and releases it.
+	 * @see io.Writer#close()
+	 */
+	@Override
+	public void close() {
+		try (FileChannel file = channel) { //Released even if the data can't be forced
+			MappedByteBuffer last = (MappedByteBuffer) finishEncoding();
+
+			if(syncOnClose)
+				last.force();
+			file.truncate(chunkStart + last.position());
+			if(syncOnClose) //The new size, the chunks were forced on their own
+				file.force(true);
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+		}
+	}
+
+
+	/**
+	 * @return The number of chunks mapped so far.
+	 */
+	public int getChunks() {
+		return chunks;
+	}
+
+
+	/**
+	 * Maps the next chunk of the file, growing it.
+	 * @see io.EncodingWriter#nextBuffer(java.nio.ByteBuffer)
+	 */
+	@Override
+	protected ByteBuffer nextBuffer(ByteBuffer full) throws IOException {
+		if(syncOnClose) //Forcing the channel doesn't cover the data written through mappings
+			((MappedByteBuffer) full).force();
+		chunkStart += full.position();
+		chunks++;
+		return map(channel, chunkStart, chunkSize);
+	}
+
+
+	/**
+	 * @return The size of the chunks within the limits of a mapping.
+	 */
+	private static long chunkSize(long chunkSize) {
+		return Math.min(Integer.MAX_VALUE, Math.max(4096, chunkSize));
+	}
+
+
+	/**
+	 * Maps the first chunk of a file just opened, closing the file if it can't be mapped.
+	 */
+	private static MappedByteBuffer mapFirst(FileChannel channel, long chunkSize) throws IOException {
+		try {
+			return map(channel, 0, chunkSize);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Maps a region of the file, growing the file to cover it.
+	 */
+	private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+	}
+
+}
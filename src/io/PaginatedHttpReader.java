@@ -0,0 +1,313 @@
+package io;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * PaginatedHttpReader is the class responsible to read a paginated
+ * HTTP service page by page by means of offset and limit query parameters.
+ * <p>
+ * Keeps a window of consecutive page requests in flight at the same time
+ * so the next pages are already downloading while the current one is being
+ * processed, but hands them out strictly in order.
+ * The data is considered finished at the first page with an empty body
+ * or a JSON array with fewer objects than a full page, so no more pages are
+ * requested past the end. A page repeating the previous one also finishes
+ * the data, for services ignoring the pagination parameters, and is handed
+ * out as an empty JSON array instead of duplicating the data.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class PaginatedHttpReader implements Reader {
+
+
+	private OkHttpClient client;
+	private AdaptiveLimiter limiter; //Null if the client has none
+	private HttpUrl baseUrl;
+	private String offsetParameter;
+	private String limitParameter;
+	private int pageSize;
+	private int window;
+	private long nextOffset;
+	private ArrayDeque<Page> inFlight;
+	private String lastBody; //The previous page handed out
+	private boolean dataLeft;
+
+
+	/**
+	 * @param httpUrl The complete URL of the service to query without pagination parameters.
+	 * @param pageSize The number of objects to request per page.
+	 * @param window The number of pages to request concurrently.
+	 */
+	public PaginatedHttpReader(String httpUrl, int pageSize, int window) {
+		this(new OkHttpClient(), httpUrl, "offset", "limit", pageSize, window);
+		client.dispatcher().setMaxRequestsPerHost(Math.max(window, client.dispatcher().getMaxRequestsPerHost()));
+	}
+
+
+	/**
+	 * @param client The client to send the requests through.
+	 * @param httpUrl The complete URL of the service to query without pagination parameters.
+	 * @param offsetParameter The name of the query parameter of the first object of a page.
+	 * @param limitParameter The name of the query parameter of the number of objects of a page.
+	 * @param pageSize The number of objects to request per page.
+	 * @param window The number of pages to request concurrently.
+	 */
+	public PaginatedHttpReader(OkHttpClient client, String httpUrl, String offsetParameter,
+			String limitParameter, int pageSize, int window) {
+		this.client = client;
+		this.baseUrl = HttpUrl.parse(httpUrl);
+		if(baseUrl == null)
+			throw new IllegalArgumentException("Invalid URL: " + httpUrl);
+		this.offsetParameter = offsetParameter;
+		this.limitParameter = limitParameter;
+		this.pageSize = pageSize;
+		this.window = Math.max(1, window);
+		this.nextOffset = 0;
+		this.inFlight = new ArrayDeque<>();
+		this.dataLeft = true;
+	}
+
+
+	/**
+	 * Makes the requests of the pages wait for room in the limiter of the
+	 * client before being handed to its dispatcher, instead of holding one
+	 * of its threads while waiting.
+	 * @param limiter The limiter the client is configured with.
+	 * @see AdaptiveLimiter#enqueue(OkHttpClient, Request, Callback)
+	 */
+	public void setLimiter(AdaptiveLimiter limiter) {
+		this.limiter = limiter;
+	}
+
+
+	/**
+	 * Returns the next page of the HTTP service.
+	 * Requests the following pages up to the window size before waiting for it.
+	 * If the page fails it is requested again on the next call.
+	 * @return The whole page not chunks, an empty JSON array if it repeats the previous one.
+	 * @throws IOException If the connection can't be established,
+	 *         is interrupted or the HTTP response has an error status code.
+	 * @see io.Reader#read()
+	 */
+	@Override
+	public String read() throws IOException {
+		Page page;
+		String pageBody;
+
+		while(inFlight.size() < window) { //Keeps the window full
+			inFlight.add(new Page(nextOffset));
+			nextOffset += pageSize;
+		}
+
+		page = inFlight.peek();
+		if(page.body == null)
+			page.fetch();
+
+		try {
+			pageBody = page.body.get();
+		} catch (ExecutionException e) {
+			page.body = null; //Requested again on the next read
+			if(e.getCause() instanceof HttpStatusException && !((HttpStatusException) e.getCause()).isTransient)
+				finish();
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+					: new IOException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading " + baseUrl);
+		}
+
+		inFlight.poll();
+		if(pageBody.equals(lastBody)) { //Pagination ignored by the service
+			finish();
+			return "[]";
+		}
+		if(isLastPage(pageBody))
+			finish();
+
+		lastBody = pageBody;
+		return pageBody;
+	}
+
+
+	/**
+	 * Indicates whether logically speaking there is still more data to query from
+	 * the HTTP service.
+	 * After a connection failure it is considered that there is still more data to read.
+	 * There is no more data after an empty, short or repeated page or a page with
+	 * an error status code, unless the status code is transient.
+	 * @return Whether there are more pages to GET.
+	 * @see io.Reader#isDataLeft()
+	 */
+	@Override
+	public boolean isDataLeft() {
+		return dataLeft;
+	}
+
+
+	/**
+	 * Asynchronously requests the page starting at a given offset.
+	 * @param body The future to complete with the body of the page.
+	 * @return The future call requesting the page, completed once enqueued.
+	 */
+	private CompletableFuture<Call> fetch(long offset, CompletableFuture<String> body) {
+		Request request = new Request.Builder()
+				.url(baseUrl.newBuilder()
+						.setQueryParameter(offsetParameter, Long.toString(offset))
+						.setQueryParameter(limitParameter, Integer.toString(pageSize))
+						.build())
+				.build();
+
+		Callback callback = new Callback() {
+			@Override
+			public void onFailure(Call call, IOException e) {
+				body.completeExceptionally(e);
+			}
+
+			@Override
+			public void onResponse(Call call, Response response) throws IOException {
+				try {
+					String responseBody = response.body().string();
+
+					if(response.isSuccessful())
+						body.complete(responseBody);
+					else
+						body.completeExceptionally(new HttpStatusException("HTTP server at " + request.url()
+								+ " responded with error status code: " + responseBody,
+								HttpReader.isTransient(response.code())));
+				} catch (IOException e) {
+					body.completeExceptionally(e);
+				} finally {
+					response.close();
+				}
+			}
+		};
+
+		if(limiter != null)
+			return limiter.enqueue(client, request, callback);
+		Call call = client.newCall(request);
+		call.enqueue(callback);
+		return CompletableFuture.completedFuture(call);
+	}
+
+
+	/**
+	 * @return Whether a page marks the end of the data, being empty or shorter than a full page.
+	 */
+	private boolean isLastPage(String pageBody) {
+		String trimmed = pageBody.trim();
+
+		if(trimmed.isEmpty())
+			return true;
+		if(trimmed.charAt(0) != '[' || trimmed.charAt(trimmed.length() - 1) != ']')
+			return false;
+		return countElements(trimmed, pageSize) < pageSize;
+	}
+
+
+	/**
+	 * Counts the elements of a JSON array without parsing them.
+	 * @param max The count to stop at.
+	 * @return The number of elements, at most max.
+	 */
+	private static int countElements(String array, int max) {
+		int separators = 0; //Commas between elements, not within them
+		int depth = 0;
+		boolean inString = false;
+		boolean empty = true;
+
+		for(int charI = 1; charI < array.length() - 1 && separators < max; charI++) {
+			char c = array.charAt(charI);
+
+			if(inString) {
+				if(c == '\\')
+					charI++; //Skips the escaped character
+				else if(c == '"')
+					inString = false;
+			}
+			else if(c == '"')
+				inString = true;
+			else if(c == '[' || c == '{')
+				depth++;
+			else if(c == ']' || c == '}')
+				depth--;
+			else if(c == ',' && depth == 0)
+				separators++;
+			empty &= Character.isWhitespace(c);
+		}
+		return empty ? 0 : Math.min(max, separators + 1);
+	}
+
+
+	/**
+	 * Stops the pagination and discards the pages requested beyond the end.
+	 */
+	private void finish() {
+		dataLeft = false;
+		inFlight.forEach(page -> {
+			if(page.body != null) {
+				page.call.thenAccept(Call::cancel);
+				page.call.cancel(false); //Not enqueued yet
+			}
+		});
+		inFlight.clear();
+	}
+
+
+
+	/**
+	 * A page of the window and its future body.
+	 */
+	private class Page {
+
+		private final long offset;
+		private CompletableFuture<String> body;
+		private CompletableFuture<Call> call;
+
+
+		Page(long offset) {
+			this.offset = offset;
+			fetch();
+		}
+
+
+		/**
+		 * Requests the page, once when entering the window and again after every failure.
+		 */
+		void fetch() {
+			body = new CompletableFuture<>();
+			call = PaginatedHttpReader.this.fetch(offset, body);
+		}
+
+	}
+
+
+
+	/**
+	 * A response received with an error status code, as opposed to a
+	 * connection failure it is not worth to request the page again.
+	 */
+	private static class HttpStatusException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		final boolean isTransient;
+
+
+		HttpStatusException(String message, boolean isTransient) {
+			super(message);
+			this.isTransient = isTransient;
+		}
+
+	}
+
+}
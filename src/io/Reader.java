@@ -1,6 +1,9 @@
 package io;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Provides a common interface to progressively query resources 
@@ -22,6 +25,23 @@ public interface Reader {
 	 *         or the answer is corrupted.
 	 */
 	public String read() throws IOException;
+
+	
+	/**
+	 * Queries a specific resource or service and gives access to the
+	 * response as a stream of UTF-8 encoded bytes, so that it can be
+	 * consumed while it is still arriving.
+	 * <p>
+	 * Behaves as {@link read()} regarding pagination. The caller is
+	 * responsible for closing the stream.
+	 * By default the whole response is read and then wrapped as a stream.
+	 * @return A stream over the information queried.
+	 * @throws IOException If the query to the resource or service fails
+	 *         or the answer is corrupted.
+	 */
+	public default InputStream readStream() throws IOException {
+		return new ByteArrayInputStream(read().getBytes(StandardCharsets.UTF_8));
+	}
 	
 	
 	/**
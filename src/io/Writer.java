@@ -1,6 +1,7 @@
 package io;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * Provides a common interface to progressively store 
@@ -18,6 +19,40 @@ public interface Writer {
 	 *         connection is lost or the data is otherwise corrupted.
 	 */
 	public void write(String write) throws IOException;
+	
+	
+	/**
+	 * Gives a buffer owned by the writer where to append formatted data
+	 * without building a String first. The same buffer is reused for all
+	 * the data, so only one thread should append to it at a time.
+	 * @return The buffer or null if the writer only accepts Strings.
+	 * @see #flush()
+	 */
+	public default Appendable getBuffer() {
+		return null;
+	}
+	
+	
+	/**
+	 * Gives a stream owned by the writer where to write binary data.
+	 * The data is handled the same way as the data appended to the buffer.
+	 * @return The stream or null if the writer only accepts text.
+	 * @see #flush()
+	 */
+	public default OutputStream getOutputStream() {
+		return null;
+	}
+	
+	
+	/**
+	 * Informs the writer a complete unit of data has been appended to the buffer.
+	 * Writers can hand it to the resource right away or keep batching it.
+	 * @throws IOException If the resource can't be reached, the 
+	 *         connection is lost or the data is otherwise corrupted.
+	 * @see #getBuffer()
+	 */
+	public default void flush() throws IOException {
+	}
 
 	
 	/**
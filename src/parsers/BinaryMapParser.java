@@ -0,0 +1,45 @@
+package parsers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provides a common interface for parsers that transform Maps
+ * representations of data into binary representations, which can't be
+ * represented as Strings and are only written to streams of bytes.
+ * @author Andres Arturo Sanchez Dorantes
+ * @see MapParser
+ */
+public interface BinaryMapParser {
+
+	/**
+	 * Parses flat Maps adding headers or meta-data into a stream of bytes.
+	 * This method is only called once at the beginning of the parsing process.
+	 * @param maps The list of Maps to parse.
+	 * @param out The stream where to write the parsed data.
+	 * @throws IOException If the stream can't be written.
+	 */
+	public void firstParsing(List<Map<String,Object>> maps, OutputStream out) throws IOException;
+
+
+	/**
+	 * Parses flat Maps to a specific representation into a stream of bytes.
+	 * This method can be called multiple times during the parsing process.
+	 * @param maps The list of Maps to parse.
+	 * @param out The stream where to write the parsed data.
+	 * @throws IOException If the stream can't be written.
+	 */
+	public void parseMaps(List<Map<String,Object>> maps, OutputStream out) throws IOException;
+
+
+	/**
+	 * Writes the endings of the representation into a stream of bytes.
+	 * This method is only called once at the end of the parsing process.
+	 * @param out The stream where to write the endings.
+	 * @throws IOException If the stream can't be written.
+	 */
+	public void writeEndings(OutputStream out) throws IOException;
+
+}
@@ -1,9 +1,10 @@
 package parsers;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
-import java.util.StringJoiner;
-import java.util.stream.Collectors;
+
+import records.Record;
 
 
 /**
@@ -18,6 +19,9 @@ import java.util.stream.Collectors;
  * According to the order of appearance of the Maps and 
  * the attributes of each one. Assuming ','  is set as the
  * desired delimiter.
+ * <p>
+ * Rows can also be appended one by one straight into a buffer, so
+ * no String of the whole list is built.
  * 
  * @author Andres Arturo Sanchez Dorantes
  *
@@ -30,9 +34,15 @@ public class CSVMapParser implements MapParser {
 	 */
 	private String delimiter;
 	
+	/**
+	 * The line break between rows, looked up only once.
+	 */
+	private String lineSeparator;
+	
 	
 	public CSVMapParser(String delimiter) {
 		this.delimiter = delimiter;
+		this.lineSeparator = System.getProperty("line.separator");
 	}
 	
 	
@@ -44,9 +54,13 @@ public class CSVMapParser implements MapParser {
 	 * @return A String representing a Map as a single row.
 	 */
 	public String parseMap(Map<String,Object> map) {
-		return map.values().stream()
-				.map(obj -> obj+"")
-				.collect(Collectors.joining(delimiter));
+		StringBuilder row = new StringBuilder();
+		
+		try {
+			appendMap(map, row);
+		} catch (IOException e) {} //StringBuilders don't throw
+		
+		return row.toString();
 	}
 	
 	
@@ -56,14 +70,13 @@ public class CSVMapParser implements MapParser {
 	 */
 	@Override
 	public String firstParsing(List<Map<String, Object>> maps) {
-		StringJoiner titles = new StringJoiner(delimiter);
+		StringBuilder parsed = new StringBuilder();
 		
-		if(!maps.isEmpty())
-			maps.get(0).forEach((title,val) -> titles.add(title));
+		try {
+			firstParsing(maps, parsed);
+		} catch (IOException e) {} //StringBuilders don't throw
 		
-		return titles.toString()
-				+ System.getProperty("line.separator")
-				+ parseMaps(maps);
+		return parsed.toString();
 	}
 
 
@@ -73,10 +86,77 @@ public class CSVMapParser implements MapParser {
 	 */
 	@Override
 	public String parseMaps(List<Map<String, Object>> maps) {
-		return maps.stream()
-				.map(this::parseMap)
-				.collect(Collectors.joining(System.getProperty("line.separator"))) //Line break between parsed Maps
-				+ System.getProperty("line.separator"); //Line break after last parsed Map
+		StringBuilder parsed = new StringBuilder();
+		
+		try {
+			parseMaps(maps, parsed);
+		} catch (IOException e) {} //StringBuilders don't throw
+		
+		return parsed.toString();
+	}
+	
+	
+	/* (non-Javadoc)
+	 * Appends one row first with the columns titles.
+	 * @see parsers.MapParser#firstParsing(java.util.List, java.lang.Appendable)
+	 */
+	@Override
+	public void firstParsing(List<Map<String, Object>> maps, Appendable out) throws IOException {
+		boolean first = true;
+		
+		if(!maps.isEmpty())
+			for(String title : maps.get(0).keySet()) {
+				if(!first)
+					out.append(delimiter);
+				out.append(title);
+				first = false;
+			}
+		out.append(lineSeparator);
+		
+		parseMaps(maps, out);
+	}
+	
+	
+	/* (non-Javadoc)
+	 * Appends each Map parsed as a new line, row by row.
+	 * @see parsers.MapParser#parseMaps(java.util.List, java.lang.Appendable)
+	 */
+	@Override
+	public void parseMaps(List<Map<String, Object>> maps, Appendable out) throws IOException {
+		if(maps.isEmpty()) //Line break even without Maps
+			out.append(lineSeparator);
+		
+		for(Map<String, Object> map : maps) {
+			appendMap(map, out);
+			out.append(lineSeparator);
+		}
+	}
+	
+	
+	/**
+	 * Appends a single Map as a CSV row without the line break.
+	 * @see #parseMap(Map)
+	 */
+	private void appendMap(Map<String,Object> map, Appendable out) throws IOException {
+		boolean first = true;
+		
+		if(map instanceof Record) { //Reads the values straight from the columns
+			Record record = (Record) map;
+			
+			for(int columnI = 0; columnI < record.size(); columnI++) {
+				if(columnI > 0)
+					out.append(delimiter);
+				out.append(String.valueOf(record.getValue(columnI)));
+			}
+			return;
+		}
+		
+		for(Object value : map.values()) {
+			if(!first)
+				out.append(delimiter);
+			out.append(String.valueOf(value));
+			first = false;
+		}
 	}
 
 
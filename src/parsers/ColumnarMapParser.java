@@ -0,0 +1,380 @@
+package parsers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * ColumnarMapParser is the class responsible for parsing flat Maps
+ * into a compact columnar binary format, read back by {@link ColumnarReader}.
+ * <p>
+ * The rows are gathered in row groups and every group is written column
+ * by column, each column with the encoding fitting its values:
+ * <ul>
+ * <li>Integers and longs as zigzag varints.
+ * <li>Numbers with few decimals, as coordinates, as zigzag varints of
+ * the number scaled by a power of ten.
+ * <li>Other numbers as 8 byte doubles.
+ * <li>Booleans as one bit each.
+ * <li>Strings with few distinct values as indexes into a dictionary,
+ * other strings as their UTF-8 bytes.
+ * </ul>
+ * Null values are marked in a bitmap and not written. A footer at the end
+ * of the file indexes the columns and where each row group and column
+ * chunk start, so readers can fetch single columns without scanning the file.
+ * <p>
+ * The layout of a file is:
+ * <p>
+ * MAGIC, row groups, footer, footer length as a 4 byte int, MAGIC
+ * <p>
+ * The columns are the attributes of the first Map parsed, absent attributes
+ * of other Maps are written as nulls. Values of other types are written as
+ * their String representation.
+ * <p>
+ * A ColumnarMapParser keeps the state of the file it writes, so one parser
+ * is needed per file and it must be used by one thread at a time.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class ColumnarMapParser implements BinaryMapParser {
+
+
+	/**
+	 * The bytes at the start and the end of every file.
+	 */
+	static final byte[] MAGIC = "GECOL1".getBytes(StandardCharsets.US_ASCII);
+
+	/*
+	 * The encodings of a column chunk.
+	 */
+	static final byte NULLS = 0;
+	static final byte INT = 1;
+	static final byte LONG = 2;
+	static final byte DOUBLE = 3;
+	static final byte BOOLEAN = 4;
+	static final byte STRING = 5;
+	static final byte DICTIONARY = 6;
+	static final byte DECIMAL = 7;
+
+	/**
+	 * The maximum number of decimals of the numbers scaled to varints.
+	 */
+	static final int MAX_SCALE = 9;
+
+	/**
+	 * The powers of ten scaling the numbers, exact as doubles.
+	 */
+	static final double[] POWERS = {1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9};
+
+	private final int rowGroupSize;
+	private List<String> columns;
+	private List<List<Object>> values; //The values of the current row group, by column
+	private int rows;
+	private long offset; //Bytes written so far
+	private boolean started;
+	private Chunk chunk; //Reused to encode every column chunk
+	private Chunk footer; //Index of the row groups written
+	private int rowGroups;
+
+
+	/**
+	 * @param rowGroupSize The number of rows of each row group.
+	 */
+	public ColumnarMapParser(int rowGroupSize) {
+		this.rowGroupSize = Math.max(1, rowGroupSize);
+		this.chunk = new Chunk();
+		this.footer = new Chunk();
+	}
+
+
+	/**
+	 * Creates a parser with row groups of 10000 rows.
+	 */
+	public ColumnarMapParser() {
+		this(10000);
+	}
+
+
+	/* (non-Javadoc)
+	 * Writes the start of the file and the Maps.
+	 * @see parsers.BinaryMapParser#firstParsing(java.util.List, java.io.OutputStream)
+	 */
+	@Override
+	public void firstParsing(List<Map<String, Object>> maps, OutputStream out) throws IOException {
+		parseMaps(maps, out);
+	}
+
+
+	/* (non-Javadoc)
+	 * Gathers the Maps writing every row group completed.
+	 * @see parsers.BinaryMapParser#parseMaps(java.util.List, java.io.OutputStream)
+	 */
+	@Override
+	public void parseMaps(List<Map<String, Object>> maps, OutputStream out) throws IOException {
+		start(out);
+
+		for(Map<String,Object> map : maps) {
+			if(columns == null)
+				setColumns(map);
+			for(int columnI = 0; columnI < columns.size(); columnI++)
+				values.get(columnI).add(map.get(columns.get(columnI)));
+
+			if(++rows == rowGroupSize)
+				writeRowGroup(out);
+		}
+	}
+
+
+	/* (non-Javadoc)
+	 * Writes the last row group and the footer.
+	 * @see parsers.BinaryMapParser#writeEndings(java.io.OutputStream)
+	 */
+	@Override
+	public void writeEndings(OutputStream out) throws IOException {
+		start(out);
+		if(rows > 0)
+			writeRowGroup(out);
+
+		Chunk index = new Chunk();
+		List<String> names = columns == null ? new ArrayList<>() : columns;
+		index.writeVarLong(names.size());
+		for(String name : names)
+			index.writeString(name);
+		index.writeVarLong(rowGroups);
+		footer.writeTo(index);
+
+		index.writeTo(out);
+		out.write(new byte[] {(byte) (index.size() >>> 24), (byte) (index.size() >>> 16),
+				(byte) (index.size() >>> 8), (byte) index.size()});
+		out.write(MAGIC);
+	}
+
+
+	/**
+	 * Writes the magic bytes once at the start of the file.
+	 */
+	private void start(OutputStream out) throws IOException {
+		if(!started) {
+			out.write(MAGIC);
+			offset += MAGIC.length;
+			started = true;
+		}
+	}
+
+
+	private void setColumns(Map<String,Object> map) {
+		columns = new ArrayList<>(map.keySet());
+		values = new ArrayList<>(columns.size());
+		for(int columnI = 0; columnI < columns.size(); columnI++)
+			values.add(new ArrayList<>(Math.min(rowGroupSize, 1024)));
+	}
+
+
+	/**
+	 * Encodes and writes the gathered rows column by column, indexing them in the footer.
+	 */
+	private void writeRowGroup(OutputStream out) throws IOException {
+		footer.writeVarLong(offset);
+		footer.writeVarLong(rows);
+
+		for(List<Object> column : values) {
+			chunk.reset();
+			encodeColumn(column);
+			chunk.writeTo(out);
+			offset += chunk.size();
+			footer.writeVarLong(chunk.size());
+			column.clear();
+		}
+
+		rowGroups++;
+		rows = 0;
+	}
+
+
+	/**
+	 * Encodes the values of a column chunk with the encoding fitting all of them.
+	 */
+	private void encodeColumn(List<Object> column) {
+		byte encoding = chooseEncoding(column);
+		Map<String,Integer> dictionary = null;
+		int scale = encoding == DOUBLE ? scaleOf(column) : -1;
+
+		if(encoding == STRING) {
+			int nonNull = 0;
+			dictionary = new LinkedHashMap<>();
+			for(Object value : column)
+				if(value != null) {
+					dictionary.putIfAbsent(value.toString(), dictionary.size());
+					nonNull++;
+				}
+			if(dictionary.size() <= nonNull / 2) //Low cardinality
+				encoding = DICTIONARY;
+		}
+
+		if(scale >= 0)
+			encoding = DECIMAL;
+
+		chunk.write(encoding);
+		if(encoding == NULLS)
+			return;
+		encodeNulls(column);
+
+		if(encoding == BOOLEAN) {
+			encodeBooleans(column);
+			return;
+		}
+		if(encoding == DECIMAL)
+			chunk.write(scale);
+		if(encoding == DICTIONARY) {
+			chunk.writeVarLong(dictionary.size());
+			for(String word : dictionary.keySet())
+				chunk.writeString(word);
+		}
+
+		for(Object value : column) {
+			if(value == null)
+				continue;
+			switch(encoding) {
+			case INT:
+			case LONG:
+				chunk.writeZigzag(((Number) value).longValue());
+				break;
+			case DECIMAL:
+				chunk.writeZigzag(Math.round(((Number) value).doubleValue() * POWERS[scale]));
+				break;
+			case DOUBLE:
+				chunk.writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+				break;
+			case DICTIONARY:
+				chunk.writeVarLong(dictionary.get(value.toString()));
+				break;
+			default:
+				chunk.writeString(value.toString());
+			}
+		}
+	}
+
+
+	/**
+	 * Writes whether the column has nulls and the bitmap marking them.
+	 */
+	private void encodeNulls(List<Object> column) {
+		byte[] bitmap = new byte[(column.size() + 7) / 8];
+		boolean hasNulls = false;
+
+		for(int rowI = 0; rowI < column.size(); rowI++)
+			if(column.get(rowI) == null) {
+				bitmap[rowI / 8] |= 1 << (rowI % 8);
+				hasNulls = true;
+			}
+
+		chunk.write(hasNulls ? 1 : 0);
+		if(hasNulls)
+			chunk.write(bitmap, 0, bitmap.length);
+	}
+
+
+	/**
+	 * Writes the non null booleans as a bitmap.
+	 */
+	private void encodeBooleans(List<Object> column) {
+		byte[] bitmap = new byte[(column.size() + 7) / 8];
+		int bitI = 0;
+
+		for(Object value : column)
+			if(value != null) {
+				if((Boolean) value)
+					bitmap[bitI / 8] |= 1 << (bitI % 8);
+				bitI++;
+			}
+
+		chunk.write(bitmap, 0, (bitI + 7) / 8);
+	}
+
+
+	/**
+	 * Finds the fewest decimals representing exactly every number of a column.
+	 * @return The number of decimals or -1 if the numbers have too many.
+	 */
+	private static int scaleOf(List<Object> column) {
+		int scale = 0;
+
+		for(Object value : column) {
+			if(value == null)
+				continue;
+			double number = ((Number) value).doubleValue();
+			while(scale <= MAX_SCALE && !isScaled(number, scale))
+				scale++;
+			if(scale > MAX_SCALE)
+				return -1;
+		}
+
+		return scale;
+	}
+
+
+	private static boolean isScaled(double number, int scale) {
+		double scaled = number * POWERS[scale];
+		return Math.abs(scaled) < (1L << 53) && Math.round(scaled) / POWERS[scale] == number;
+	}
+
+
+	private static byte chooseEncoding(List<Object> column) {
+		boolean ints = true, longs = true, numbers = true, booleans = true, empty = true;
+
+		for(Object value : column) {
+			if(value == null)
+				continue;
+			empty = false;
+			ints &= value instanceof Integer || value instanceof Short || value instanceof Byte;
+			longs &= value instanceof Long || value instanceof Integer || value instanceof Short
+					|| value instanceof Byte;
+			numbers &= value instanceof Number;
+			booleans &= value instanceof Boolean;
+		}
+
+		return empty ? NULLS : ints ? INT : longs ? LONG : numbers ? DOUBLE : booleans ? BOOLEAN : STRING;
+	}
+
+
+
+	/**
+	 * Reusable buffer of bytes with the primitive encodings of the format.
+	 */
+	private static class Chunk extends ByteArrayOutputStream {
+
+		void writeVarLong(long value) {
+			while((value & ~0x7FL) != 0) {
+				write((int) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			write((int) value);
+		}
+
+
+		void writeZigzag(long value) {
+			writeVarLong((value << 1) ^ (value >> 63)); //Small negatives stay small
+		}
+
+
+		void writeLong(long value) {
+			for(int shift = 56; shift >= 0; shift -= 8)
+				write((int) (value >>> shift));
+		}
+
+
+		void writeString(String value) {
+			byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+			writeVarLong(utf8.length);
+			write(utf8, 0, utf8.length);
+		}
+
+	}
+
+}
@@ -0,0 +1,282 @@
+package parsers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * ColumnarReader is the class responsible for reading back the files
+ * written by {@link ColumnarMapParser}.
+ * <p>
+ * Only the footer is read when opening a file, single columns are then
+ * read from the chunks it indexes without reading the other columns.
+ * <p>
+ * Values are read back as Integers, Longs, Doubles, Booleans or Strings
+ * according to the encoding of each column chunk. Columns mixing
+ * integers with other numbers are read back as Doubles, columns mixing
+ * other types as Strings.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class ColumnarReader implements Closeable {
+
+	private FileChannel channel;
+	private List<String> columns;
+	private long[] offsets; //Where each row group starts
+	private int[] rows; //The rows of each row group
+	private int[][] chunkSizes; //The bytes of each column chunk by row group
+
+
+	/**
+	 * Opens a file and reads its footer.
+	 * @param path The file written by a {@link ColumnarMapParser}.
+	 * @throws IOException If the file can't be read or is not a columnar file.
+	 */
+	public ColumnarReader(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			readFooter();
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e instanceof IOException ? (IOException) e : new IOException("Corrupted columnar file", e);
+		}
+	}
+
+
+	/**
+	 * @return The names of the columns in order.
+	 */
+	public List<String> getColumns() {
+		return Collections.unmodifiableList(columns);
+	}
+
+
+	/**
+	 * @return The number of rows of the file.
+	 */
+	public long getRowCount() {
+		long count = 0;
+		for(int groupRows : rows)
+			count += groupRows;
+		return count;
+	}
+
+
+	/**
+	 * @return The number of row groups of the file.
+	 */
+	public int getRowGroupCount() {
+		return rows.length;
+	}
+
+
+	/**
+	 * Reads every value of a single column.
+	 * @param name The name of the column.
+	 * @return The values in row order, null values included.
+	 * @throws IOException If the file can't be read.
+	 * @throws IllegalArgumentException If the file has no such column.
+	 */
+	public List<Object> readColumn(String name) throws IOException {
+		int columnI = columns.indexOf(name);
+		List<Object> values = new ArrayList<>((int) getRowCount());
+
+		if(columnI < 0)
+			throw new IllegalArgumentException("Unknown column: " + name);
+
+		for(int groupI = 0; groupI < rows.length; groupI++) {
+			long position = offsets[groupI];
+			for(int chunkI = 0; chunkI < columnI; chunkI++)
+				position += chunkSizes[groupI][chunkI];
+			decodeChunk(read(position, chunkSizes[groupI][columnI]), rows[groupI], values);
+		}
+
+		return values;
+	}
+
+
+	/**
+	 * Reads every row of the file.
+	 * @return The rows as Maps with the columns in order.
+	 * @throws IOException If the file can't be read.
+	 */
+	public List<Map<String,Object>> readAll() throws IOException {
+		List<Map<String,Object>> maps = new ArrayList<>((int) getRowCount());
+		List<List<Object>> values = new ArrayList<>(columns.size());
+
+		for(String column : columns)
+			values.add(readColumn(column));
+
+		for(int rowI = 0; rowI < getRowCount(); rowI++) {
+			Map<String,Object> map = new LinkedHashMap<>();
+			for(int columnI = 0; columnI < columns.size(); columnI++)
+				map.put(columns.get(columnI), values.get(columnI).get(rowI));
+			maps.add(map);
+		}
+
+		return maps;
+	}
+
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+
+	private void readFooter() throws IOException {
+		int trailer = 4 + ColumnarMapParser.MAGIC.length;
+		ByteBuffer end;
+		ByteBuffer footer;
+		byte[] magic = new byte[ColumnarMapParser.MAGIC.length];
+
+		if(channel.size() < ColumnarMapParser.MAGIC.length + trailer)
+			throw new IOException("Not a columnar file");
+		end = read(channel.size() - trailer, trailer);
+		int footerSize = end.getInt();
+		end.get(magic);
+		if(!Arrays.equals(magic, ColumnarMapParser.MAGIC))
+			throw new IOException("Not a columnar file");
+
+		footer = read(channel.size() - trailer - footerSize, footerSize);
+		columns = new ArrayList<>();
+		for(int columnI = (int) readVarLong(footer); columnI > 0; columnI--)
+			columns.add(readString(footer));
+
+		int groups = (int) readVarLong(footer);
+		offsets = new long[groups];
+		rows = new int[groups];
+		chunkSizes = new int[groups][columns.size()];
+		for(int groupI = 0; groupI < groups; groupI++) {
+			offsets[groupI] = readVarLong(footer);
+			rows[groupI] = (int) readVarLong(footer);
+			for(int columnI = 0; columnI < columns.size(); columnI++)
+				chunkSizes[groupI][columnI] = (int) readVarLong(footer);
+		}
+	}
+
+
+	private ByteBuffer read(long position, int size) throws IOException {
+		ByteBuffer bytes = ByteBuffer.allocate(size);
+
+		while(bytes.hasRemaining())
+			if(channel.read(bytes, position + bytes.position()) < 0)
+				throw new IOException("Truncated columnar file");
+		bytes.flip();
+		return bytes;
+	}
+
+
+	/**
+	 * Decodes the values of a column chunk adding them to a list.
+	 */
+	private static void decodeChunk(ByteBuffer chunk, int rows, List<Object> values) {
+		byte encoding = chunk.get();
+		byte[] nulls = null;
+		String[] dictionary = null;
+
+		if(encoding == ColumnarMapParser.NULLS) {
+			values.addAll(Collections.nCopies(rows, null));
+			return;
+		}
+		if(chunk.get() != 0) {
+			nulls = new byte[(rows + 7) / 8];
+			chunk.get(nulls);
+		}
+		if(encoding == ColumnarMapParser.BOOLEAN) {
+			decodeBooleans(chunk, rows, nulls, values);
+			return;
+		}
+		double power = encoding == ColumnarMapParser.DECIMAL ? ColumnarMapParser.POWERS[chunk.get()] : 1;
+		if(encoding == ColumnarMapParser.DICTIONARY) {
+			dictionary = new String[(int) readVarLong(chunk)];
+			for(int wordI = 0; wordI < dictionary.length; wordI++)
+				dictionary[wordI] = readString(chunk);
+		}
+
+		for(int rowI = 0; rowI < rows; rowI++) {
+			if(nulls != null && (nulls[rowI / 8] & (1 << (rowI % 8))) != 0) {
+				values.add(null);
+				continue;
+			}
+			switch(encoding) {
+			case ColumnarMapParser.INT:
+				values.add((int) readZigzag(chunk));
+				break;
+			case ColumnarMapParser.LONG:
+				values.add(readZigzag(chunk));
+				break;
+			case ColumnarMapParser.DECIMAL:
+				values.add(readZigzag(chunk) / power);
+				break;
+			case ColumnarMapParser.DOUBLE:
+				values.add(chunk.getDouble());
+				break;
+			case ColumnarMapParser.DICTIONARY:
+				values.add(dictionary[(int) readVarLong(chunk)]);
+				break;
+			case ColumnarMapParser.STRING:
+				values.add(readString(chunk));
+				break;
+			default:
+				throw new IllegalStateException("Unknown encoding: " + encoding);
+			}
+		}
+	}
+
+
+	private static void decodeBooleans(ByteBuffer chunk, int rows, byte[] nulls, List<Object> values) {
+		int bitI = 0;
+		byte current = 0;
+
+		for(int rowI = 0; rowI < rows; rowI++) {
+			if(nulls != null && (nulls[rowI / 8] & (1 << (rowI % 8))) != 0) {
+				values.add(null);
+				continue;
+			}
+			if(bitI % 8 == 0)
+				current = chunk.get();
+			values.add((current & (1 << (bitI++ % 8))) != 0);
+		}
+	}
+
+
+	private static long readVarLong(ByteBuffer bytes) {
+		long value = 0;
+		int shift = 0;
+		byte current;
+
+		do {
+			current = bytes.get();
+			value |= (long) (current & 0x7F) << shift;
+			shift += 7;
+		} while((current & 0x80) != 0);
+
+		return value;
+	}
+
+
+	private static long readZigzag(ByteBuffer bytes) {
+		long value = readVarLong(bytes);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+
+	private static String readString(ByteBuffer bytes) {
+		byte[] utf8 = new byte[(int) readVarLong(bytes)];
+		bytes.get(utf8);
+		return new String(utf8, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,530 @@
+package parsers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import records.Record;
+import records.Schema;
+
+/**
+ * JSONStreamParser is the class responsible for parsing streams of
+ * JSON objects token by token.
+ * Unlike {@link JSONStringParser} it never builds an intermediate JSON
+ * representation of the whole document: each element of a top-level
+ * array is flattened directly into a Map and emitted as soon as its
+ * closing bracket is read, so memory is bounded by the size of a single
+ * object rather than by the size of the whole response.
+ * <p>
+ * Values are mapped to the same Java types as {@link JSONStringParser}
+ * (Integer, Long, Double, Boolean, String and null) and the flat keys are
+ * interned the same way, keys already seen are not even decoded into Strings.
+ * <p>
+ * If a {@link Schema} is given the objects are parsed straight into
+ * {@link Record}s of it: attributes and nested objects that can't lead to
+ * any attribute of the Schema are skipped token by token without building
+ * their keys nor their values.
+ *
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class JSONStreamParser implements StreamParser {
+	
+	
+	/**
+	 * The Schema of the Records to parse, null to parse every attribute into HashMaps.
+	 */
+	private Schema schema;
+	
+	/**
+	 * The paths leading to the attributes of the Schema or the paths seen so far.
+	 */
+	private KeyPath paths;
+	
+	
+	/**
+	 * Creates a parser of every attribute.
+	 * The keys are joined by the {@link StringParser#DELIMITER} at creation time.
+	 */
+	public JSONStreamParser() {
+		this(null);
+	}
+	
+	
+	/**
+	 * @param schema The Schema of the Records to parse.
+	 */
+	public JSONStreamParser(Schema schema) {
+		this.schema = schema;
+		this.paths = schema == null ? KeyPath.intern() : KeyPath.compile(schema);
+	}
+
+
+	/* (non-Javadoc)
+	 * @see parsers.StreamParser#parseStream(java.io.InputStream, java.util.function.Consumer)
+	 */
+	@Override
+	public void parseStream(InputStream dataStream, Consumer<Map<String,Object>> consumer)
+			throws ParseException, IOException {
+		Tokenizer tokens = new Tokenizer(new InputStreamReader(dataStream, StandardCharsets.UTF_8));
+		int first = tokens.nextClean();
+
+		if(first == -1) //No data to parse
+			return;
+
+		if(first == '[') {
+			if(tokens.nextClean() != ']') {
+				tokens.back();
+				do {
+					consumer.accept(parseSingleJSON(tokens));
+				} while(tokens.nextSeparator(']'));
+			}
+		}
+		else if(first == '{') {
+			tokens.back();
+			consumer.accept(parseSingleJSON(tokens));
+		}
+		else
+			throw tokens.syntaxError();
+
+		if(tokens.nextClean() != -1) //Trailing data after the document
+			throw tokens.syntaxError();
+	}
+
+
+	/**
+	 * Parses the next JSON value of the stream into a flat Map.
+	 * Objects and arrays are flattened, any other value is stored under
+	 * its own String representation as {@link JSONStringParser} does.
+	 * @param tokens The stream positioned before the value to parse.
+	 * @return The Map representation of the JSON value.
+	 */
+	private Map<String,Object> parseSingleJSON(Tokenizer tokens) throws ParseException, IOException {
+		Map<String,Object> map;
+		int c;
+		
+		if(schema != null)
+			return projectSingleJSON(tokens);
+		
+		map = new HashMap<>();
+		c = tokens.nextClean();
+
+		if(c == '{')
+			parseObject(tokens, map, paths);
+		else if(c == '[')
+			parseArray(tokens, map, paths);
+		else {
+			tokens.back();
+			Object val = tokens.nextPrimitive();
+			map.put(String.valueOf(val), val);
+		}
+
+		return map;
+	}
+
+
+	/**
+	 * Recursive parsing method for an Object-like hierarchy.
+	 * @param tokens The stream positioned right after the opening brace.
+	 * @param map The Map where to store the parsed object.
+	 * @param level The key's name hierarchy accumulated from previous calls.
+	 * @see #parseArray(Tokenizer,Map,KeyPath)
+	 */
+	private void parseObject(Tokenizer tokens, Map<String,Object> map, KeyPath level)
+			throws ParseException, IOException {
+		if(tokens.nextClean() == '}') //Empty object
+			return;
+		tokens.back();
+
+		do {
+			if(tokens.nextClean() != '"')
+				throw tokens.syntaxError();
+			KeyPath child = level.intern(tokens.nextKey());
+			if(tokens.nextClean() != ':')
+				throw tokens.syntaxError();
+
+			parseMember(tokens, map, child);
+		} while(tokens.nextSeparator('}'));
+	}
+
+
+	/**
+	 * Recursive parsing method for an Array-like hierarchy.
+	 * @param tokens The stream positioned right after the opening bracket.
+	 * @param map The Map where to store the parsed object.
+	 * @param level The key's name hierarchy accumulated from previous calls.
+	 * @see #parseObject(Tokenizer,Map,KeyPath)
+	 */
+	private void parseArray(Tokenizer tokens, Map<String,Object> map, KeyPath level)
+			throws ParseException, IOException {
+		int objI = 0;
+
+		if(tokens.nextClean() == ']') //Empty array
+			return;
+		tokens.back();
+
+		do {
+			parseMember(tokens, map, level.intern(objI++));
+		} while(tokens.nextSeparator(']'));
+	}
+
+
+	/**
+	 * Parses the value of an object's attribute or an array's element.
+	 * @param tokens The stream positioned before the value.
+	 * @param map The Map where to store the parsed value.
+	 * @param level The complete key's name hierarchy of the value.
+	 */
+	private void parseMember(Tokenizer tokens, Map<String,Object> map, KeyPath level)
+			throws ParseException, IOException {
+		int c = tokens.nextClean();
+
+		if(c == '{')
+			parseObject(tokens, map, level);
+		else if(c == '[')
+			parseArray(tokens, map, level);
+		else {
+			tokens.back();
+			map.put(level.getPath(), tokens.nextPrimitive());
+		}
+	}
+	
+	
+	/**
+	 * Parses only the attributes of the Schema of the next JSON value of the stream.
+	 * @param tokens The stream positioned before the value to parse.
+	 * @return The Record of the JSON value.
+	 */
+	private Map<String,Object> projectSingleJSON(Tokenizer tokens) throws ParseException, IOException {
+		Record record = new Record(schema);
+		int c = tokens.nextClean();
+		
+		tokens.back();
+		if(c == '{' || c == '[')
+			projectMember(tokens, record, paths);
+		else {
+			Object val = tokens.nextPrimitive();
+			if(schema.indexOf(String.valueOf(val)) >= 0)
+				record.put(String.valueOf(val), val);
+		}
+		
+		return record;
+	}
+	
+	
+	/**
+	 * Recursive projection method for any JSON value.
+	 * Only follows the attributes and elements nested in the given level,
+	 * the rest are skipped.
+	 * @param tokens The stream positioned before the value.
+	 * @param record The Record where to store the wanted values.
+	 * @param level The level of the paths the value corresponds to.
+	 */
+	private void projectMember(Tokenizer tokens, Record record, KeyPath level)
+			throws ParseException, IOException {
+		int c = tokens.nextClean();
+		
+		if(c == '{' && level.hasChildren()) {
+			if(tokens.nextClean() == '}') //Empty object
+				return;
+			tokens.back();
+			do {
+				if(tokens.nextClean() != '"')
+					throw tokens.syntaxError();
+				KeyPath child = level.child(tokens.nextKey());
+				if(tokens.nextClean() != ':')
+					throw tokens.syntaxError();
+				
+				if(child == null)
+					tokens.skipValue();
+				else
+					projectMember(tokens, record, child);
+			} while(tokens.nextSeparator('}'));
+		}
+		else if(c == '[' && level.hasChildren()) {
+			int objI = 0;
+			
+			if(tokens.nextClean() == ']') //Empty array
+				return;
+			tokens.back();
+			do {
+				KeyPath child = level.child(objI++);
+				
+				if(child == null)
+					tokens.skipValue();
+				else
+					projectMember(tokens, record, child);
+			} while(tokens.nextSeparator(']'));
+		}
+		else {
+			tokens.back();
+			if(c == '{' || c == '[' || level.getColumn() < 0) //Nothing wanted inside
+				tokens.skipValue();
+			else
+				record.setValue(level.getColumn(), tokens.nextPrimitive());
+		}
+	}
+
+
+
+	/**
+	 * Minimal pull tokenizer over a buffered character stream.
+	 * Keeps only a fixed size window of the data in memory.
+	 */
+	private static class Tokenizer {
+
+		private final java.io.Reader in;
+		private final char[] buffer = new char[8192];
+		private final StringBuilder token = new StringBuilder();
+		private int length;
+		private int pos;
+		private long offset; //Characters consumed before the current buffer
+
+
+		Tokenizer(java.io.Reader in) {
+			this.in = in;
+		}
+
+
+		/**
+		 * @return The next character or -1 at the end of the stream.
+		 */
+		int next() throws IOException {
+			if(pos == length) {
+				offset += length;
+				length = in.read(buffer, 0, buffer.length);
+				pos = 0;
+				if(length <= 0) {
+					length = 0;
+					return -1;
+				}
+			}
+			return buffer[pos++];
+		}
+
+
+		/**
+		 * Steps back the last character read, only one step is supported.
+		 */
+		void back() {
+			if(pos > 0)
+				pos--;
+		}
+
+
+		/**
+		 * @return The next non-whitespace character or -1 at the end of the stream.
+		 */
+		int nextClean() throws IOException {
+			int c;
+			do {
+				c = next();
+			} while(c == ' ' || c == '\n' || c == '\r' || c == '\t');
+			return c;
+		}
+
+
+		/**
+		 * Consumes the separator after a member of an object or array.
+		 * @param closing The character closing the current object or array.
+		 * @return Whether there are more members to read.
+		 */
+		boolean nextSeparator(char closing) throws IOException, ParseException {
+			int c = nextClean();
+
+			if(c == ',')
+				return true;
+			if(c == closing)
+				return false;
+			throw syntaxError();
+		}
+
+
+		/**
+		 * Reads a String value, the opening quote has already been consumed.
+		 */
+		String nextString() throws IOException, ParseException {
+			return nextKey().toString();
+		}
+
+
+		/**
+		 * Reads a String value without creating a new String, the opening
+		 * quote has already been consumed.
+		 * @return The characters read, only valid until the next token is read.
+		 */
+		CharSequence nextKey() throws IOException, ParseException {
+			int c;
+
+			token.setLength(0);
+			while((c = next()) != '"') {
+				if(c == -1 || c == '\n' || c == '\r')
+					throw syntaxError();
+
+				if(c == '\\') {
+					c = next();
+					switch(c) {
+					case 'b': token.append('\b'); break;
+					case 't': token.append('\t'); break;
+					case 'n': token.append('\n'); break;
+					case 'f': token.append('\f'); break;
+					case 'r': token.append('\r'); break;
+					case 'u':
+						int code = 0;
+						for(int hexI = 0; hexI < 4; hexI++) {
+							int digit = Character.digit(next(), 16);
+							if(digit < 0)
+								throw syntaxError();
+							code = (code << 4) | digit;
+						}
+						token.append((char) code);
+						break;
+					case '"':
+					case '\'':
+					case '\\':
+					case '/':
+						token.append((char) c);
+						break;
+					default:
+						throw syntaxError();
+					}
+				}
+				else
+					token.append((char) c);
+			}
+
+			return token;
+		}
+
+
+		/**
+		 * Skips the next value of any type without building it.
+		 * Only the nesting and the Strings are checked.
+		 */
+		void skipValue() throws IOException, ParseException {
+			int depth = 0;
+			int c;
+
+			do {
+				c = nextClean();
+				switch(c) {
+				case '{':
+				case '[':
+					depth++;
+					break;
+				case '}':
+				case ']':
+					depth--;
+					break;
+				case '"':
+					skipString();
+					break;
+				case ',':
+				case ':':
+					if(depth == 0)
+						throw syntaxError();
+					break;
+				case -1:
+					throw syntaxError();
+				default:
+					if(c < ' ' || ",:]}/\\\"[{;=#".indexOf(c) >= 0)
+						throw syntaxError();
+					while(c > ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0)
+						c = next();
+					if(c != -1)
+						back();
+				}
+			} while(depth > 0);
+
+			if(depth < 0)
+				throw syntaxError();
+		}
+
+
+		/**
+		 * Skips a String value, the opening quote has already been consumed.
+		 */
+		private void skipString() throws IOException, ParseException {
+			int c;
+
+			while((c = next()) != '"') {
+				if(c == -1 || c == '\n' || c == '\r')
+					throw syntaxError();
+				if(c == '\\')
+					next();
+			}
+		}
+
+
+		/**
+		 * Reads a String, number, boolean or null value.
+		 * Numbers are converted the same way JSON-java does.
+		 */
+		Object nextPrimitive() throws IOException, ParseException {
+			int c = nextClean();
+
+			if(c == '"')
+				return nextString();
+
+			token.setLength(0);
+			while(c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
+				token.append((char) c);
+				c = next();
+			}
+			if(c != -1)
+				back();
+
+			String literal = token.toString().trim();
+			if(literal.isEmpty())
+				throw syntaxError();
+
+			if(literal.equals("null"))
+				return null;
+			if(literal.equals("true"))
+				return Boolean.TRUE;
+			if(literal.equals("false"))
+				return Boolean.FALSE;
+
+			return toNumber(literal);
+		}
+
+
+		/**
+		 * Converts a literal into the narrowest fitting number.
+		 */
+		private Object toNumber(String literal) throws ParseException {
+			char initial = literal.charAt(0);
+
+			if((initial >= '0' && initial <= '9') || initial == '-') {
+				try {
+					if(literal.indexOf('.') > -1 || literal.indexOf('e') > -1
+							|| literal.indexOf('E') > -1 || "-0".equals(literal)) {
+						Double d = Double.valueOf(literal);
+						if(!d.isInfinite() && !d.isNaN())
+							return d;
+					}
+					else {
+						long l = Long.parseLong(literal);
+						if(l == (int) l)
+							return Integer.valueOf((int) l);
+						return Long.valueOf(l);
+					}
+				} catch(NumberFormatException e) {}
+			}
+
+			throw syntaxError();
+		}
+
+
+		ParseException syntaxError() {
+			return new ParseException("Error parsing the raw JSON string", (int) (offset + pos));
+		}
+
+	}
+
+}
@@ -10,6 +10,9 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import records.Record;
+import records.Schema;
+
 /**
  * JSONStringParser is the class responsible for parsing String 
  * representations of JSON objects.
@@ -17,11 +20,47 @@ import org.json.JSONObject;
  * String-represented list of JSON objects into a list of flat 
  * Map<String,Object> each of which represents object hierarchies 
  * by 'delimiter'-separated keys.
+ * <p>
+ * If a {@link Schema} is given the objects are parsed into {@link Record}s
+ * of it and only the paths leading to its attributes are visited, any other
+ * attribute or nested object is skipped without being flattened.
+ * Otherwise the flat keys are interned in a trie of the paths seen so far,
+ * so repeated keys are shared by every Map instead of being concatenated
+ * level by level for each object.
  * 
  * @author Andres Arturo Sanchez Dorantes
  *
  */
 public class JSONStringParser implements StringParser {
+	
+	
+	/**
+	 * The Schema of the Records to parse, null to parse every attribute into HashMaps.
+	 */
+	private Schema schema;
+	
+	/**
+	 * The paths leading to the attributes of the Schema.
+	 */
+	private KeyPath paths;
+	
+	
+	/**
+	 * Creates a parser of every attribute.
+	 * The keys are joined by the {@link StringParser#DELIMITER} at creation time.
+	 */
+	public JSONStringParser() {
+		this(null);
+	}
+	
+	
+	/**
+	 * @param schema The Schema of the Records to parse.
+	 */
+	public JSONStringParser(Schema schema) {
+		this.schema = schema;
+		this.paths = schema == null ? KeyPath.intern() : KeyPath.compile(schema);
+	}
 
 	
 	/* (non-Javadoc)
@@ -67,36 +106,85 @@ public class JSONStringParser implements StringParser {
 	 * @see JSONArray
 	 */
 	public Map<String,Object> parseSingleJSON(Object jObj) {
-		Map<String,Object> map = new HashMap<>();
+		Map<String,Object> map;
 		
+		if(schema != null)
+			return projectSingleJSON(jObj);
+		
+		map = new HashMap<>();
 		if(jObj instanceof JSONObject)
-			parseJSON(map, "", (JSONObject) jObj);
+			parseJSON(map, paths, (JSONObject) jObj);
 		else if(jObj instanceof JSONArray)
-			parseJSON(map, "", (JSONArray) jObj);
+			parseJSON(map, paths, (JSONArray) jObj);
 		else
 			map.put(jObj.toString(), parseJSONVal(jObj));
 		
 		return map;
 	}
 	
+	
+	/**
+	 * Parses only the attributes of the Schema of a single JSON object or array.
+	 * @param jObj The JSONObject or JSONArray to parse.
+	 * @return The Record of the JSON object.
+	 */
+	private Map<String,Object> projectSingleJSON(Object jObj) {
+		Record record = new Record(schema);
+		
+		if(jObj instanceof JSONObject || jObj instanceof JSONArray)
+			projectJSONVal(record, paths, jObj);
+		else if(schema.indexOf(jObj.toString()) >= 0)
+			record.put(jObj.toString(), parseJSONVal(jObj));
+		
+		return record;
+	}
+	
+	
+	/**
+	 * Recursive projection method for any JSON value.
+	 * Only follows the attributes and elements nested in the given level.
+	 * @param record The Record where to store the wanted values.
+	 * @param level The level of the paths the value corresponds to.
+	 * @param val The value to parse.
+	 */
+	private void projectJSONVal(Record record, KeyPath level, Object val) {
+		Object value = parseJSONVal(val);
+		
+		if(value instanceof JSONObject) {
+			JSONObject toParse = (JSONObject) value;
+			for(KeyPath child : level.children())
+				if(toParse.has(child.getName()))
+					projectJSONVal(record, child, toParse.get(child.getName()));
+		}
+		else if(value instanceof JSONArray) {
+			JSONArray toParse = (JSONArray) value;
+			for(KeyPath child : level.children())
+				if(child.getIndex() >= 0 && child.getIndex() < toParse.length())
+					projectJSONVal(record, child, toParse.get(child.getIndex()));
+		}
+		else if(level.getColumn() >= 0)
+			record.setValue(level.getColumn(), value);
+	}
+	
 
 	/**
 	 * Recursive parsing method for an Object-like hierarchy.
 	 * @param map The Map where to store the parsed object.
-	 * @param baseName The key's name hierarchy accumulated from previous calls. 
+	 * @param level The key's name hierarchy accumulated from previous calls. 
 	 * @param toParse The object to parse.
-	 * @see #parseJSON(Map,String,JSONArray)
+	 * @see #parseJSON(Map,KeyPath,JSONArray)
 	 */
-	private void parseJSON(Map<String,Object> map, String baseName, JSONObject toParse) {
+	private void parseJSON(Map<String,Object> map, KeyPath level, JSONObject toParse) {
 		toParse.keys().forEachRemaining(key -> {
 			Object value = parseJSONVal(toParse.get(key));
+			KeyPath child = level.intern(key);
 			
 			if(value instanceof JSONObject)
-				parseJSON(map, baseName+key+StringParser.DELIMITER, (JSONObject) value);
+				parseJSON(map, child, (JSONObject) value);
 			else if(value instanceof JSONArray) 
-				parseJSON(map, baseName+key+StringParser.DELIMITER, (JSONArray) value);
+				parseJSON(map, child, (JSONArray) value);
 			else
-				map.put(baseName+key, value);
+				map.put(child.getPath(), value);
 		});
 	}
 	
@@ -104,11 +192,11 @@ public class JSONStringParser implements StringParser {
 	/**
 	 * Recursive parsing method for an Array-like hierarchy.
 	 * @param map The Map where to store the parsed object.
-	 * @param baseName The key's name hierarchy accumulated from previous calls. 
+	 * @param level The key's name hierarchy accumulated from previous calls. 
 	 * @param toParse The object to parse.
-	 * @see #parseJSON(Map,String,JSONObject)
+	 * @see #parseJSON(Map,KeyPath,JSONObject)
 	 */
-	private void parseJSON(Map<String,Object> map, String baseName, JSONArray toParse) {
+	private void parseJSON(Map<String,Object> map, KeyPath level, JSONArray toParse) {
 		Object jObj;
 		
 		for(int objI=0; objI < toParse.length(); objI++) 
@@ -116,11 +204,11 @@ public class JSONStringParser implements StringParser {
 			jObj = parseJSONVal(toParse.get(objI));
 			
 			if(jObj instanceof JSONObject)
-				parseJSON(map, baseName+objI+StringParser.DELIMITER, (JSONObject) jObj);
+				parseJSON(map, level.intern(objI), (JSONObject) jObj);
 			else if(jObj instanceof JSONArray)
-				parseJSON(map, baseName+objI+StringParser.DELIMITER, (JSONArray) jObj);
+				parseJSON(map, level.intern(objI), (JSONArray) jObj);
 			else
-				map.put(baseName+objI, jObj);
+				map.put(level.intern(objI).getPath(), jObj);
 		}
 	}
 	
@@ -0,0 +1,331 @@
+package parsers;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import records.Schema;
+
+/**
+ * KeyPath is the class responsible for resolving the flat keys of
+ * nested attributes level by level, without concatenating Strings.
+ * <p>
+ * Each KeyPath is one level of nesting whose children are the attributes
+ * nested in it. Compiled from a {@link Schema} it only contains the paths
+ * leading to wanted attributes, so parsers can skip whole subtrees that
+ * can't match any of them.
+ * <p>
+ * A trie created empty interns instead every path it is asked for, so
+ * each distinct flat key is built only once and then shared by every
+ * parsed object. Levels are only added, never removed, so lookups need
+ * no locking. Interning stops growing the trie after a fixed number of
+ * levels to bound its memory with arbitrary keys.
+ * <p>
+ * The children of a level are indexed by name in an open addressing hash
+ * table and by position in an array, so looking one up takes the same time
+ * no matter how many siblings it has.
+ * <p>
+ * Attribute names are split by {@link StringParser#DELIMITER}, so keys
+ * containing the delimiter themselves can't be matched.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+class KeyPath {
+
+	private static final KeyPath[] NO_CHILDREN = new KeyPath[0];
+
+	private static final AtomicReferenceArray<KeyPath> NO_TABLE = new AtomicReferenceArray<>(0);
+
+	/**
+	 * The maximum number of levels an interning trie keeps.
+	 */
+	static final int MAX_INTERNED = 1 << 14;
+
+	private final String name;
+	private final String path;
+	private final int index; //The name as an array index, -1 if it is not a number
+	private final String delimiter; //Shared by the whole trie
+	private final AtomicInteger size; //Shared by the whole trie
+	private int column;
+	private volatile KeyPath[] children; //In order of addition, grown by doubling
+	private volatile int childCount; //Written after the child, so readers see it complete
+	private volatile KeyPath[] trimmed; //The children without the room to grow
+	private volatile AtomicReferenceArray<KeyPath> byName; //Hash table, at most half full
+	private volatile AtomicReferenceArray<KeyPath> byIndex; //By position in an array
+
+
+	/**
+	 * Creates an empty root level.
+	 */
+	private KeyPath() {
+		this.name = "";
+		this.path = null;
+		this.index = -1;
+		this.delimiter = StringParser.DELIMITER.toString();
+		this.size = new AtomicInteger();
+		this.column = -1;
+		this.children = NO_CHILDREN;
+		this.trimmed = NO_CHILDREN;
+		this.byName = NO_TABLE;
+		this.byIndex = NO_TABLE;
+	}
+
+
+	private KeyPath(KeyPath parent, String name) {
+		this.name = name;
+		this.path = parent.path == null ? name : parent.path + parent.delimiter + name;
+		this.index = toIndex(name);
+		this.delimiter = parent.delimiter;
+		this.size = parent.size;
+		this.column = -1;
+		this.children = NO_CHILDREN;
+		this.trimmed = NO_CHILDREN;
+		this.byName = NO_TABLE;
+		this.byIndex = NO_TABLE;
+	}
+
+
+	/**
+	 * Creates an empty trie to intern the paths of any object.
+	 * The current {@link StringParser#DELIMITER} is used to join the paths.
+	 * @return The root level of the trie.
+	 */
+	static KeyPath intern() {
+		return new KeyPath();
+	}
+
+
+	/**
+	 * Compiles the paths leading to the attributes of a Schema.
+	 * @return The root level of the paths.
+	 */
+	static KeyPath compile(Schema schema) {
+		KeyPath root = new KeyPath();
+		String delimiter = root.delimiter;
+
+		for(int columnI = 0; columnI < schema.size(); columnI++) {
+			String column = schema.getColumn(columnI);
+			KeyPath node = root;
+			int start = 0;
+			int end;
+
+			do {
+				end = column.indexOf(delimiter, start);
+				node = node.addChild(column.substring(start, end < 0 ? column.length() : end));
+				start = end + delimiter.length();
+			} while(end >= 0 && !delimiter.isEmpty());
+
+			node.column = columnI;
+		}
+
+		return root;
+	}
+
+
+	/**
+	 * @param name The name of the nested attribute.
+	 * @return The nested level or null if no wanted attribute is nested under that name.
+	 */
+	KeyPath child(CharSequence name) {
+		AtomicReferenceArray<KeyPath> table = byName;
+		KeyPath child;
+
+		if(table.length() == 0)
+			return null;
+		for(int slot = hash(name) & (table.length() - 1); (child = table.get(slot)) != null;
+				slot = (slot + 1) & (table.length() - 1))
+			if(contentEquals(child.name, name))
+				return child;
+		return null;
+	}
+
+
+	/**
+	 * @param index The position of the nested element in an array.
+	 * @return The nested level or null if no wanted attribute is nested under that position.
+	 */
+	KeyPath child(int index) {
+		AtomicReferenceArray<KeyPath> table = byIndex;
+
+		if(index < table.length())
+			return table.get(index);
+		return index < MAX_INTERNED ? null : child(Integer.toString(index)); //Only a Schema can nest that far
+	}
+
+
+	/**
+	 * Gets a nested level, adding it to the trie the first time it is seen.
+	 * @param name The name of the nested attribute.
+	 * @return The level of the attribute, its path is shared by every lookup.
+	 */
+	KeyPath intern(CharSequence name) {
+		KeyPath child = child(name);
+		return child != null ? child : addChild(name.toString());
+	}
+
+
+	/**
+	 * Gets the level of an array element, adding it to the trie the first time it is seen.
+	 * @param index The position of the nested element in an array.
+	 * @return The level of the element, its path is shared by every lookup.
+	 */
+	KeyPath intern(int index) {
+		KeyPath child = child(index);
+		return child != null ? child : addChild(Integer.toString(index));
+	}
+
+
+	/**
+	 * @return The nested levels.
+	 */
+	KeyPath[] children() {
+		int count = childCount; //Read first, the array has at least as many children
+		KeyPath[] nested = trimmed;
+
+		if(nested.length != count)
+			trimmed = nested = Arrays.copyOf(children, count);
+		return nested;
+	}
+
+
+	/**
+	 * @return Whether there are attributes nested in this level.
+	 */
+	boolean hasChildren() {
+		return childCount > 0;
+	}
+
+
+	/**
+	 * @return The name of the level in its parent.
+	 */
+	String getName() {
+		return name;
+	}
+
+
+	/**
+	 * @return The name as an array index or -1 if it is not a number.
+	 */
+	int getIndex() {
+		return index;
+	}
+
+
+	/**
+	 * @return The complete flat key of the level, null for the root level.
+	 */
+	String getPath() {
+		return path;
+	}
+
+
+	/**
+	 * @return The column of the Schema whose key is this path or -1 if none.
+	 */
+	int getColumn() {
+		return column;
+	}
+
+
+	/**
+	 * Gets a nested level creating it if necessary.
+	 * Once the trie is full the level is created without being kept.
+	 */
+	private synchronized KeyPath addChild(String name) {
+		KeyPath child = child(name);
+
+		if(child == null) {
+			child = new KeyPath(this, name);
+			if(size.get() >= MAX_INTERNED)
+				return child;
+			if(childCount == children.length)
+				children = Arrays.copyOf(children, Math.max(4, childCount * 2));
+			children[childCount] = child;
+			putByName(child);
+			if(child.index >= 0 && child.index < MAX_INTERNED)
+				putByIndex(child);
+			childCount++; //Published last to unlocked readers
+			size.incrementAndGet();
+		}
+
+		return child;
+	}
+
+
+	/**
+	 * Adds a child to the hash table of names, doubling it once half full.
+	 * Should be called holding the lock.
+	 */
+	private void putByName(KeyPath child) {
+		AtomicReferenceArray<KeyPath> table = byName;
+
+		if((childCount + 1) * 2 > table.length()) { //Rehashed into a new table published whole
+			AtomicReferenceArray<KeyPath> grown = new AtomicReferenceArray<>(Math.max(8, table.length() * 2));
+			for(int childI = 0; childI < childCount; childI++)
+				putInto(grown, children[childI]);
+			byName = table = grown;
+		}
+		putInto(table, child);
+	}
+
+
+	private static void putInto(AtomicReferenceArray<KeyPath> table, KeyPath child) {
+		int slot = hash(child.name) & (table.length() - 1);
+
+		while(table.get(slot) != null)
+			slot = (slot + 1) & (table.length() - 1);
+		table.set(slot, child);
+	}
+
+
+	/**
+	 * Adds a child to the array of positions, growing it to fit the position.
+	 * Should be called holding the lock.
+	 */
+	private void putByIndex(KeyPath child) {
+		AtomicReferenceArray<KeyPath> table = byIndex;
+
+		if(child.index >= table.length()) {
+			AtomicReferenceArray<KeyPath> grown = new AtomicReferenceArray<>(
+					Math.min(MAX_INTERNED, Math.max(child.index + 1, table.length() * 2)));
+			for(int indexI = 0; indexI < table.length(); indexI++)
+				grown.set(indexI, table.get(indexI));
+			byIndex = table = grown;
+		}
+		table.set(child.index, child);
+	}
+
+
+	/**
+	 * Hashes the characters of a name as {@link String#hashCode()} does, spreading the high bits.
+	 */
+	private static int hash(CharSequence chars) {
+		int hash = 0;
+
+		for(int charI = 0; charI < chars.length(); charI++)
+			hash = 31 * hash + chars.charAt(charI);
+		return hash ^ (hash >>> 16);
+	}
+
+
+	private static boolean contentEquals(String str, CharSequence chars) {
+		if(str.length() != chars.length())
+			return false;
+		for(int charI = 0; charI < str.length(); charI++)
+			if(str.charAt(charI) != chars.charAt(charI))
+				return false;
+		return true;
+	}
+
+
+	private static int toIndex(String name) {
+		if(name.isEmpty() || name.length() > 9 || (name.length() > 1 && name.charAt(0) == '0'))
+			return -1;
+		for(int charI = 0; charI < name.length(); charI++)
+			if(name.charAt(charI) < '0' || name.charAt(charI) > '9')
+				return -1;
+		return Integer.parseInt(name);
+	}
+
+}
@@ -1,11 +1,16 @@
 package parsers;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Provides a common interface for parsers that transform Maps 
  * representations of data into formatted String representations.
+ * <p>
+ * The formatted data can also be appended straight into a buffer,
+ * by default it is built as a String first. Binary formats, which can't
+ * be represented as Strings, are parsed by a {@link BinaryMapParser} instead.
  * @author Andres Arturo Sanchez Dorantes
  */
 public interface MapParser {
@@ -29,6 +34,30 @@ public interface MapParser {
 	public String parseMaps(List<Map<String,Object>> maps);
 	
 	
+	/**
+	 * Parses flat Maps adding headers or meta-data into a buffer.
+	 * @param maps The list of Maps to parse.
+	 * @param out The buffer where to append the parsed data.
+	 * @throws IOException If the buffer can't be appended to.
+	 * @see #firstParsing(List)
+	 */
+	public default void firstParsing(List<Map<String,Object>> maps, Appendable out) throws IOException {
+		out.append(firstParsing(maps));
+	}
+	
+	
+	/**
+	 * Parses flat Maps to a specific representation into a buffer.
+	 * @param maps The list of Maps to parse.
+	 * @param out The buffer where to append the parsed data.
+	 * @throws IOException If the buffer can't be appended to.
+	 * @see #parseMaps(List)
+	 */
+	public default void parseMaps(List<Map<String,Object>> maps, Appendable out) throws IOException {
+		out.append(parseMaps(maps));
+	}
+	
+	
 	/**
 	 * Generates the endings or specific closing String for the
 	 * representation being parsed.
@@ -0,0 +1,273 @@
+package parsers;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * NDJSONMapParser is the class responsible for parsing flat Maps
+ * into JSON Lines, one JSON object per line:
+ * <p>
+ * {"Map1.key1":Map1.value1,"Map1.key2":Map1.value2} + '\n' +
+ * {"Map2.key1":Map2.value1,"Map2.key2":Map2.value2}
+ * <p>
+ * Objects can also be re-nested: the flat keys are split by the
+ * {@link StringParser#DELIMITER} back into nested objects, and objects
+ * whose keys are the indexes 0, 1, 2... back into arrays. A key nested
+ * under a value which is not an object is kept flat in the deepest object,
+ * whichever of the two keys comes first.
+ * <p>
+ * There are no titles nor endings, so outputs can simply be appended to
+ * each other and split anywhere between lines. Rows are appended one by
+ * one straight into the buffer.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class NDJSONMapParser implements MapParser {
+
+
+	/**
+	 * Whether to re-nest the flat keys into objects.
+	 */
+	private boolean nested;
+
+	/**
+	 * The delimiter of the nesting levels, looked up only once.
+	 */
+	private String delimiter;
+
+
+	/**
+	 * @param nested Whether to re-nest the flat keys into objects.
+	 */
+	public NDJSONMapParser(boolean nested) {
+		this.nested = nested;
+		this.delimiter = StringParser.DELIMITER.toString();
+	}
+
+
+	/**
+	 * Creates a parser of flat objects.
+	 */
+	public NDJSONMapParser() {
+		this(false);
+	}
+
+
+	/**
+	 * Parses a single Map into a one line JSON object.
+	 * @return The JSON object without the line break.
+	 */
+	public String parseMap(Map<String,Object> map) {
+		StringBuilder line = new StringBuilder();
+
+		try {
+			appendMap(map, line);
+		} catch (IOException e) {} //StringBuilders don't throw
+
+		return line.toString();
+	}
+
+
+	/* (non-Javadoc)
+	 * No titles, the same as the other Maps.
+	 * @see parsers.MapParser#firstParsing(java.util.List)
+	 */
+	@Override
+	public String firstParsing(List<Map<String, Object>> maps) {
+		return parseMaps(maps);
+	}
+
+
+	/* (non-Javadoc)
+	 * Appends each Map parsed as a new line to the string.
+	 * @see parsers.MapParser#parseMaps(java.util.List)
+	 */
+	@Override
+	public String parseMaps(List<Map<String, Object>> maps) {
+		StringBuilder parsed = new StringBuilder();
+
+		try {
+			parseMaps(maps, parsed);
+		} catch (IOException e) {} //StringBuilders don't throw
+
+		return parsed.toString();
+	}
+
+
+	/* (non-Javadoc)
+	 * No titles, the same as the other Maps.
+	 * @see parsers.MapParser#firstParsing(java.util.List, java.lang.Appendable)
+	 */
+	@Override
+	public void firstParsing(List<Map<String, Object>> maps, Appendable out) throws IOException {
+		parseMaps(maps, out);
+	}
+
+
+	/* (non-Javadoc)
+	 * Appends each Map parsed as a new line, object by object.
+	 * @see parsers.MapParser#parseMaps(java.util.List, java.lang.Appendable)
+	 */
+	@Override
+	public void parseMaps(List<Map<String, Object>> maps, Appendable out) throws IOException {
+		for(Map<String, Object> map : maps) {
+			appendMap(map, out);
+			out.append('\n');
+		}
+	}
+
+
+	/* (non-Javadoc)
+	 * @see parsers.MapParser#getEndings()
+	 */
+	@Override
+	public String getEndings() {
+		return "";
+	}
+
+
+	/**
+	 * Appends a single Map as a JSON object without the line break.
+	 */
+	private void appendMap(Map<String,Object> map, Appendable out) throws IOException {
+		appendObject(nested ? nest(map) : map, out);
+	}
+
+
+	/**
+	 * Rebuilds the nested objects of a flat Map.
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String,Object> nest(Map<String,Object> map) {
+		Map<String,Object> root = new LinkedHashMap<>();
+
+		for(Map.Entry<String,Object> entry : map.entrySet()) {
+			String key = entry.getKey();
+			Map<String,Object> level = root;
+			int start = 0;
+			int end;
+
+			while(!delimiter.isEmpty() && (end = key.indexOf(delimiter, start)) >= 0) {
+				Object child = level.get(key.substring(start, end));
+				if(child == null) {
+					child = new LinkedHashMap<>();
+					level.put(key.substring(start, end), child);
+				}
+				else if(!(child instanceof LinkedHashMap)) //Not an object, the rest stays flat
+					break;
+				level = (Map<String,Object>) child;
+				start = end + delimiter.length();
+			}
+
+			String last = key.substring(start);
+			Object replaced = level.put(last, entry.getValue());
+			if(replaced instanceof LinkedHashMap) { //Keys nested under it seen before, kept flat instead
+				level.remove(last);
+				flatten(last + delimiter, (Map<String,Object>) replaced, level);
+				level.put(last, entry.getValue());
+			}
+		}
+
+		return root;
+	}
+
+
+	/**
+	 * Adds the values of a rebuilt nested object back into a level under their flat keys.
+	 * @param prefix The flat key of the object followed by the delimiter.
+	 */
+	@SuppressWarnings("unchecked")
+	private void flatten(String prefix, Map<String,Object> object, Map<String,Object> level) {
+		for(Map.Entry<String,Object> entry : object.entrySet())
+			if(entry.getValue() instanceof LinkedHashMap)
+				flatten(prefix + entry.getKey() + delimiter, (Map<String,Object>) entry.getValue(), level);
+			else
+				level.put(prefix + entry.getKey(), entry.getValue());
+	}
+
+
+	@SuppressWarnings("unchecked")
+	private void appendObject(Map<String,Object> object, Appendable out) throws IOException {
+		boolean array = nested && isArray(object);
+		boolean first = true;
+
+		out.append(array ? '[' : '{');
+		for(Map.Entry<String,Object> entry : object.entrySet()) {
+			if(!first)
+				out.append(',');
+			if(!array) {
+				appendString(entry.getKey(), out);
+				out.append(':');
+			}
+			if(nested && entry.getValue() instanceof LinkedHashMap)
+				appendObject((Map<String,Object>) entry.getValue(), out);
+			else
+				appendValue(entry.getValue(), out);
+			first = false;
+		}
+		out.append(array ? ']' : '}');
+	}
+
+
+	/**
+	 * @return Whether the keys are the indexes 0, 1, 2... in order.
+	 */
+	private static boolean isArray(Map<String,Object> object) {
+		int index = 0;
+
+		if(object.isEmpty())
+			return false;
+		for(String key : object.keySet())
+			if(!key.equals(Integer.toString(index++)))
+				return false;
+		return true;
+	}
+
+
+	private static void appendValue(Object value, Appendable out) throws IOException {
+		if(value == null)
+			out.append("null");
+		else if(value instanceof Double || value instanceof Float) {
+			double number = ((Number) value).doubleValue();
+			out.append(Double.isNaN(number) || Double.isInfinite(number) ? "null" : value.toString());
+		}
+		else if(value instanceof Number || value instanceof Boolean)
+			out.append(value.toString());
+		else
+			appendString(value.toString(), out);
+	}
+
+
+	/**
+	 * Appends a String as a quoted and escaped JSON string.
+	 */
+	private static void appendString(String str, Appendable out) throws IOException {
+		int start = 0;
+
+		out.append('"');
+		for(int charI = 0; charI < str.length(); charI++) {
+			char c = str.charAt(charI);
+			if(c >= 0x20 && c != '"' && c != '\\')
+				continue;
+
+			out.append(str, start, charI); //Unescaped run
+			switch(c) {
+			case '"': out.append("\\\""); break;
+			case '\\': out.append("\\\\"); break;
+			case '\n': out.append("\\n"); break;
+			case '\r': out.append("\\r"); break;
+			case '\t': out.append("\\t"); break;
+			case '\b': out.append("\\b"); break;
+			case '\f': out.append("\\f"); break;
+			default: out.append(String.format("\\u%04x", (int) c));
+			}
+			start = charI + 1;
+		}
+		out.append(str, start, str.length());
+		out.append('"');
+	}
+
+}
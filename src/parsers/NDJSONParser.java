@@ -0,0 +1,228 @@
+package parsers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+
+/**
+ * NDJSONParser is the class responsible for parsing JSON Lines, also
+ * known as newline delimited JSON: one JSON document per line.
+ * <p>
+ * Every line is parsed on its own by another parser, so the lines of big
+ * inputs can be split among the threads of a fork-join pool, see
+ * {@link #setParallelism(ForkJoinPool, int)}. The Maps are produced in
+ * the order of the lines either way. Lines holding arrays produce one Map
+ * per element, blank lines are ignored.
+ * <p>
+ * Streams are read line by line: lines are parsed and emitted one by one,
+ * or gathered in batches of the parallel threshold to be parsed in parallel.
+ * <p>
+ * Thread-safe as long as the parser of the lines is.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class NDJSONParser implements StreamParser {
+
+
+	/**
+	 * The parser of each line.
+	 */
+	private StringParser lineParser;
+
+	/**
+	 * The pool where to parse big inputs, null to always parse sequentially.
+	 */
+	private ForkJoinPool pool;
+
+	/**
+	 * The minimum number of lines parsed in parallel.
+	 */
+	private int parallelThreshold;
+
+
+	/**
+	 * @param lineParser The parser of each line.
+	 */
+	public NDJSONParser(StringParser lineParser) {
+		this.lineParser = lineParser;
+	}
+
+
+	/**
+	 * Creates a parser of every attribute of the lines.
+	 */
+	public NDJSONParser() {
+		this(new JSONStreamParser());
+	}
+
+
+	/**
+	 * Makes big inputs be parsed in parallel.
+	 * @param pool The pool where to parse the lines, null to parse them sequentially.
+	 * @param threshold The minimum number of lines to parse in parallel.
+	 */
+	public void setParallelism(ForkJoinPool pool, int threshold) {
+		this.pool = pool;
+		this.parallelThreshold = Math.max(2, threshold);
+	}
+
+
+	/* (non-Javadoc)
+	 * Splits the data in lines and parses them.
+	 * @see parsers.StreamParser#parseString(java.lang.String)
+	 */
+	@Override
+	public List<Map<String,Object>> parseString(String stringData) throws ParseException {
+		List<String> lines = new ArrayList<>();
+		int start = 0;
+		int end;
+
+		while(start < stringData.length()) {
+			end = stringData.indexOf('\n', start);
+			if(end < 0)
+				end = stringData.length();
+			lines.add(stringData.substring(start, end));
+			start = end + 1;
+		}
+
+		return parseLines(lines, 0);
+	}
+
+
+	/* (non-Javadoc)
+	 * Reads the stream line by line emitting the Maps in order.
+	 * @see parsers.StreamParser#parseStream(java.io.InputStream, java.util.function.Consumer)
+	 */
+	@Override
+	public void parseStream(InputStream dataStream, Consumer<Map<String,Object>> consumer)
+			throws ParseException, IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(dataStream, StandardCharsets.UTF_8));
+		List<String> batch = new ArrayList<>();
+		int firstLine = 0;
+		String line;
+
+		while((line = reader.readLine()) != null) {
+			batch.add(line);
+			if(pool == null || batch.size() >= parallelThreshold) {
+				parseLines(batch, firstLine).forEach(consumer);
+				firstLine += batch.size();
+				batch.clear();
+			}
+		}
+		parseLines(batch, firstLine).forEach(consumer);
+	}
+
+
+	/**
+	 * Parses a list of lines, in parallel if there are enough of them.
+	 * @param firstLine The number of the first line in the whole data, for error reporting.
+	 * @throws ParseException If a line is not valid, its offset is the number of the line.
+	 */
+	private List<Map<String,Object>> parseLines(List<String> lines, int firstLine) throws ParseException {
+		List<Map<String,Object>> maps = new ArrayList<>(lines.size());
+
+		if(pool != null && lines.size() >= parallelThreshold)
+			return parseInParallel(lines, firstLine);
+
+		for(int lineI = 0; lineI < lines.size(); lineI++)
+			maps.addAll(parseLine(lines.get(lineI), firstLine + lineI));
+
+		return maps;
+	}
+
+
+	/**
+	 * Splits the parsing of the lines into fork-join tasks.
+	 * Each task parses a contiguous range of lines into its positions
+	 * of a list presized with nulls, which is then flattened in order.
+	 */
+	private List<Map<String,Object>> parseInParallel(List<String> lines, int firstLine) throws ParseException {
+		List<List<Map<String,Object>>> parsedLines = new ArrayList<>(Collections.nCopies(lines.size(), null));
+		ParseException[] errors = new ParseException[lines.size()];
+		List<Map<String,Object>> maps = new ArrayList<>(lines.size());
+		int chunkSize = Math.max(1, lines.size() / (pool.getParallelism() * 4));
+
+		pool.invoke(new RangeParsing(lines, parsedLines, errors, firstLine, 0, lines.size(), chunkSize));
+
+		for(ParseException error : errors) //The first error in order of lines
+			if(error != null)
+				throw error;
+		for(List<Map<String,Object>> parsed : parsedLines)
+			maps.addAll(parsed);
+
+		return maps;
+	}
+
+
+	private List<Map<String,Object>> parseLine(String line, int lineNumber) throws ParseException {
+		if(line.trim().isEmpty())
+			return new ArrayList<>(0);
+
+		try {
+			return lineParser.parseString(line);
+		} catch (ParseException e) {
+			throw new ParseException("Error parsing line " + (lineNumber + 1) + ": " + e.getMessage(), lineNumber);
+		}
+	}
+
+
+
+	/**
+	 * Fork-join task parsing a range of lines.
+	 */
+	private class RangeParsing extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<String> lines;
+		private final List<List<Map<String,Object>>> parsedLines; //Each task sets its own positions
+		private final ParseException[] errors;
+		private final int firstLine;
+		private final int from;
+		private final int to;
+		private final int chunkSize;
+
+
+		RangeParsing(List<String> lines, List<List<Map<String,Object>>> parsedLines, ParseException[] errors,
+				int firstLine, int from, int to, int chunkSize) {
+			this.lines = lines;
+			this.parsedLines = parsedLines;
+			this.errors = errors;
+			this.firstLine = firstLine;
+			this.from = from;
+			this.to = to;
+			this.chunkSize = chunkSize;
+		}
+
+
+		@Override
+		protected void compute() {
+			int middle = (from + to) >>> 1;
+
+			if(to - from <= chunkSize)
+				for(int lineI = from; lineI < to; lineI++)
+					try {
+						parsedLines.set(lineI, parseLine(lines.get(lineI), firstLine + lineI));
+					} catch (ParseException e) {
+						errors[lineI] = e;
+						return;
+					}
+			else
+				invokeAll(new RangeParsing(lines, parsedLines, errors, firstLine, from, middle, chunkSize),
+						new RangeParsing(lines, parsedLines, errors, firstLine, middle, to, chunkSize));
+		}
+
+	}
+
+}
@@ -0,0 +1,58 @@
+package parsers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Provides a common interface for parsers able to transform a stream
+ * of encoded data into flat Maps incrementally, emitting every Map as
+ * soon as its object has been completely read instead of waiting for
+ * the whole data to arrive.
+ * <p>
+ * The Maps produced follow the same {@link #DELIMITER}-separated key
+ * hierarchies as any other {@link StringParser}.
+ * @author Andres Arturo Sanchez Dorantes
+ */
+public interface StreamParser extends StringParser {
+
+	/**
+	 * Parses a stream of UTF-8 encoded data into the final Map objects.
+	 * The data to parse can either represent a single object or an
+	 * array of them, in which case each one is handed to the consumer
+	 * as a new Map in order of appearance.
+	 * <p>
+	 * The stream is read up to the end of the data but not closed.
+	 * @param dataStream A stream of formatted data.
+	 * @param consumer Receives each parsed Map.
+	 * @throws ParseException If the data is not valid for the format intended to parse.
+	 * @throws IOException If the stream can't be read.
+	 */
+	public void parseStream(InputStream dataStream, Consumer<Map<String,Object>> consumer)
+			throws ParseException, IOException;
+
+
+	/* (non-Javadoc)
+	 * Collects the streamed Maps into a list.
+	 * @see parsers.StringParser#parseString(java.lang.String)
+	 */
+	@Override
+	public default List<Map<String,Object>> parseString(String stringData) throws ParseException {
+		List<Map<String,Object>> maps = new ArrayList<>();
+
+		try {
+			parseStream(new ByteArrayInputStream(stringData.getBytes(StandardCharsets.UTF_8)), maps::add);
+		} catch (IOException e) { //Not possible reading from memory
+			throw new ParseException(e.getMessage(), 0);
+		}
+
+		return maps;
+	}
+
+}
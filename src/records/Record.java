@@ -0,0 +1,176 @@
+package records;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Record is the class responsible for holding the values of a flat
+ * object described by a {@link Schema}.
+ * Values are stored in a single array indexed by column instead of a
+ * hash table, while the Map API is kept as an adapter so that a Record
+ * can be used anywhere a flat Map is expected.
+ * <p>
+ * As a Map, a Record always contains every attribute of its Schema,
+ * in the Schema's order and with a null value if it was never set.
+ * Attributes out of the Schema can't be added.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class Record extends AbstractMap<String, Object> {
+
+	private final Schema schema;
+	private final Object[] values;
+
+
+	public Record(Schema schema) {
+		this.schema = schema;
+		this.values = new Object[schema.size()];
+	}
+
+
+	public Schema getSchema() {
+		return schema;
+	}
+
+
+	/**
+	 * @return The value of the attribute at a given column index.
+	 */
+	public Object getValue(int column) {
+		return values[column];
+	}
+
+
+	/**
+	 * Sets the value of the attribute at a given column index.
+	 */
+	public void setValue(int column, Object value) {
+		values[column] = value;
+	}
+
+
+	@Override
+	public Object get(Object key) {
+		int column = schema.indexOf(key);
+
+		return column < 0 ? null : values[column];
+	}
+
+
+	@Override
+	public boolean containsKey(Object key) {
+		return schema.indexOf(key) >= 0;
+	}
+
+
+	/**
+	 * @throws IllegalArgumentException If the attribute is not part of the Schema.
+	 * @see java.util.AbstractMap#put(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public Object put(String key, Object value) {
+		int column = schema.indexOf(key);
+		Object previous;
+
+		if(column < 0)
+			throw new IllegalArgumentException("Attribute " + key + " is not part of the schema");
+
+		previous = values[column];
+		values[column] = value;
+		return previous;
+	}
+
+
+	@Override
+	public int size() {
+		return values.length;
+	}
+
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		return new AbstractSet<Map.Entry<String, Object>>() {
+
+			@Override
+			public Iterator<Map.Entry<String, Object>> iterator() {
+				return new Iterator<Map.Entry<String, Object>>() {
+					private int column = 0;
+
+					@Override
+					public boolean hasNext() {
+						return column < values.length;
+					}
+
+					@Override
+					public Map.Entry<String, Object> next() {
+						if(!hasNext())
+							throw new NoSuchElementException();
+						return new Column(column++);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return values.length;
+			}
+		};
+	}
+
+
+
+	/**
+	 * A write-through view of one attribute of the Record.
+	 */
+	private class Column implements Map.Entry<String, Object> {
+
+		private final int index;
+
+
+		Column(int index) {
+			this.index = index;
+		}
+
+
+		@Override
+		public String getKey() {
+			return schema.getColumn(index);
+		}
+
+
+		@Override
+		public Object getValue() {
+			return values[index];
+		}
+
+
+		@Override
+		public Object setValue(Object value) {
+			Object previous = values[index];
+			values[index] = value;
+			return previous;
+		}
+
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Map.Entry))
+				return false;
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>) obj;
+			return getKey().equals(entry.getKey())
+					&& (getValue() == null ? entry.getValue() == null : getValue().equals(entry.getValue()));
+		}
+
+
+		@Override
+		public int hashCode() {
+			return getKey().hashCode() ^ (getValue() == null ? 0 : getValue().hashCode());
+		}
+
+	}
+
+}
@@ -0,0 +1,86 @@
+package records;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Schema is the class responsible for describing the attributes
+ * (columns) of flat records.
+ * A Schema is compiled once from the list of wanted attributes so that
+ * records only need to store their values in an array indexed by column.
+ * Repeated attributes are only taken into account once.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class Schema {
+
+	private final String[] columns;
+	private final Map<String, Integer> indexes;
+
+
+	public Schema(List<String> columns) {
+		LinkedHashSet<String> uniqueColumns = new LinkedHashSet<>(columns);
+
+		this.columns = uniqueColumns.toArray(new String[uniqueColumns.size()]);
+		this.indexes = new HashMap<>();
+		for(int columnI = 0; columnI < this.columns.length; columnI++)
+			indexes.put(this.columns[columnI], columnI);
+	}
+
+
+	public Schema(String... columns) {
+		this(Arrays.asList(columns));
+	}
+
+
+	/**
+	 * @param column The name of the attribute.
+	 * @return The index of the column or -1 if it is not part of the Schema.
+	 */
+	public int indexOf(Object column) {
+		Integer index = indexes.get(column);
+
+		return index == null ? -1 : index;
+	}
+
+
+	/**
+	 * @return The name of the attribute at a given index.
+	 */
+	public String getColumn(int index) {
+		return columns[index];
+	}
+
+
+	/**
+	 * @return The names of the attributes in order.
+	 */
+	public List<String> getColumns() {
+		return Collections.unmodifiableList(Arrays.asList(columns));
+	}
+
+
+	/**
+	 * @return The number of attributes.
+	 */
+	public int size() {
+		return columns.length;
+	}
+
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof Schema && Arrays.equals(columns, ((Schema) obj).columns);
+	}
+
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(columns);
+	}
+
+}
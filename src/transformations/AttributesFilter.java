@@ -1,29 +1,33 @@
 package transformations;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import records.Record;
+import records.Schema;
+
 /**
  * AttributesFilter is the class responsible for cleaning unwanted 
  * attributes off of a Map.
  * An AttributesFilter object provides the algorithm to generate new
  * Maps containing ALL the desired attributes.
+ * <p>
+ * The filtered Maps are {@link Record}s of a Schema compiled from the
+ * desired attributes, so filtering costs a single array per Map.
  * @author Andres Arturo Sanchez Dorantes
  *
  */
 public class AttributesFilter extends Transformation {
 	
 	/**
-	 * The list of attributes to preserve.
+	 * The attributes to preserve.
 	 */
-	private ArrayList<String> wantedAttr;
+	private Schema wantedAttr;
 	
 	
 	public AttributesFilter(List<String> attributes) {
-		this.wantedAttr = new ArrayList<>(attributes);
+		this.wantedAttr = new Schema(attributes);
 	}
 	
 
@@ -36,18 +40,40 @@ public class AttributesFilter extends Transformation {
 	 * Creates a new Map containing ALL the desired attributes.
 	 * The new Map contains exactly the attributes wanted, if the original
 	 * map does not have them then they are created with a value of null.
+	 * Records of the wanted attributes are already filtered and returned as they are.
 	 * @param originalObj The original Map.
 	 * @return The filtered Map.
 	 */
 	@Override
 	public Map<String, Object> transformMap(Map<String, Object> originalObj) {
-		Map<String, Object> filteredObj = new HashMap<>();
+		Record filteredObj;
+		
+		if(originalObj instanceof Record && ((Record) originalObj).getSchema().equals(wantedAttr))
+			return originalObj;
 		
-		for(String attr : wantedAttr)
-				filteredObj.put(attr, originalObj.get(attr));
+		filteredObj = new Record(wantedAttr);
+		for(int attrI = 0; attrI < wantedAttr.size(); attrI++)
+				filteredObj.setValue(attrI, originalObj.get(wantedAttr.getColumn(attrI)));
 		
 		return filteredObj;
 	}
 	
+	
+	/**
+	 * @return The Schema of the filtered Maps.
+	 */
+	public Schema getSchema() {
+		return wantedAttr;
+	}
+	
+	
+	/* (non-Javadoc)
+	 * @see transformations.Transformation#getProjection()
+	 */
+	@Override
+	public Schema getProjection() {
+		return wantedAttr;
+	}
+	
 
 }
@@ -3,41 +3,25 @@ package transformations;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 /**
  * AttributesFilterAndSort responsibility is to Filter and then Sort a Map
  * based on a given criteria for its attributes.
+ * Both steps are applied as a single {@link TransformationChain}.
  * @author Andres Arturo Sanchez Dorantes
  *
  */
-public class AttributesFilterAndSort extends Transformation {
-	
-	private AttributesSort sorter;
-	private AttributesFilter filter;
+public class AttributesFilterAndSort extends TransformationChain {
 	
 	
 	public AttributesFilterAndSort(List<String> attributes) {
-		sorter = new AttributesSort(attributes);
-		filter = new AttributesFilter(attributes);
+		super(new AttributesFilter(attributes), new AttributesSort(attributes));
 	}
 	
 
 	public AttributesFilterAndSort(String... attributes) {
 		this(Arrays.asList(attributes));
 	}
-	
-
-	/**
-	 * Filters and orders a Map.
-	 * Delegates the individual tasks of Filtering and Sorting.
-	 * @see transformations.AttributesFilter#transformMap(java.util.Map)
-	 * @see transformations.AttributesSort#transformMap(java.util.Map)
-	 */
-	@Override
-	public Map<String, Object> transformMap(Map<String, Object> originalObj) {
-		return sorter.transformMap(filter.transformMap(originalObj));
-	}
 
 
 }
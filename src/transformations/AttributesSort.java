@@ -7,6 +7,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import records.Record;
+
 /**
  * AttributesSort is the class responsible for rearranging the
  * attributes of a Map given a static predefined order of them.
@@ -36,12 +38,18 @@ public class AttributesSort extends Transformation {
 	 * Creates a new ordered Map.
 	 * The new Map contains all the attributes of the original Map whose
 	 * keys match the given order plus the rest of them unordered.
+	 * Records whose Schema already follows the order are returned as they are.
 	 * @param originalMap The original Map to order.
 	 * @return The ordered Map.
 	 */
 	@Override
 	public Map<String, Object> transformMap(Map<String, Object> originalMap) {
-		LinkedHashMap<String, Object> orderedObj = new LinkedHashMap<>();
+		LinkedHashMap<String, Object> orderedObj;
+		
+		if(originalMap instanceof Record && isOrdered((Record) originalMap))
+			return originalMap;
+		
+		orderedObj = new LinkedHashMap<>();
 		
 		for(String attr : orderedAttr)
 			if(originalMap.containsKey(attr))
@@ -52,5 +60,22 @@ public class AttributesSort extends Transformation {
 			
 		return orderedObj;
 	}
+	
+	
+	/**
+	 * @return Whether the attributes of a Record already follow the order.
+	 */
+	private boolean isOrdered(Record record) {
+		List<String> columns = record.getSchema().getColumns();
+		int columnI = 0;
+		
+		for(String attr : orderedAttr) //Attributes not in the Record don't break the order
+			if(columnI < columns.size() && columns.get(columnI).equals(attr))
+				columnI++;
+			else if(record.containsKey(attr))
+				return false;
+		
+		return columnI == columns.size();
+	}
 
 }
@@ -1,9 +1,15 @@
 package transformations;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.UnaryOperator;
+
+import records.Schema;
 
 
 /**
@@ -11,11 +17,30 @@ import java.util.stream.Collectors;
  * <p>
  * Example of transformations can be Filtering, Ordering, Reducing, etc.
  * <p>
+ * Transformations can be chained with {@link #andThen(Transformation)} to
+ * apply all of them to each Map in a single pass.
+ * <p>
+ * Big lists can be transformed in parallel by a fork-join pool, see
+ * {@link #setParallelism(ForkJoinPool, int)}. Transformations are then
+ * applied to several Maps at the same time, so they must not keep state
+ * between Maps.
+ * <p>
  * @author Andres Arturo Sanchez Dorantes
  */
 public abstract class Transformation {
 	
 	
+	/**
+	 * The pool where to transform big lists, null to always transform sequentially.
+	 */
+	private ForkJoinPool pool;
+	
+	/**
+	 * The minimum size of the lists transformed in parallel.
+	 */
+	private int parallelThreshold;
+	
+	
 	/**
 	 * Transforms one Map object.
 	 * Used to transform each Map of the whole list individually.
@@ -23,19 +48,146 @@ public abstract class Transformation {
 	 * @return The transformed Map.
 	 */
 	public abstract Map<String, Object> transformMap(Map<String, Object> originalMap);
+	
+	
+	/**
+	 * Transforms one Map created by a previous step of a chain.
+	 * Nobody else holds the Map, so it can be modified and returned
+	 * instead of creating a new one. By default it is not modified.
+	 * @param ownedMap The Map to transform.
+	 * @return The transformed Map, either the same or a new one.
+	 * @see TransformationChain
+	 */
+	protected Map<String, Object> transformOwnedMap(Map<String, Object> ownedMap) {
+		return transformMap(ownedMap);
+	}
 
 
 	/**
 	 * Creates a new list of Maps as a result of applying a transformation
 	 * on the original objects one by one.
+	 * Lists at least as big as the parallel threshold are split among the
+	 * threads of the pool, smaller ones are transformed by the calling thread.
 	 * @param originalMaps The original list of Maps to transform.
-	 * @return The transformed list of Maps.
+	 * @return The transformed list of Maps in the same order.
 	 */
 	public List<Map<String, Object>> transformMaps(List<Map<String, Object>> originalMaps) {
-		return originalMaps.stream()
-				.map(this::transformMap)
-				.collect(Collectors.toCollection(ArrayList::new));
+		return transformMaps(originalMaps, this::transformMap);
+	}
+	
+	
+	/**
+	 * Applies a function to each Map of a list, sequentially or in parallel
+	 * as {@link #transformMaps(List)} does.
+	 * @param originalMaps The original list of Maps to transform.
+	 * @param mapTransformation Transforms one Map, called by several threads at a time in parallel.
+	 * @return The transformed list of Maps in the same order.
+	 */
+	protected List<Map<String, Object>> transformMaps(List<Map<String, Object>> originalMaps,
+			UnaryOperator<Map<String, Object>> mapTransformation) {
+		List<Map<String, Object>> transformedMaps;
+		
+		if(pool != null && originalMaps.size() >= parallelThreshold)
+			return transformInParallel(originalMaps, mapTransformation);
+		
+		transformedMaps = new ArrayList<>(originalMaps.size());
+		for(Map<String, Object> originalMap : originalMaps)
+			transformedMaps.add(mapTransformation.apply(originalMap));
+		
+		return transformedMaps;
+	}
+	
+	
+	/**
+	 * Makes big lists of Maps be transformed in parallel.
+	 * @param pool The pool where to transform the lists, null to transform them sequentially.
+	 * @param threshold The minimum number of Maps of the lists to transform in parallel.
+	 */
+	public void setParallelism(ForkJoinPool pool, int threshold) {
+		this.pool = pool;
+		this.parallelThreshold = Math.max(2, threshold);
+	}
+	
+	
+	/**
+	 * Splits the transformation of a list into fork-join tasks.
+	 * Each task transforms a contiguous range of Maps into its positions
+	 * of a list presized with nulls, so no merging is needed.
+	 */
+	private List<Map<String, Object>> transformInParallel(List<Map<String, Object>> originalMaps,
+			UnaryOperator<Map<String, Object>> mapTransformation) {
+		List<Map<String, Object>> maps = originalMaps instanceof RandomAccess 
+				? originalMaps : new ArrayList<>(originalMaps); //Linked lists copied for indexed access
+		List<Map<String, Object>> transformedMaps = new ArrayList<>(Collections.nCopies(maps.size(), null));
+		int chunkSize = Math.max(1, transformedMaps.size() / (pool.getParallelism() * 4));
+		
+		pool.invoke(new RangeTransformation(maps, transformedMaps, mapTransformation, 0, transformedMaps.size(),
+				chunkSize));
+		
+		return transformedMaps;
 	}
 	
+	
+	/**
+	 * Chains another transformation after this one.
+	 * @param next The transformation to apply to the result of this one.
+	 * @return The chain applying both transformations to each Map in a single pass.
+	 */
+	public Transformation andThen(Transformation next) {
+		return new TransformationChain(this, next);
+	}
+	
+	
+	/**
+	 * Tells the attributes the transformation reads so parsers can skip the rest.
+	 * @return The Schema of the only attributes needed or null if every attribute may be needed.
+	 */
+	public Schema getProjection() {
+		return null;
+	}
+	
+	
+	
+	/**
+	 * Fork-join task transforming a range of a list of Maps.
+	 */
+	private static class RangeTransformation extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final List<Map<String, Object>> originalMaps;
+		private final List<Map<String, Object>> transformedMaps; //Each task sets its own positions
+		private final UnaryOperator<Map<String, Object>> mapTransformation;
+		private final int from;
+		private final int to;
+		private final int chunkSize;
+		
+		
+		RangeTransformation(List<Map<String, Object>> originalMaps, List<Map<String, Object>> transformedMaps,
+				UnaryOperator<Map<String, Object>> mapTransformation, int from, int to, int chunkSize) {
+			this.originalMaps = originalMaps;
+			this.transformedMaps = transformedMaps;
+			this.mapTransformation = mapTransformation;
+			this.from = from;
+			this.to = to;
+			this.chunkSize = chunkSize;
+		}
+		
+		
+		@Override
+		protected void compute() {
+			int middle = (from + to) >>> 1;
+			
+			if(to - from <= chunkSize)
+				for(int mapI = from; mapI < to; mapI++)
+					transformedMaps.set(mapI, mapTransformation.apply(originalMaps.get(mapI)));
+			else
+				invokeAll(new RangeTransformation(originalMaps, transformedMaps, mapTransformation, from, middle,
+								chunkSize),
+						new RangeTransformation(originalMaps, transformedMaps, mapTransformation, middle, to,
+								chunkSize));
+		}
+		
+	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,179 @@
+package transformations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import records.Schema;
+
+/**
+ * TransformationChain is the class responsible for applying several
+ * transformations to each Map in a single pass.
+ * <p>
+ * Each Map goes through every step before the next Map is transformed.
+ * The first step that creates a new Map makes the chain its owner, from
+ * then on the rest of the steps are given the chance to modify it in place
+ * through {@link Transformation#transformOwnedMap(Map)} instead of copying
+ * it again, so a chain costs as many copies per Map as steps that really
+ * need to create one.
+ * <p>
+ * A {@link StepListener} can be told what every step did to each list
+ * transformed, at the cost of timing each step of every Map.
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class TransformationChain extends Transformation {
+	
+	private Transformation[] steps;
+	private volatile StepListener stepListener;
+	
+	
+	/**
+	 * @param steps The transformations in the order they are applied,
+	 *        nested chains are flattened.
+	 */
+	public TransformationChain(List<Transformation> steps) {
+		List<Transformation> flatSteps = new ArrayList<>();
+		
+		for(Transformation step : steps)
+			if(step instanceof TransformationChain)
+				flatSteps.addAll(((TransformationChain) step).getSteps());
+			else
+				flatSteps.add(step);
+		
+		this.steps = flatSteps.toArray(new Transformation[flatSteps.size()]);
+	}
+	
+	
+	public TransformationChain(Transformation... steps) {
+		this(Arrays.asList(steps));
+	}
+	
+	
+	/**
+	 * Applies every step to a Map.
+	 * The original Map is never modified.
+	 * @param originalMap The Map to transform.
+	 * @return The Map transformed by the last step.
+	 */
+	@Override
+	public Map<String, Object> transformMap(Map<String, Object> originalMap) {
+		Map<String, Object> map = originalMap;
+		
+		for(Transformation step : steps)
+			map = map == originalMap ? step.transformMap(map) : step.transformOwnedMap(map);
+		
+		return map;
+	}
+	
+	
+	/**
+	 * Transforms the list as {@link Transformation#transformMaps(List)} does and,
+	 * if there is a {@link StepListener}, reports to it each step.
+	 * @see transformations.Transformation#transformMaps(java.util.List)
+	 */
+	@Override
+	public List<Map<String, Object>> transformMaps(List<Map<String, Object>> originalMaps) {
+		StepListener listener = stepListener;
+		LongAdder[] stepNanos; //Added up by every thread transforming the list
+		List<Map<String, Object>> transformedMaps;
+		
+		if(listener == null)
+			return super.transformMaps(originalMaps);
+		
+		stepNanos = new LongAdder[steps.length];
+		for(int stepI = 0; stepI < steps.length; stepI++)
+			stepNanos[stepI] = new LongAdder();
+		transformedMaps = transformMaps(originalMaps, originalMap -> transformTimed(originalMap, stepNanos));
+		
+		for(int stepI = 0; stepI < steps.length; stepI++) //Every step maps each Map to another one
+			listener.stepTransformed(steps[stepI], originalMaps.size(), transformedMaps.size(),
+					stepNanos[stepI].sum());
+		return transformedMaps;
+	}
+	
+	
+	/**
+	 * Applies every step to a Map as {@link #transformMap(Map)} does, timing each of them.
+	 */
+	private Map<String, Object> transformTimed(Map<String, Object> originalMap, LongAdder[] stepNanos) {
+		Map<String, Object> map = originalMap;
+		long start = System.nanoTime();
+		
+		for(int stepI = 0; stepI < steps.length; stepI++) {
+			long end;
+			
+			map = map == originalMap ? steps[stepI].transformMap(map) : steps[stepI].transformOwnedMap(map);
+			end = System.nanoTime();
+			stepNanos[stepI].add(end - start);
+			start = end;
+		}
+		
+		return map;
+	}
+	
+	
+	/**
+	 * Every step can modify the Map in place.
+	 * @see transformations.Transformation#transformOwnedMap(java.util.Map)
+	 */
+	@Override
+	protected Map<String, Object> transformOwnedMap(Map<String, Object> ownedMap) {
+		Map<String, Object> map = ownedMap;
+		
+		for(Transformation step : steps)
+			map = step.transformOwnedMap(map);
+		
+		return map;
+	}
+	
+	
+	/**
+	 * Only the attributes read by the first step are needed, the rest of
+	 * the steps only see what the first step produces.
+	 * @see transformations.Transformation#getProjection()
+	 */
+	@Override
+	public Schema getProjection() {
+		return steps.length == 0 ? null : steps[0].getProjection();
+	}
+	
+	
+	/**
+	 * Makes the chain report each step of every list transformed.
+	 * @param stepListener The listener or null to stop timing the steps.
+	 */
+	public void setStepListener(StepListener stepListener) {
+		this.stepListener = stepListener;
+	}
+	
+	
+	/**
+	 * @return The transformations of the chain in order.
+	 */
+	public List<Transformation> getSteps() {
+		return Collections.unmodifiableList(Arrays.asList(steps));
+	}
+	
+	
+	
+	/**
+	 * Receives what each step of a chain did to every list transformed.
+	 */
+	public interface StepListener {
+		
+		/**
+		 * @param step The transformation of the step.
+		 * @param recordsIn The number of Maps handed to the step.
+		 * @param recordsOut The number of Maps returned by the step.
+		 * @param nanos The time the step took on the list, added up over
+		 *        the threads transforming it in parallel.
+		 */
+		public void stepTransformed(Transformation step, long recordsIn, long recordsOut, long nanos);
+		
+	}
+
+}
@@ -0,0 +1,195 @@
+/**
+ * Test class created following the TDD process.
+ */
+package etl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.AsyncReader;
+import io.Reader;
+import io.Writer;
+import parsers.CSVMapParser;
+import parsers.JSONStreamParser;
+import transformations.AttributesFilterAndSort;
+import transformations.Transformation;
+
+/**
+ * Tests the ETL class.
+ * The class responsibility is to run the whole extraction, transformation
+ * and load process.
+ * <p>
+ * The functionality of ETL should be:
+ * <ul>
+ * <li>Load every page of every source to the same destination.
+ * <li>Load the pages of a source in order.
+ * <li>Keep many asynchronous sources in flight with few threads.
+ * <li>Bound the pages held back by a slow one.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class ETLTest {
+
+	private List<String> written;
+	private Loader loader;
+
+
+	@Before
+	public void setUp() throws Exception {
+		written = Collections.synchronizedList(new ArrayList<>());
+		loader = new Loader(new Writer() {
+			@Override
+			public void write(String write) throws IOException {
+				written.add(write);
+			}
+
+			@Override
+			public void close() {}
+		}, new CSVMapParser(","));
+	}
+
+
+	/**
+	 * Creates an Extractor of a source with the given number of pages.
+	 */
+	private Extractor source(String city, int pages) {
+		Reader reader = new Reader() {
+			int pageI = 0;
+
+			@Override
+			public String read() throws IOException {
+				pageI++;
+				return "[{\"name\":\"" + city + "\",\"page\":" + pageI + "}]";
+			}
+
+			@Override
+			public boolean isDataLeft() {
+				return pageI < pages;
+			}
+		};
+
+		return new Extractor(reader, new JSONStreamParser(), 1, 1, Collections.singletonMap("query", city));
+	}
+
+
+	@Test
+	public void testBatchExtraction() {
+		List<Extractor> extractors = Arrays.asList(source("Berlin", 3), source("Leipzig", 2), source("Potsdam", 4));
+		ETL etl = new ETL(extractors, loader, new AttributesFilterAndSort("query", "page"), 0,
+				new Stage("read", 2, 2), new Stage("parse", 2, 2), new Stage("transform", 2, 2), new Stage("load", 1, 2));
+
+		etl.run();
+
+		String output = String.join("", written);
+		assertTrue(output.startsWith("query,page")); //Titles written once at the beginning
+		assertEquals(output.indexOf("query,page"), output.lastIndexOf("query,page"));
+		for(String city : Arrays.asList("Berlin", "Leipzig", "Potsdam"))
+			assertTrue(output.indexOf(city + ",1") < output.indexOf(city + ",2")); //Pages of a source in order
+		assertTrue(output.contains("Potsdam,4"));
+		assertEquals(1 + 3 + 2 + 4, output.split(String.format("%n")).length);
+	}
+
+	
+	@Test
+	public void testAsynchronousSources() {
+		ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor(); //Answers after 200ms
+		List<Extractor> extractors = new ArrayList<>();
+		long start;
+		
+		for(int sourceI = 0; sourceI < 50; sourceI++) {
+			String city = "City" + sourceI;
+			AsyncReader reader = new AsyncReader() {
+				int pageI = 0;
+				
+				@Override
+				public CompletableFuture<String> readAsync() {
+					CompletableFuture<String> page = new CompletableFuture<>();
+					service.schedule(() -> page.complete("[{\"name\":\"" + city + "\",\"page\":" + ++pageI + "}]"),
+							200, TimeUnit.MILLISECONDS);
+					return page;
+				}
+				
+				@Override
+				public String read() throws IOException {
+					return readAsync().join();
+				}
+				
+				@Override
+				public boolean isDataLeft() {
+					return pageI < 2;
+				}
+			};
+			extractors.add(new Extractor(reader, new JSONStreamParser(), 1, 1, Collections.singletonMap("query", city)));
+		}
+		ETL etl = new ETL(extractors, loader, new AttributesFilterAndSort("query", "page"), 0,
+				new Stage("read", 1, 1), new Stage("parse", 1, 2), new Stage("transform", 1, 2), new Stage("load", 1, 2));
+		
+		start = System.nanoTime();
+		etl.run();
+		service.shutdown();
+		
+		String output = String.join("", written);
+		assertEquals(1 + 50 * 2, output.split(String.format("%n")).length);
+		assertTrue(output.indexOf("City7,1") < output.indexOf("City7,2"));
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)); //20s reading one page at a time
+	}
+	
+	
+	@Test
+	public void testReorderWindow() {
+		AttributesFilterAndSort filter = new AttributesFilterAndSort("query", "page");
+		Transformation slowFirstPage = new Transformation() { //Holds back every following page
+			@Override
+			public Map<String, Object> transformMap(Map<String, Object> originalMap) {
+				if(originalMap.get("page").equals(1))
+					try {
+						Thread.sleep(300);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				return filter.transformMap(originalMap);
+			}
+		};
+		long[] maxPending = {0};
+		Loader pendingLoader = new Loader(new Writer() {
+			@Override
+			public void write(String write) throws IOException {
+				written.add(write);
+			}
+
+			@Override
+			public void close() {}
+		}, new CSVMapParser(",")) {
+			@Override
+			public void load(long sequence, List<Map<String, Object>> maps) {
+				super.load(sequence, maps);
+				maxPending[0] = Math.max(maxPending[0], getPendingPages());
+			}
+		};
+		ETL etl = new ETL(Arrays.asList(source("Berlin", 20)), pendingLoader, slowFirstPage, 0,
+				new Stage("read", 1, 1), new Stage("parse", 1, 2), new Stage("transform", 4, 4), new Stage("load", 1, 2));
+		
+		etl.setReorderWindow(3);
+		etl.run();
+		
+		String output = String.join("", written);
+		assertEquals(1 + 20, output.split(String.format("%n")).length);
+		assertTrue(output.indexOf("Berlin,1") < output.indexOf("Berlin,20"));
+		assertTrue("Pages held back: " + maxPending[0], maxPending[0] <= 3);
+	}
+
+}
@@ -7,19 +7,27 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import io.CircuitBreaker;
 import io.HttpReader;
 import io.Reader;
+import okhttp3.OkHttpClient;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import parsers.JSONStreamParser;
 import parsers.JSONStringParser;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.List;
 
@@ -32,6 +40,10 @@ import java.util.List;
  * <ul>
  * <li>Extract data through a process of reading and parsing.
  * <li>Provide a mechanism of pagination. 
+ * <li>Retry failed reads without holding a thread while waiting.
+ * <li>Hand the pages read asynchronously to the executor of the retries.
+ * <li>Stop retrying once the thread waiting to retry is interrupted.
+ * <li>Wait for an open circuit breaker without counting its rejections as failed attempts.
  * </ul>
  * @author Andres Arturo Sanchez Dorantes
  *
@@ -71,6 +83,20 @@ public class ExtractorTest {
 	}
 	
 	
+	@Test
+	public void testStreamedExtraction() {
+		HttpReader reader = new HttpReader(server.url("http-service-url").toString());
+		Extractor extractor = new Extractor(reader, new JSONStreamParser(), 1, 1);
+		List<Map<String,Object>> extracted = new ArrayList<>();
+		
+		assertTrue(extractor.canExtract());
+		assertTrue(extractor.extract(extracted::add));
+		assertEquals(1, extracted.size());
+		assertEquals(379, extracted.get(0).get("int"));
+		assertFalse(extractor.canExtract());
+	}
+	
+	
 	/*
 	 * Due to limitations of the MockServer to be rebooted, this test case is intended to be carried out
 	 * manually by starting it with no access to Internet and then having 20 seconds to regain physical
@@ -93,6 +119,249 @@ public class ExtractorTest {
 	}
 	
 	
+	@Test
+	public void testAsynchronousRetry() throws Exception {
+		MockWebServer flakyServer = new MockWebServer();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		
+		flakyServer.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_UNAVAILABLE));
+		flakyServer.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_UNAVAILABLE));
+		flakyServer.enqueue(new MockResponse().setBody("[{\"int\":379}]"));
+		try {
+			Extractor extractor = new Extractor(new HttpReader(flakyServer.url("flaky").toString()),
+					new JSONStringParser(), 3, 0);
+			extractor.setRetryPolicy(new RetryPolicy(3, 200, 200, 5));
+			
+			CompletableFuture<String> page = extractor.readAsync(executor);
+			assertFalse(page.isDone()); //Returns while waiting to retry
+			assertTrue(page.get(5, TimeUnit.SECONDS).contains("379"));
+			assertEquals(3, flakyServer.getRequestCount());
+			assertFalse(extractor.canExtract());
+		} finally {
+			executor.shutdown();
+			flakyServer.shutdown();
+		}
+	}
+	
+	
+	@Test
+	public void testAsynchronousPageCompletedByExecutor() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "test-read"));
+		MockWebServer slowServer = new MockWebServer();
+		
+		slowServer.enqueue(new MockResponse().setBody("[{\"int\":379}]").setBodyDelay(100, TimeUnit.MILLISECONDS));
+		try {
+			Extractor extractor = new Extractor(new HttpReader(slowServer.url("slow").toString()),
+					new JSONStringParser(), 1, 0);
+			
+			CompletableFuture<String> thread = extractor.readAsync(executor)
+					.thenApply(page -> Thread.currentThread().getName());
+			assertEquals("test-read", thread.get(5, TimeUnit.SECONDS)); //Not a thread of the client
+		} finally {
+			executor.shutdown();
+			slowServer.shutdown();
+		}
+	}
+	
+	
+	@Test
+	public void testResponseNotHeldByFullStage() throws Exception {
+		Stage fullStage = new Stage("full", 1, 1);
+		CountDownLatch blocked = new CountDownLatch(1);
+		OkHttpClient client = new OkHttpClient();
+		Extractor extractor = new Extractor(new HttpReader(client, server.url("full").toString()),
+				new JSONStringParser(), 1, 0);
+		
+		try {
+			fullStage.execute(() -> { //Fills the only thread and the queue
+				try {
+					blocked.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			fullStage.execute(() -> {});
+			
+			CompletableFuture<String> page = extractor.readAsync(fullStage);
+			assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+			for(int waitI = 0; waitI < 100 && client.dispatcher().runningCallsCount() > 0; waitI++)
+				Thread.sleep(10);
+			assertEquals(0, client.dispatcher().runningCallsCount()); //The thread of the client went back
+			assertFalse(page.isDone()); //Waiting for room in the stage
+			blocked.countDown();
+			assertTrue(page.get(5, TimeUnit.SECONDS).contains("379"));
+		} finally {
+			blocked.countDown();
+			fullStage.finish();
+		}
+	}
+	
+	
+	@Test
+	public void testRetryBudget() throws IOException {
+		Reader reader = new Reader() {  // A test Reader failing every other read
+			int reads = 0;
+			
+			@Override
+			public String read() throws IOException {
+				if(reads++ % 2 == 0)
+					throw new IOException("Connection reset");
+				return "{\"int\":379}";
+			}
+			
+			@Override
+			public boolean isDataLeft() {
+				return true;
+			}
+		};
+		Extractor extractor = new Extractor(reader, new JSONStringParser(), 3, 0);
+		
+		extractor.setRetryPolicy(new RetryPolicy(3, 0, 0, 2));
+		assertNotNull(extractor.extract()); //Recovers from the first failure
+		assertNotNull(extractor.extract()); //and from the second one
+		assertNull(extractor.extract()); //but the third one exhausts the budget
+		assertFalse(extractor.canExtract());
+	}
+	
+	
+	@Test
+	public void testRetriesNotHeldUpByFullExecutor() throws Exception {
+		Stage fullStage = new Stage("full", 1, 1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		CountDownLatch blocked = new CountDownLatch(1);
+		List<CompletableFuture<String>> heldPages = new ArrayList<>();
+		Extractor free = new Extractor(failingOnce(), new JSONStringParser(), 3, 0);
+		int threads;
+		
+		free.setRetryPolicy(new RetryPolicy(3, 50, 50, 3));
+		try {
+			fullStage.execute(() -> { //Fills the only thread and the queue
+				try {
+					blocked.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			fullStage.execute(() -> {});
+			
+			threads = Thread.activeCount();
+			for(int extractorI = 0; extractorI < 50; extractorI++) {
+				Extractor held = new Extractor(failingOnce(), new JSONStringParser(), 3, 0);
+				held.setRetryPolicy(new RetryPolicy(3, 10, 10, 3));
+				heldPages.add(held.readAsync(fullStage));
+			}
+			Thread.sleep(30); //The first retries are due and waiting for the full stage
+			CompletableFuture<String> freePage = free.readAsync(executor);
+			
+			assertTrue(freePage.get(5, TimeUnit.SECONDS).contains("379"));
+			assertTrue(Thread.activeCount() - threads < 5); //No thread waits for the full stage
+			for(CompletableFuture<String> heldPage : heldPages)
+				assertFalse(heldPage.isDone());
+			blocked.countDown();
+			for(CompletableFuture<String> heldPage : heldPages)
+				assertTrue(heldPage.get(5, TimeUnit.SECONDS).contains("379"));
+		} finally {
+			blocked.countDown();
+			fullStage.finish();
+			executor.shutdown();
+		}
+	}
+	
+	
+	@Test
+	public void testInterruptedRetry() {
+		Reader reader = new Reader() {  // A test Reader failing every read
+			@Override
+			public String read() throws IOException {
+				throw new IOException("Connection refused");
+			}
+			
+			@Override
+			public boolean isDataLeft() {
+				return true;
+			}
+		};
+		Extractor extractor = new Extractor(reader, new JSONStringParser(), 3, 0);
+		
+		extractor.setRetryPolicy(new RetryPolicy(Integer.MAX_VALUE, 10, 10, Integer.MAX_VALUE));
+		Thread.currentThread().interrupt();
+		try {
+			assertNull(extractor.read()); //Gives up instead of retrying without waiting
+			assertFalse(extractor.extract(map -> {}));
+			assertTrue(Thread.currentThread().isInterrupted());
+		} finally {
+			Thread.interrupted();
+		}
+	}
+	
+	
+	@Test
+	public void testWaitsForOpenBreaker() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(0.5, 2, 300);
+		OkHttpClient client = breaker.configure(new OkHttpClient.Builder()).build();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		String url = server.url("breaker").toString();
+		HttpReader opener = new HttpReader(client, url);
+		
+		server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_UNAVAILABLE));
+		server.enqueue(new MockResponse().setBody("[{\"int\":379}]"));
+		server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_UNAVAILABLE));
+		server.enqueue(new MockResponse().setBody("[{\"int\":379}]"));
+		try {
+			Extractor blocking = new Extractor(new HttpReader(client, url), new JSONStringParser(), 1, 0);
+			Extractor async = new Extractor(new HttpReader(client, url), new JSONStringParser(), 1, 0);
+			
+			blocking.setRetryPolicy(new RetryPolicy(1, 10, 10, 0)); //A single failure is fatal
+			async.setRetryPolicy(new RetryPolicy(1, 10, 10, 0));
+			opener.read();
+			readFailing(opener); //Opens the breaker
+			assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+			assertTrue(blocking.read().contains("379")); //Rejected, then the probe
+			assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+			
+			readFailing(opener);
+			CompletableFuture<String> page = async.readAsync(executor);
+			assertFalse(page.isDone()); //Rejected, waiting for the breaker
+			assertTrue(page.get(5, TimeUnit.SECONDS).contains("379"));
+			assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+			assertTrue(breaker.getRejected() >= 2);
+			assertEquals(5, server.getRequestCount());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	
+	private static void readFailing(Reader reader) {
+		try {
+			reader.read();
+			fail("Failure expected");
+		} catch (IOException e) {}
+	}
+	
+	
+	/**
+	 * @return A test Reader failing the first read only.
+	 */
+	private static Reader failingOnce() {
+		return new Reader() {
+			int reads = 0;
+			
+			@Override
+			public String read() throws IOException {
+				if(reads++ == 0)
+					throw new IOException("Connection reset");
+				return "{\"int\":379}";
+			}
+			
+			@Override
+			public boolean isDataLeft() {
+				return reads < 2;
+			}
+		};
+	}
+	
+	
 	@Test(expected=ArrayIndexOutOfBoundsException.class)
 	public void testPagination() {
 		Reader reader = new Reader() {  // A test Reader that provides pagination
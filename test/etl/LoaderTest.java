@@ -5,6 +5,8 @@ package etl;
 
 import static org.junit.Assert.*;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -12,8 +14,11 @@ import java.util.Map;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import io.ChannelFileWriter;
 import io.Writer;
 import parsers.CSVMapParser;
+import parsers.ColumnarMapParser;
+import parsers.ColumnarReader;
 import parsers.MapParser;
 
 /**
@@ -25,6 +30,7 @@ import parsers.MapParser;
  * <li>Load data through a process of parsing and writing.
  * <li>Provide a thread-safe mechanism to make paginated loads
  * 		(start, multiple internal writings, finish). 
+ * <li>Let callers wait for the pages before a given one to be loaded.
  * </ul>
  * @author Andres Arturo Sanchez Dorantes
  *
@@ -109,5 +115,130 @@ public class LoaderTest {
 				hasTitles++;
 		assertEquals(1, hasTitles); //Titles written only once
 	}
+	
+	
+	@Test
+	public void testOrderedLoad() {
+		Loader loader = new Loader(writer, parser);
+		ArrayList<Thread> threads = new ArrayList<>();
+		int noPages = 5;
+		
+		for (int pageI = noPages - 1; pageI >= 0; pageI--) { //Pages arrive in reverse order
+			long sequence = pageI;
+			Map<String,Object> map = new HashMap<>();
+			map.put("name", "map" + pageI);
+			map.put("type", "HashMap");
+			threads.add(new Thread(()->loader.load(sequence, Arrays.asList(map,map))) );
+		}
+		
+		threads.forEach(Thread::start);
+		threads.forEach(t -> {
+			try {
+				t.join();
+			} catch (InterruptedException e) {}
+		});
+		
+		assertEquals(noPages, resourceToLoad.size());
+		assertTrue(resourceToLoad.get(0).startsWith("name,type")); //Titles only in the first page
+		for (int pageI = 0; pageI < noPages; pageI++) //Written in order of sequence
+			assertTrue(resourceToLoad.get(pageI).contains("map" + pageI + ",HashMap"));
+	}
+	
+	
+	@Test
+	public void testSkippedPages() {
+		Loader loader = new Loader(writer, parser);
+		Map<String,Object> map = new HashMap<>();
+		
+		map.put("name", "map1");
+		map.put("type", "HashMap");
+		
+		loader.load(2, Arrays.asList(map));
+		assertTrue(resourceToLoad.isEmpty()); //Waits for the previous pages
+		loader.skip(0);
+		loader.load(1, Arrays.asList(map));
+		
+		assertEquals(2, resourceToLoad.size());
+		assertTrue(resourceToLoad.get(0).startsWith("name,type")); //Titles moved to the first loaded page
+		assertFalse(resourceToLoad.get(1).startsWith("name,type"));
+	}
+	
+	
+	@Test
+	public void testAwaitLoaded() throws InterruptedException {
+		Loader loader = new Loader(writer, parser);
+		Map<String,Object> map = new HashMap<>();
+		Thread waiting = new Thread(() -> loader.awaitLoaded(2));
+		
+		map.put("name", "map1");
+		loader.awaitLoaded(0); //Nothing to wait for
+		waiting.start();
+		loader.load(1, Arrays.asList(map));
+		waiting.join(100);
+		assertTrue(waiting.isAlive()); //Page 0 still missing
+		
+		loader.skip(0);
+		waiting.join(1000);
+		assertFalse(waiting.isAlive());
+	}
+	
+	
+	@Test
+	public void testBufferedLoad() {
+		StringBuilder buffer = new StringBuilder();
+		Writer bufferedWriter = new Writer() {
+			@Override
+			public void write(String write) throws IOException {
+				buffer.append(write);
+				resourceToLoad.add(write);
+			}
+			
+			@Override
+			public Appendable getBuffer() {
+				return buffer;
+			}
+			
+			@Override
+			public void close() {}
+		};
+		Loader loader = new Loader(bufferedWriter, parser);
+		Map<String,Object> map = new HashMap<>();
+		
+		map.put("name", "map1");
+		map.put("type", "HashMap");
+		
+		loader.load(1, Arrays.asList(map));
+		loader.load(0, Arrays.asList(map,map));
+		loader.finish();
+		
+		assertEquals(Arrays.asList(""), resourceToLoad); //Only the endings written as a String
+		assertEquals("name,type"+System.getProperty("line.separator") //Pages parsed straight into the buffer
+					+"map1,HashMap"+System.getProperty("line.separator")
+					+"map1,HashMap"+System.getProperty("line.separator")
+					+"map1,HashMap"+System.getProperty("line.separator"), buffer.toString());
+	}
+
+	
+	@Test
+	public void testBinaryLoad() throws IOException {
+		Path path = Files.createTempFile("loader", ".col");
+		Loader loader = new Loader(new ChannelFileWriter(path.toString()), new ColumnarMapParser(2));
+		Map<String,Object> map = new HashMap<>();
+		
+		map.put("name", "map1");
+		map.put("type", "HashMap");
+		
+		loader.load(1, Arrays.asList(map, map));
+		loader.load(0, Arrays.asList(map));
+		loader.finish();
+		
+		try(ColumnarReader reader = new ColumnarReader(path)) { //Pages written straight into the file
+			assertEquals(3, reader.getRowCount());
+			assertEquals(2, reader.getRowGroupCount());
+			assertEquals(Arrays.asList("map1", "map1", "map1"), reader.readColumn("name"));
+		} finally {
+			Files.delete(path);
+		}
+	}
 
 }
@@ -0,0 +1,123 @@
+/**
+ * Test class created following the TDD process.
+ */
+package etl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import io.Reader;
+import io.Writer;
+import parsers.CSVMapParser;
+import parsers.JSONStreamParser;
+import transformations.AttributesFilterAndSort;
+
+/**
+ * Tests the Metrics class.
+ * The class responsibility is to measure an ETL run stage by stage.
+ * <p>
+ * The functionality of Metrics should be:
+ * <ul>
+ * <li>Estimate the percentiles of the durations of each step.
+ * <li>Count the data going through every stage of a run.
+ * <li>Expose the metrics as a JMX MXBean.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class MetricsTest {
+
+
+	@Test
+	public void testHistogram() {
+		Metrics.Histogram histogram = new Metrics.Histogram();
+
+		for(long nanos = 1; nanos <= 1000; nanos++)
+			histogram.record(nanos * 1000);
+
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500500.0, histogram.getMean(), 0.001);
+		assertEquals(1000000, histogram.getMax());
+		assertTrue(histogram.getPercentile(50) >= 500000); //Upper bound of its bucket
+		assertTrue(histogram.getPercentile(50) < 1000000);
+		assertEquals(1000000, histogram.getPercentile(99)); //No more than the maximum
+		assertEquals(0, new Metrics.Histogram().getPercentile(99));
+	}
+
+
+	@Test
+	public void testRunMetrics() {
+		Reader reader = new Reader() {
+			int pageI = 0;
+
+			@Override
+			public String read() throws IOException {
+				pageI++;
+				return "[{\"name\":\"München\",\"type\":\"location\"},{\"name\":\"Berlin\",\"type\":\"location\"}]";
+			}
+
+			@Override
+			public boolean isDataLeft() {
+				return pageI < 3;
+			}
+		};
+		Loader loader = new Loader(new Writer() {
+			@Override
+			public void write(String write) {}
+
+			@Override
+			public void close() {}
+		}, new CSVMapParser(","));
+		ETL etl = new ETL(new Extractor(reader, new JSONStreamParser(), 1, 1), loader,
+				new AttributesFilterAndSort(Collections.singletonList("name")));
+		Metrics metrics = etl.getMetrics();
+
+		etl.run();
+
+		assertEquals(3 * 75, metrics.getBytesRead()); //'ü' takes 2 bytes
+		assertEquals(3, metrics.getPagesRead());
+		assertEquals(6, metrics.getRecordsParsed());
+		assertEquals(6, metrics.getRecordsTransformedIn());
+		assertEquals(6, metrics.getRecordsTransformedOut());
+		assertEquals(6, metrics.getRecordsLoaded());
+		assertEquals(3, metrics.getPagesLoaded());
+		assertEquals(3, metrics.getHistogram(Metrics.PARSE).getCount());
+		assertEquals(3, metrics.getHistogram(Metrics.WRITE).getCount());
+		assertEquals(Long.valueOf(0), metrics.getGauges().get("pages.in_flight"));
+		assertTrue(metrics.getLatencies().containsKey("transform.p99"));
+		assertEquals(3, metrics.getHistogram("transform.AttributesFilter").getCount()); //Each link of the chain
+		assertEquals(3, metrics.getHistogram("transform.AttributesSort").getCount());
+		assertEquals(Long.valueOf(6), metrics.getStepRecords().get("transform.AttributesFilter.in"));
+		assertEquals(Long.valueOf(6), metrics.getStepRecords().get("transform.AttributesSort.out"));
+		assertTrue(metrics.getSummary().contains("loaded 6 in 3 pages"));
+		assertTrue(metrics.getSummary().contains("transform.AttributesSort transformed 6 into 6"));
+	}
+
+
+	@Test
+	public void testJMX() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("etl:type=Metrics,name=\"test\"");
+		Metrics metrics = new Metrics();
+
+		metrics.pageRead(1024, 1000000);
+		metrics.register("test");
+		try {
+			assertEquals(1024L, server.getAttribute(name, "BytesRead"));
+			assertTrue(server.getAttribute(name, "Latencies") instanceof javax.management.openmbean.TabularData);
+		} finally {
+			metrics.unregister();
+		}
+		assertFalse(server.isRegistered(name));
+	}
+
+}
@@ -0,0 +1,112 @@
+/**
+ * Test class created following the TDD process.
+ */
+package etl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.Writer;
+import parsers.CSVMapParser;
+
+/**
+ * Tests the PartitionedLoader class.
+ * The class responsibility is to load information into several
+ * resources routing each Map by the value of a key attribute.
+ * <p>
+ * The functionality of PartitionedLoader should be:
+ * <ul>
+ * <li>Load every Map with the same key value into the same shard.
+ * <li>Keep the order of extraction within each shard.
+ * <li>Write the headers once at the beginning of each shard.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class PartitionedLoaderTest {
+
+	private List<StringBuilder> files;
+	private PartitionedLoader loader;
+
+
+	@Before
+	public void setUp() throws Exception {
+		List<Loader> shards = new ArrayList<>();
+
+		files = new ArrayList<>();
+		for(int shardI = 0; shardI < 3; shardI++) {
+			StringBuilder file = new StringBuilder();
+			files.add(file);
+			shards.add(new Loader(new Writer() {
+				@Override
+				public void write(String write) throws IOException {
+					file.append(write);
+				}
+
+				@Override
+				public void close() {}
+			}, new CSVMapParser(",")));
+		}
+		loader = new PartitionedLoader(shards, "type", 2);
+	}
+
+
+	@Test
+	public void testPartitionedLoad() {
+		String[] types = {"location", "airport", "station", "location"};
+
+		for(int pageI = 4; pageI >= 0; pageI--) { //Pages arrive in reverse order
+			List<Map<String, Object>> page = new ArrayList<>();
+			for(String type : types) {
+				Map<String, Object> map = new LinkedHashMap<>();
+				map.put("page", pageI);
+				map.put("type", type);
+				page.add(map);
+			}
+			loader.load(pageI, page);
+		}
+		loader.skip(5);
+		loader.finish();
+
+		String lineBreak = System.getProperty("line.separator");
+		Map<String, StringBuilder> fileOfType = new LinkedHashMap<>();
+		int rows = 0;
+		for(StringBuilder file : files) {
+			if(file.length() == 0) //Shard without any type
+				continue;
+			String[] lines = file.toString().split(lineBreak);
+			assertEquals("page,type", lines[0]); //Headers once per shard
+			for(int lineI = 1; lineI < lines.length; lineI++) {
+				String[] row = lines[lineI].split(",");
+				assertSame(file, fileOfType.computeIfAbsent(row[1], type -> file)); //Same types together
+				if(lineI > 1) //In order of pages
+					assertTrue(lines[lineI - 1].split(",")[0].compareTo(row[0]) <= 0);
+				rows++;
+			}
+		}
+		assertEquals(20, rows);
+	}
+
+
+	@Test
+	public void testSkippedPages() {
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("type", "location");
+
+		loader.skip(0);
+		loader.load(1, Arrays.asList(map));
+		loader.finish();
+
+		assertEquals(1, files.stream().filter(file -> file.toString().startsWith("type")).count());
+	}
+
+}
@@ -0,0 +1,60 @@
+/**
+ * Test class created following the TDD process.
+ */
+package etl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests the RetryPolicy class.
+ * The class responsibility is to decide when a failed read is attempted again.
+ * <p>
+ * The functionality of RetryPolicy should be:
+ * <ul>
+ * <li>Allow a maximum of consecutive attempts and of failures in a whole extraction.
+ * <li>Delay the retries at random up to an exponential backoff bounded by a maximum.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class RetryPolicyTest {
+
+	@Test
+	public void testAttemptsAndBudget() {
+		RetryPolicy policy = new RetryPolicy(3, 100, 1000, 4);
+
+		assertTrue(policy.canRetry(0, 0));
+		assertTrue(policy.canRetry(2, 2));
+		assertFalse(policy.canRetry(3, 3)); //Too many consecutive failures
+		assertTrue(policy.canRetry(1, 4));
+		assertFalse(policy.canRetry(1, 5)); //Budget exhausted
+	}
+
+
+	@Test
+	public void testExponentialBackoffWithJitter() {
+		RetryPolicy policy = new RetryPolicy(100, 100, 1000, 100);
+		long[] maxDelays = new long[6];
+		boolean jittered = false;
+
+		for(int sampleI = 0; sampleI < 2000; sampleI++)
+			for(int failures = 1; failures < maxDelays.length; failures++) {
+				long delay = policy.getDelay(failures);
+
+				assertTrue(delay >= 0);
+				maxDelays[failures] = Math.max(maxDelays[failures], delay);
+				jittered |= delay != policy.getDelay(failures);
+			}
+
+		assertTrue(jittered);
+		assertTrue(maxDelays[1] <= 100 && maxDelays[1] > 50);
+		assertTrue(maxDelays[2] <= 200 && maxDelays[2] > 100);
+		assertTrue(maxDelays[3] <= 400 && maxDelays[3] > 200);
+		assertTrue(maxDelays[5] <= 1000 && maxDelays[5] > 800); //Bounded by the maximum
+		assertTrue(policy.getDelay(Integer.MAX_VALUE) <= 1000); //No overflow
+		assertEquals(0, new RetryPolicy(3, 0, 0, 3).getDelay(2));
+	}
+
+}
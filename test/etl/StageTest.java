@@ -0,0 +1,135 @@
+/**
+ * Test class created following the TDD process.
+ */
+package etl;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests the Stage class.
+ * The class responsibility is to run one step of the pipeline on its
+ * own threads with a bounded amount of waiting work.
+ * <p>
+ * The functionality of Stage should be:
+ * <ul>
+ * <li>Run every task handed to it.
+ * <li>Block whoever hands in a task while its queue is full (backpressure).
+ * <li>Take offered tasks only if there is room for them, without blocking.
+ * <li>Wait for all its tasks when finishing.
+ * <li>Run a thread per task up to a maximum at a time, virtual if supported.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class StageTest {
+
+	@Test
+	public void testBackpressure() throws InterruptedException {
+		Stage stage = new Stage("test", 1, 1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch handedIn = new CountDownLatch(1);
+		AtomicInteger executed = new AtomicInteger();
+		Runnable blockedTask = () -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {}
+			executed.incrementAndGet();
+		};
+
+		stage.execute(blockedTask); //Occupies the only thread
+		stage.execute(blockedTask); //Fills the queue
+		Thread producer = new Thread(() -> {
+			stage.execute(executed::incrementAndGet); //Should wait for room in the queue
+			handedIn.countDown();
+		});
+		producer.start();
+
+		assertFalse(handedIn.await(200, TimeUnit.MILLISECONDS)); //Producer blocked by the full stage
+		assertEquals(1, stage.getQueued());
+
+		release.countDown();
+		assertTrue(handedIn.await(5, TimeUnit.SECONDS)); //Released once there is room
+
+		producer.join();
+		stage.finish();
+		assertEquals(3, executed.get()); //All tasks executed before finishing
+	}
+
+
+
+	@Test
+	public void testThreadPerTask() throws InterruptedException {
+		Stage stage = Stage.ofVirtualThreads("test", 2);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch handedIn = new CountDownLatch(1);
+		AtomicInteger executed = new AtomicInteger();
+		Runnable blockedTask = () -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {}
+			executed.incrementAndGet();
+		};
+
+		stage.execute(blockedTask);
+		stage.execute(blockedTask); //Both running
+		Thread producer = new Thread(() -> {
+			stage.execute(executed::incrementAndGet); //Should wait for a task to finish
+			handedIn.countDown();
+		});
+		producer.start();
+
+		assertFalse(handedIn.await(200, TimeUnit.MILLISECONDS));
+		assertEquals(1, stage.getQueued());
+
+		release.countDown();
+		assertTrue(handedIn.await(5, TimeUnit.SECONDS));
+
+		producer.join();
+		stage.finish();
+		assertEquals(3, executed.get()); //All tasks executed before finishing
+		try {
+			stage.execute(executed::incrementAndGet);
+			fail("Task accepted after finishing");
+		} catch (RejectedExecutionException e) {}
+	}
+
+
+
+	@Test
+	public void testOffer() throws InterruptedException {
+		Stage[] stages = {new Stage("test", 1, 1), Stage.ofVirtualThreads("test", 1)};
+		int[] room = {2, 1}; //The thread and the queue, or the only task running
+
+		for(int stageI = 0; stageI < stages.length; stageI++) {
+			Stage stage = stages[stageI];
+			CountDownLatch release = new CountDownLatch(1);
+			AtomicInteger executed = new AtomicInteger();
+			Runnable blockedTask = () -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {}
+				executed.incrementAndGet();
+			};
+
+			for(int taskI = 0; taskI < room[stageI]; taskI++)
+				assertTrue(stage.offer(blockedTask));
+			assertFalse(stage.offer(blockedTask)); //Full, returns at once instead of blocking
+
+			release.countDown();
+			stage.finish();
+			assertEquals(room[stageI], executed.get());
+			try {
+				stage.offer(blockedTask);
+				fail("Task accepted after finishing");
+			} catch (RejectedExecutionException e) {}
+		}
+	}
+
+}
@@ -0,0 +1,251 @@
+/**
+ * Test class created following the TDD process.
+ */
+package io;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Tests the AdaptiveLimiter class.
+ * The class responsibility is to limit the concurrent requests to what an HTTP service can take.
+ * <p>
+ * The functionality of AdaptiveLimiter should be:
+ * <ul>
+ * <li>Hold back the requests beyond the limit.
+ * <li>Enqueue asynchronous requests only once they fit in the limit.
+ * <li>Raise the limit slowly while the responses arrive in time.
+ * <li>Cut the limit on failures and latencies over the tolerance.
+ * <li>Ignore the latency of the responses served by the cache.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class AdaptiveLimiterTest {
+
+	private final MockWebServer server = new MockWebServer();
+
+
+	@Before
+	public void setUp() throws Exception {
+		server.start();
+	}
+
+
+	@After
+	public void tearDown() throws Exception {
+		server.shutdown();
+	}
+
+
+	@Test
+	public void testHoldsRequestsBeyondLimit() throws Exception {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 2, 1000);
+		OkHttpClient client = limiter.configure(new OkHttpClient.Builder()).build();
+		List<Call> calls = new ArrayList<>();
+		int[] completed = {0};
+
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+				Thread.sleep(300); //Slow headers
+				return new MockResponse().setBody("[]");
+			}
+		});
+		for(int requestI = 0; requestI < 4; requestI++) {
+			Call call = client.newCall(new Request.Builder().url(server.url("/limited")).build());
+			calls.add(call);
+			call.enqueue(new Callback() {
+				@Override
+				public void onFailure(Call call, IOException e) {}
+
+				@Override
+				public void onResponse(Call call, Response response) throws IOException {
+					response.body().string();
+					synchronized (completed) {
+						completed[0]++;
+						completed.notifyAll();
+					}
+				}
+			});
+		}
+
+		Thread.sleep(150);
+		assertEquals(2, limiter.getInFlight()); //The others wait
+		assertEquals(2, server.getRequestCount());
+		synchronized (completed) {
+			while(completed[0] < 4)
+				completed.wait(5000);
+		}
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(4, server.getRequestCount());
+		assertTrue(limiter.getLatency() > 0);
+	}
+
+
+	@Test
+	public void testEnqueuesWithinLimit() throws Exception {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 2, 1000);
+		OkHttpClient client = limiter.configure(new OkHttpClient.Builder()).build();
+		List<CompletableFuture<Call>> calls = new ArrayList<>();
+		int[] completed = {0};
+
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+				Thread.sleep(300); //Slow headers
+				return new MockResponse().setBody("[]");
+			}
+		});
+		for(int requestI = 0; requestI < 4; requestI++)
+			calls.add(limiter.enqueue(client, new Request.Builder().url(server.url("/limited")).build(),
+					new Callback() {
+						@Override
+						public void onFailure(Call call, IOException e) {}
+
+						@Override
+						public void onResponse(Call call, Response response) throws IOException {
+							response.body().string();
+							synchronized (completed) {
+								completed[0]++;
+								completed.notifyAll();
+							}
+						}
+					}));
+
+		Thread.sleep(150);
+		assertEquals(2, limiter.getInFlight());
+		assertEquals(2, client.dispatcher().runningCallsCount()); //No thread of the client waits for room
+		assertFalse(calls.get(3).isDone());
+		synchronized (completed) {
+			while(completed[0] < 4)
+				completed.wait(5000);
+		}
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(4, server.getRequestCount());
+		assertTrue(limiter.getLatency() > 0);
+	}
+
+
+	@Test
+	public void testDroppedWhileWaiting() throws Exception {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1, 1000);
+		OkHttpClient client = limiter.configure(new OkHttpClient.Builder()).build();
+		Request request = new Request.Builder().url(server.url("/dropped")).build();
+		Callback ignored = new Callback() {
+			@Override
+			public void onFailure(Call call, IOException e) {}
+
+			@Override
+			public void onResponse(Call call, Response response) throws IOException {
+				response.close();
+			}
+		};
+
+		limiter.acquire(); //Takes the only room
+		CompletableFuture<Call> dropped = limiter.enqueue(client, request, ignored);
+		assertTrue(dropped.cancel(false));
+		limiter.release();
+		assertEquals(0, limiter.getInFlight()); //Given back at once
+		assertEquals(0, server.getRequestCount());
+	}
+
+
+	@Test
+	public void testAdditiveIncreaseMultiplicativeDecrease() {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(10, 2, 20, 2);
+
+		for(int requestI = 0; requestI < 100; requestI++) //Responses in time with the limit in use
+			inFlight(limiter, 10, 1000000, false);
+		assertTrue(limiter.getLimit() > 10);
+		assertTrue(limiter.getLimit() <= 20);
+
+		int limit = limiter.getLimit();
+		inFlight(limiter, 1, 1000000, true); //Failure
+		assertTrue(limiter.getLimit() < limit);
+
+		limit = limiter.getLimit();
+		inFlight(limiter, 1, 5000000, false); //Five times slower than the baseline
+		assertTrue(limiter.getLimit() < limit);
+
+		for(int requestI = 0; requestI < 100; requestI++)
+			inFlight(limiter, 1, 1000000, true);
+		assertEquals(2, limiter.getLimit()); //Bounded by the minimum
+	}
+
+
+	@Test
+	public void testIdleLimitDoesNotGrow() {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(10, 2, 20, 2);
+
+		for(int requestI = 0; requestI < 100; requestI++) //Only one request at a time
+			inFlight(limiter, 1, 1000000, false);
+		assertEquals(10, limiter.getLimit());
+	}
+
+
+	@Test
+	public void testCacheHitsNotSampled() throws Exception {
+		File directory = Files.createTempDirectory("limiter-cache").toFile();
+		Cache cache = new Cache(directory, 1024 * 1024);
+		AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 4, 2);
+		OkHttpClient client = limiter.configure(new OkHttpClient.Builder().cache(cache)).build();
+		Request request = new Request.Builder().url(server.url("/cached")).build();
+
+		server.enqueue(new MockResponse().setBody("[]").addHeader("Cache-Control", "max-age=60"));
+		try {
+			client.newCall(request).execute().body().string();
+			long latency = limiter.getLatency();
+
+			for(int requestI = 0; requestI < 20; requestI++) { //Far faster than the service
+				Response response = client.newCall(request).execute();
+				response.body().string();
+				assertNull(response.networkResponse());
+			}
+			assertEquals(1, server.getRequestCount());
+			assertEquals(latency, limiter.getLatency()); //Not the baseline either
+			assertEquals(0, limiter.getInFlight());
+			assertEquals(2, limiter.getLimit());
+		} finally {
+			cache.delete();
+			directory.delete();
+		}
+	}
+
+
+	/**
+	 * Simulates some concurrent requests finishing with the same outcome.
+	 */
+	private static void inFlight(AdaptiveLimiter limiter, int requests, long latency, boolean congested) {
+		try {
+			for(int requestI = 0; requestI < requests; requestI++)
+				limiter.acquire();
+		} catch (IOException e) {
+			fail(e.getMessage());
+		}
+		for(int requestI = 0; requestI < requests; requestI++)
+			limiter.release(latency, congested);
+	}
+
+}
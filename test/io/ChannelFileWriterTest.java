@@ -0,0 +1,77 @@
+/**
+ * Test class created following the TDD process.
+ */
+package io;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the ChannelFileWriter class.
+ * The class responsibility is to write data to a local file
+ * in large batches.
+ * <p>
+ * The functionality of ChannelFileWriter should be:
+ * <ul>
+ * <li>Write the data appended or written as UTF-8.
+ * <li>Only write to the file when its buffer is full or on close.
+ * <li>Force the data to the storage device as configured.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class ChannelFileWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+
+	@Test
+	public void testBufferedWrites() throws IOException {
+		File file = folder.newFile();
+		ChannelFileWriter writer = new ChannelFileWriter(file.getPath(), 4096, ChannelFileWriter.SYNC_ON_CLOSE);
+		StringBuilder expected = new StringBuilder();
+
+		for(int rowI = 0; rowI < 1000; rowI++) { //Multi-byte characters and surrogate pairs across buffers
+			String row = rowI + ",Böhlen (Leipzig),莱比锡,🚆" + System.lineSeparator();
+			if(rowI % 2 == 0)
+				writer.write(row);
+			else
+				writer.getBuffer().append(row);
+			expected.append(row);
+		}
+		assertTrue(writer.getWrites() < 20); //Batched writes
+		writer.close();
+
+		assertEquals(expected.toString(), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+		assertEquals(1, writer.getSyncs());
+	}
+
+
+	@Test
+	public void testSyncInterval() throws IOException {
+		File file = folder.newFile();
+		ChannelFileWriter writer = new ChannelFileWriter(file.getPath(), 1024, 4096);
+		ChannelFileWriter neverSynced = new ChannelFileWriter(folder.newFile().getPath(), 1024, ChannelFileWriter.SYNC_NEVER);
+
+		for(int rowI = 0; rowI < 1000; rowI++) {
+			writer.write("0123456789");
+			neverSynced.write("0123456789");
+		}
+		writer.close();
+		neverSynced.close();
+
+		assertEquals(10000, file.length());
+		assertEquals(3, writer.getSyncs()); //Every 4KB and on close
+		assertEquals(0, neverSynced.getSyncs());
+	}
+
+}
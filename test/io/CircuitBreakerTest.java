@@ -0,0 +1,121 @@
+/**
+ * Test class created following the TDD process.
+ */
+package io;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * Tests the CircuitBreaker class.
+ * The class responsibility is to fail requests fast while an HTTP service is failing.
+ * <p>
+ * The functionality of CircuitBreaker should be:
+ * <ul>
+ * <li>Open once the rate of failures of the last requests reaches a threshold.
+ * <li>Fail requests without sending them while open, telling when to retry them.
+ * <li>Probe the service after a while, closing if it recovered.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class CircuitBreakerTest {
+
+	private final MockWebServer server = new MockWebServer();
+	private CircuitBreaker breaker;
+	private HttpReader reader;
+
+
+	@Before
+	public void setUp() throws Exception {
+		server.start();
+		breaker = new CircuitBreaker(0.5, 4, 200);
+		reader = new HttpReader(breaker.configure(new OkHttpClient.Builder()).build(),
+				server.url("/suggest").toString());
+	}
+
+
+	@After
+	public void tearDown() throws Exception {
+		server.shutdown();
+	}
+
+
+	@Test
+	public void testOpensAndRecovers() throws Exception {
+		server.enqueue(new MockResponse().setBody("[]"));
+		server.enqueue(new MockResponse().setBody("[]"));
+		server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_UNAVAILABLE));
+		server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_UNAVAILABLE));
+		server.enqueue(new MockResponse().setBody("[]")); //The probe
+
+		assertEquals("[]", reader.read());
+		assertEquals("[]", reader.read());
+		readFailing();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState()); //Under the threshold
+		readFailing();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		IOException rejection = readFailing(); //Not sent
+		assertTrue(rejection instanceof CircuitOpenException);
+		assertTrue(((CircuitOpenException) rejection).getRetryAfter() > 0);
+		assertTrue(((CircuitOpenException) rejection).getRetryAfter() <= 200);
+		assertEquals(4, server.getRequestCount());
+		assertEquals(1, breaker.getRejected());
+
+		Thread.sleep(250);
+		assertEquals("[]", reader.read());
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertEquals(5, server.getRequestCount());
+	}
+
+
+	@Test
+	public void testFailedProbeReopens() throws Exception {
+		for(int requestI = 0; requestI < 3; requestI++)
+			server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_BAD_GATEWAY));
+
+		readFailing();
+		readFailing();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		Thread.sleep(250);
+		assertFalse(readFailing() instanceof CircuitOpenException); //The probe fails
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertTrue(readFailing() instanceof CircuitOpenException); //Not sent
+		assertEquals(3, server.getRequestCount());
+	}
+
+
+	@Test
+	public void testClientErrorsDontOpen() throws Exception {
+		for(int requestI = 0; requestI < 4; requestI++)
+			server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_FOUND));
+
+		for(int requestI = 0; requestI < 4; requestI++)
+			readFailing();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+
+	private IOException readFailing() {
+		try {
+			reader.read();
+			fail("Failure expected");
+			return null;
+		} catch (IOException e) {
+			return e;
+		}
+	}
+
+}
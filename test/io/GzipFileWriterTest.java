@@ -0,0 +1,96 @@
+/**
+ * Test class created following the TDD process.
+ */
+package io;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the GzipFileWriter class.
+ * The class responsibility is to write compressed data to a local
+ * file compressing blocks of it in parallel.
+ * <p>
+ * The functionality of GzipFileWriter should be:
+ * <ul>
+ * <li>Write a standard gzip file with the data appended or written.
+ * <li>Compress each block as an independent gzip member.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class GzipFileWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+
+	@Test
+	public void testMultiMemberGzip() throws IOException {
+		File file = folder.newFile();
+		GzipFileWriter writer = new GzipFileWriter(file.getPath(), 4096, 9, 4);
+		StringBuilder expected = new StringBuilder();
+
+		for(int rowI = 0; rowI < 5000; rowI++) { //Multi-byte characters and surrogate pairs across blocks
+			String row = rowI + ",Böhlen (Leipzig),location,莱比锡,🚆" + System.lineSeparator();
+			if(rowI % 2 == 0)
+				writer.write(row);
+			else
+				writer.getBuffer().append(row);
+			expected.append(row);
+		}
+		writer.close();
+
+		assertEquals(expected.toString(), new String(gunzip(file), StandardCharsets.UTF_8));
+		assertTrue(countMembers(Files.readAllBytes(file.toPath())) > 10); //One member per block
+		assertTrue(writer.getCompressionRatio() > 2);
+	}
+
+
+	@Test
+	public void testEmptyFile() throws IOException {
+		File file = folder.newFile();
+		GzipFileWriter writer = new GzipFileWriter(file.getPath(), 4096, 1, 1);
+
+		writer.close();
+
+		assertTrue(file.length() > 0); //A valid gzip file without data
+		assertEquals(0, gunzip(file).length);
+	}
+
+
+	private static byte[] gunzip(File file) throws IOException {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		byte[] chunk = new byte[8192];
+		int read;
+
+		try(InputStream in = new GZIPInputStream(new FileInputStream(file))) { //Reads every member
+			while((read = in.read(chunk)) > 0)
+				data.write(chunk, 0, read);
+		}
+		return data.toByteArray();
+	}
+
+
+	private static int countMembers(byte[] gzip) {
+		int members = 0;
+
+		for(int byteI = 0; byteI + 2 < gzip.length; byteI++) //Magic number and deflate method
+			if(gzip[byteI] == (byte) 0x1f && gzip[byteI + 1] == (byte) 0x8b && gzip[byteI + 2] == 8)
+				members++;
+		return members;
+	}
+
+}
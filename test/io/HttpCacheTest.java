@@ -0,0 +1,92 @@
+/**
+ * Test class created following the TDD process.
+ */
+package io;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+
+/**
+ * Tests the HttpCache class.
+ * The class responsibility is to keep HTTP responses to avoid
+ * downloading data that did not change.
+ * <p>
+ * The functionality of HttpCache should be:
+ * <ul>
+ * <li>Serve fresh responses without querying the service.
+ * <li>Revalidate stale responses with conditional requests.
+ * <li>Report the hits and misses.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class HttpCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final MockWebServer server = new MockWebServer();
+	private final String body = "[{\"_id\":376809,\"name\":\"Leipzig\"}]";
+	private HttpCache cache;
+	private OkHttpClient client;
+
+
+	@Before
+	public void setUp() throws Exception {
+		server.start();
+		cache = new HttpCache(folder.newFolder(), 1024 * 1024, 16, 0);
+		client = cache.configure(new OkHttpClient.Builder()).build();
+	}
+
+
+	@After
+	public void tearDown() throws Exception {
+		cache.close();
+		server.shutdown();
+	}
+
+
+	@Test
+	public void testFreshResponse() throws IOException {
+		server.enqueue(new MockResponse()
+				.addHeader("Cache-Control", "max-age=60")
+				.setBody(body));
+
+		assertEquals(body, new HttpReader(client, server.url("/leipzig").toString()).read());
+		assertEquals(body, new HttpReader(client, server.url("/leipzig").toString()).read());
+
+		assertEquals(1, server.getRequestCount()); //Second response served by the cache
+		assertTrue(cache.getStats().contains("1 memory hits"));
+	}
+
+
+	@Test
+	public void testConditionalRevalidation() throws IOException, InterruptedException {
+		server.enqueue(new MockResponse()
+				.addHeader("Cache-Control", "no-cache")
+				.addHeader("ETag", "\"v1\"")
+				.setBody(body));
+		server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_MODIFIED));
+
+		assertEquals(body, new HttpReader(client, server.url("/leipzig").toString()).read());
+		assertEquals(body, new HttpReader(client, server.url("/leipzig").toString()).read()); //Body from the cache
+
+		server.takeRequest();
+		assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match")); //Conditional request
+		assertTrue(cache.getStats().contains("(1 revalidated), 1 misses"));
+	}
+
+}
@@ -4,11 +4,14 @@
 package io;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Before;
@@ -27,6 +30,7 @@ import okhttp3.mockwebserver.MockWebServer;
  * <ul>
  * <li>Carry out GET requests appropriately.
  * <li>Give access to the response body as a String.
+ * <li>Hand out the response body asynchronously.
  * </ul>
  * @author Andres Arturo Sanchez Dorantes
  *
@@ -74,6 +78,23 @@ public class HttpReaderTest {
 	}
 	
 	
+	@Test
+	public void testAsynchronousResponse() throws Exception {
+		server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_OK).setBody("[]"));
+		server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_UNAVAILABLE));
+		
+		assertEquals("[]", reader.readAsync().get(5, TimeUnit.SECONDS));
+		assertFalse(reader.isDataLeft());
+		try {
+			reader.readAsync().get(5, TimeUnit.SECONDS);
+			fail("HTTP status code not checked");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+			assertTrue(reader.isDataLeft()); //Transient error, worth reading again
+		}
+	}
+	
+	
 	@Test
 	public void testBadResponse() throws IOException {
 		MockResponse serverResponse;
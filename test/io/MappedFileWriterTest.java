@@ -0,0 +1,72 @@
+/**
+ * Test class created following the TDD process.
+ */
+package io;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the MappedFileWriter class.
+ * The class responsibility is to write data to a local file
+ * through memory-mapped chunks.
+ * <p>
+ * The functionality of MappedFileWriter should be:
+ * <ul>
+ * <li>Write the data appended or written as UTF-8.
+ * <li>Map new chunks of the file as it grows.
+ * <li>Leave the file with the exact size of the data.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class MappedFileWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+
+	@Test
+	public void testChunkedWrites() throws IOException {
+		File file = folder.newFile();
+		MappedFileWriter writer = new MappedFileWriter(file.getPath(), 4096, false);
+		StringBuilder expected = new StringBuilder();
+
+		for(int rowI = 0; rowI < 1000; rowI++) { //Multi-byte characters and surrogate pairs across chunks
+			String row = rowI + ",Böhlen (Leipzig),莱比锡,🚆" + System.lineSeparator();
+			if(rowI % 2 == 0)
+				writer.write(row);
+			else
+				writer.getBuffer().append(row);
+			expected.append(row);
+		}
+		writer.close();
+
+		byte[] written = Files.readAllBytes(file.toPath());
+		assertEquals(expected.toString().getBytes(StandardCharsets.UTF_8).length, written.length); //Truncated
+		assertEquals(expected.toString(), new String(written, StandardCharsets.UTF_8));
+		assertTrue(writer.getChunks() > 5); //Grown chunk by chunk
+	}
+
+
+	@Test
+	public void testEmptyFile() throws IOException {
+		File file = folder.newFile();
+		MappedFileWriter writer = new MappedFileWriter(file.getPath(), 4096, true);
+
+		writer.write("");
+		writer.close();
+
+		assertEquals(0, file.length());
+		assertEquals(1, writer.getChunks());
+	}
+
+}
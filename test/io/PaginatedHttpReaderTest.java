@@ -0,0 +1,189 @@
+/**
+ * Test class created following the TDD process.
+ */
+package io;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+
+/**
+ * Tests the PaginatedHttpReader class.
+ * The class responsibility is to read the pages of a HTTP service
+ * requesting several of them concurrently.
+ * <p>
+ * The functionality of PaginatedHttpReader should be:
+ * <ul>
+ * <li>Request consecutive pages by offset and limit.
+ * <li>Keep a window of pages requested ahead of time.
+ * <li>Give access to the pages in order and stop at the first empty or short one.
+ * <li>Stop if the service ignores the pagination and repeats the pages.
+ * <li>Wait for room in a limiter before requesting the pages.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class PaginatedHttpReaderTest {
+
+	private final MockWebServer server = new MockWebServer();
+	private final String serviceURL = "/api/v2/position/suggest/en/leipzig";
+	private final int pages = 5;
+	private final int pageSize = 2;
+
+
+	@Before
+	public void setUp() throws Exception {
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				HttpUrl url = server.url(request.getPath());
+				int offset = Integer.parseInt(url.queryParameter("offset"));
+				int limit = Integer.parseInt(url.queryParameter("limit"));
+
+				if(offset / limit >= pages)
+					return new MockResponse().setBody("[]");
+				return new MockResponse()
+						.setResponseCode(HttpURLConnection.HTTP_OK)
+						.setBodyDelay(pages - offset / limit, TimeUnit.MILLISECONDS) //Later pages arrive first
+						.setBody(page(offset / limit, limit));
+			}
+		});
+		server.start();
+	}
+
+
+	@After
+	public void tearDown() throws Exception {
+		server.shutdown();
+	}
+
+
+	@Test
+	public void testPagination() throws IOException {
+		PaginatedHttpReader reader = new PaginatedHttpReader(server.url(serviceURL).toString(), pageSize, 3);
+
+		for(int pageI = 0; pageI < pages; pageI++) {
+			assertTrue(reader.isDataLeft());
+			assertEquals(page(pageI, pageSize), reader.read()); //Pages handed out in order
+		}
+
+		assertTrue(reader.isDataLeft()); //Unknown end until an empty page is read
+		assertEquals("[]", reader.read());
+		assertFalse(reader.isDataLeft());
+	}
+
+
+	@Test
+	public void testPrefetch() throws IOException, InterruptedException {
+		PaginatedHttpReader reader = new PaginatedHttpReader(server.url(serviceURL).toString(), pageSize, 3);
+
+		reader.read();
+		for(int requestI = 0; requestI < 3; requestI++) //The whole window requested on the first read
+			assertNotNull(server.takeRequest(1, TimeUnit.SECONDS));
+	}
+
+
+	@Test
+	public void testLimitedPagination() throws IOException, InterruptedException {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1, 1000);
+		PaginatedHttpReader reader = new PaginatedHttpReader(limiter.configure(new OkHttpClient.Builder()).build(),
+				server.url(serviceURL).toString(), "offset", "limit", pageSize, 3);
+
+		reader.setLimiter(limiter);
+		for(int pageI = 0; pageI < pages; pageI++)
+			assertEquals(page(pageI, pageSize), reader.read()); //One request at a time
+		assertEquals("[]", reader.read());
+		assertFalse(reader.isDataLeft());
+		for(int waitI = 0; waitI < 100 && limiter.getInFlight() > 0; waitI++)
+			Thread.sleep(10);
+		assertEquals(0, limiter.getInFlight()); //The pages past the end dropped or cancelled
+	}
+
+
+	@Test
+	public void testShortLastPage() throws IOException {
+		PaginatedHttpReader reader = new PaginatedHttpReader(server.url(serviceURL).toString(), pageSize, 1);
+
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				int pageI = Integer.parseInt(server.url(request.getPath()).queryParameter("offset")) / pageSize;
+				return new MockResponse().setBody(page(pageI, pageI < 2 ? pageSize : 1));
+			}
+		});
+
+		assertEquals(page(0, pageSize), reader.read());
+		assertEquals(page(1, pageSize), reader.read());
+		assertEquals(page(2, 1), reader.read());
+		assertFalse(reader.isDataLeft()); //Without asking for an empty page
+		assertEquals(3, server.getRequestCount());
+	}
+
+
+	@Test
+	public void testPaginationIgnored() throws IOException {
+		PaginatedHttpReader reader = new PaginatedHttpReader(server.url(serviceURL).toString(), pageSize, 3);
+
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				return new MockResponse().setBody(page(0, 5)); //The whole data every time
+			}
+		});
+
+		assertEquals(page(0, 5), reader.read());
+		assertTrue(reader.isDataLeft());
+		assertEquals("[]", reader.read()); //Not handed out twice
+		assertFalse(reader.isDataLeft());
+	}
+
+
+	@Test
+	public void testBadResponse() {
+		PaginatedHttpReader reader = new PaginatedHttpReader(server.url(serviceURL).toString(), pageSize, 3);
+
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				return new MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_FOUND);
+			}
+		});
+
+		try {
+			reader.read();
+			fail("HTTP status code not checked");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("error status code"));
+		}
+		assertFalse(reader.isDataLeft());
+	}
+
+
+
+	/**
+	 * @return The body of a page with the given number of objects, e.g. "[{"page":1,"object":0}]".
+	 */
+	private static String page(int pageI, int objects) {
+		StringBuilder body = new StringBuilder("[");
+
+		for(int objectI = 0; objectI < objects; objectI++)
+			body.append(objectI == 0 ? "" : ",").append("{\"page\":").append(pageI)
+					.append(",\"object\":").append(objectI).append('}');
+		return body.append(']').toString();
+	}
+
+}
@@ -5,6 +5,7 @@ package parsers;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import org.junit.Before;
@@ -71,5 +72,17 @@ public class CSVMapParserTest {
 				+ "primitives.boolean,primitives.floating,null")); //Titles well added
 		assertTrue(parsedStr.contains(String.format(",null%ntest string,"))); //Line breaks (rows)
 	}
+	
+	
+	@Test
+	public void testMapsToBuffer() throws IOException {
+		StringBuilder buffer = new StringBuilder("previous data,");
+		
+		csv.firstParsing(Arrays.asList(map,map), buffer);
+		csv.parseMaps(Arrays.asList(map), buffer);
+		
+		assertEquals("previous data," + csv.firstParsing(Arrays.asList(map,map)) //Same as the String parsing
+				+ csv.parseMaps(Arrays.asList(map)), buffer.toString());
+	}
 
 }
@@ -0,0 +1,140 @@
+/**
+ * Test class created following the TDD process.
+ */
+package parsers;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests the ColumnarMapParser and ColumnarReader classes.
+ * The classes responsibility is to write flat Maps into a compact
+ * columnar binary file and to read them back.
+ * <p>
+ * The functionality of ColumnarMapParser should be:
+ * <ul>
+ * <li>Write every row, split in row groups, readable back unchanged.
+ * <li>Encode each column by the type of its values.
+ * <li>Index the columns in a footer so they can be read one by one.
+ * <li>Write files much smaller than the CSV of the same data.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class ColumnarMapParserTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private List<Map<String,Object>> maps;
+	private File file;
+
+
+	@Before
+	public void setUp() throws Exception {
+		String[] types = {"location", "airport", "station"};
+
+		maps = new ArrayList<>();
+		for(int mapI = 0; mapI < 2500; mapI++) {
+			Map<String,Object> map = new LinkedHashMap<>();
+			map.put("_id", 376000 + mapI);
+			map.put("name", "City " + mapI);
+			map.put("type", types[mapI % types.length]);
+			map.put("geo_position.latitude", mapI % 10 == 0 ? null : (5133962 + mapI * 37) / 1e5);
+			map.put("geo_position.longitude", (1237129 - mapI * 53) / 1e5);
+			map.put("core_country", mapI % 2 == 0);
+			maps.add(map);
+		}
+		file = folder.newFile("cities.col");
+	}
+
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		write(new ColumnarMapParser(1000), maps.subList(0, 700), maps.subList(700, maps.size()));
+
+		try(ColumnarReader reader = new ColumnarReader(file.toPath())) {
+			assertEquals(Arrays.asList("_id", "name", "type", "geo_position.latitude",
+					"geo_position.longitude", "core_country"), reader.getColumns());
+			assertEquals(2500, reader.getRowCount());
+			assertEquals(3, reader.getRowGroupCount()); //Last group incomplete
+			assertEquals(maps, reader.readAll());
+		}
+	}
+
+
+	@Test
+	public void testColumnTypes() throws IOException {
+		Map<String,Object> big = new LinkedHashMap<>(maps.get(0));
+		big.put("_id", 1L << 40);
+		maps.set(1, big);
+		write(new ColumnarMapParser(), maps);
+
+		try(ColumnarReader reader = new ColumnarReader(file.toPath())) {
+			assertEquals(Long.valueOf(1L << 40), reader.readColumn("_id").get(1)); //Longs when needed
+			assertEquals(Long.valueOf(376002), reader.readColumn("_id").get(2));
+			assertNull(reader.readColumn("geo_position.latitude").get(0));
+			assertEquals(51.34036, reader.readColumn("geo_position.latitude").get(2));
+			assertEquals("station", reader.readColumn("type").get(2));
+			assertEquals(true, reader.readColumn("core_country").get(0));
+			assertEquals(false, reader.readColumn("core_country").get(3));
+		}
+	}
+
+
+	@Test
+	public void testEmptyFile() throws IOException {
+		write(new ColumnarMapParser());
+
+		try(ColumnarReader reader = new ColumnarReader(file.toPath())) {
+			assertTrue(reader.getColumns().isEmpty());
+			assertEquals(0, reader.getRowCount());
+		}
+	}
+
+
+	@Test
+	public void testSize() throws IOException {
+		CSVMapParser csv = new CSVMapParser(",");
+		write(new ColumnarMapParser(), maps);
+
+		assertTrue(Files.size(file.toPath()) * 2 < csv.firstParsing(maps).length());
+	}
+
+
+	@Test(expected=IOException.class)
+	public void testNotColumnar() throws IOException {
+		Files.write(file.toPath(), "_id,name\n376809,Leipzig\n".getBytes());
+		new ColumnarReader(file.toPath());
+	}
+
+
+	@SafeVarargs
+	private final void write(ColumnarMapParser parser, List<Map<String,Object>>... pages) throws IOException {
+		try(OutputStream out = new FileOutputStream(file)) {
+			for(int pageI = 0; pageI < pages.length; pageI++)
+				if(pageI == 0)
+					parser.firstParsing(pages[pageI], out);
+				else
+					parser.parseMaps(pages[pageI], out);
+			parser.writeEndings(out);
+		}
+	}
+
+}
@@ -0,0 +1,163 @@
+/**
+ * Test class created following the TDD process.
+ */
+package parsers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import records.Record;
+import records.Schema;
+import transformations.AttributesFilter;
+
+/**
+ * Tests the JSONStreamParser class.
+ * The class responsibility is to interpret a stream of bytes as JSON
+ * to parse it incrementally to flat Maps representing nested objects
+ * by '.'-separated key hierarchies.
+ * <p>
+ * The functionality of JSONStreamParser should be:
+ * <ul>
+ * <li>Parse the same Maps as JSONStringParser does.
+ * <li>Emit each Map as soon as its object has been read.
+ * <li>Reject non-compliant JSON data.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class JSONStreamParserTest {
+
+	private static final String SUGGESTIONS = "[{\"_id\":376809,\"key\":null,\"name\":\"Leipzig\",\"type\":\"location\","
+			+ "\"geo_position\":{\"latitude\":51.33962,\"longitude\":12.37129},\"names\":{\"pt\":\"L\\u00edpsia\"},"
+			+ "\"alternativeNames\":{\"pl\":[\"Saksonia - Lipsk\"]}},"
+			+ "{\"_id\":425121,\"name\":\"Böhlen (Leipzig)\",\"geo_position\":{\"latitude\":51.20061,\"longitude\":12.38622},\"names\":{}},"
+			+ "{\"_id\":314829,\"name\":\"Leipzig\",\"geo_position\":{\"latitude\":51.41974,\"longitude\":12.22014},\"alternativeNames\":{}}]";
+
+	private JSONStreamParser parser;
+
+
+	@Before
+	public void setUp() throws Exception {
+		parser = new JSONStreamParser();
+	}
+
+
+	@Test
+	public void testStringToJSONParsing() throws ParseException {
+		List<Map<String, Object>> mappedJSONs;
+		Map<String, Object> mappedJSON;
+
+		mappedJSONs = parser.parseString("{\"int\":379,\"null\":null,\"string\":\"string\","
+				                       + "\"bool\":true,\"float\":3.1415,\"long\":12345678901}");
+		assertEquals(1, mappedJSONs.size());
+
+		mappedJSON = mappedJSONs.get(0);
+		assertEquals(379, mappedJSON.get("int")); //Same Java types as JSONStringParser
+		assertTrue(mappedJSON.containsKey("null"));
+		assertNull(mappedJSON.get("null"));
+		assertEquals("string", mappedJSON.get("string"));
+		assertTrue((Boolean) mappedJSON.get("bool"));
+		assertEquals(3.1415, mappedJSON.get("float"));
+		assertEquals(12345678901L, mappedJSON.get("long"));
+
+		assertTrue(parser.parseString("").isEmpty()); //No data to parse
+
+		try {
+			parser.parseString("{non-compliant json string here}"); //Test correct JSON parsing
+			fail("Non-compliant JSON parsed");
+		} catch(ParseException e) {
+			assertEquals("Error parsing the raw JSON string", e.getMessage());
+		}
+	}
+
+
+	@Test
+	public void testJSONToMapParsing() throws ParseException {
+		List<Map<String, Object>> mappedJSONs = parser.parseString(SUGGESTIONS);
+
+		assertEquals(3, mappedJSONs.size());
+		assertEquals(new JSONStringParser().parseString(SUGGESTIONS), mappedJSONs); //Same result as the non-streamed parsing
+
+		assertEquals(12.22014, mappedJSONs.get(2).get("geo_position.longitude")); //One level of objects nesting
+		assertEquals("Saksonia - Lipsk", mappedJSONs.get(0).get("alternativeNames.pl.0")); //Object and array nesting
+		assertEquals("Lípsia", mappedJSONs.get(0).get("names.pt")); //Unicode escapes
+		assertEquals("Böhlen (Leipzig)", mappedJSONs.get(1).get("name")); //UTF-8 decoding
+	}
+
+
+	@Test
+	public void testRecordParsing() throws ParseException {
+		Schema schema = new Schema("_id", "geo_position.latitude", "type");
+		List<Map<String, Object>> records = new JSONStreamParser(schema).parseString(SUGGESTIONS);
+
+		assertEquals(3, records.size());
+		assertTrue(records.get(0) instanceof Record);
+		assertEquals(3, records.get(0).size()); //Attributes out of the Schema dropped
+		assertEquals(51.20061, records.get(1).get("geo_position.latitude"));
+		assertEquals("location", records.get(0).get("type"));
+		assertNull(records.get(1).get("type"));
+	}
+
+
+	@Test
+	public void testProjection() throws ParseException {
+		Schema schema = new Schema("alternativeNames.pl.0", "geo_position.longitude", "names", "_id");
+		AttributesFilter filter = new AttributesFilter(schema.getColumns());
+		List<Map<String, Object>> expected = filter.transformMaps(parser.parseString(SUGGESTIONS));
+
+		assertEquals(expected, new JSONStreamParser(schema).parseString(SUGGESTIONS)); //Skipped subtrees don't change the result
+		assertEquals(expected, new JSONStringParser(schema).parseString(SUGGESTIONS));
+		assertNull(expected.get(0).get("names")); //Objects are not values
+
+		try {
+			new JSONStreamParser(schema).parseString("[{\"skipped\":{\"a\":[1,2]}"); //Skipped data still checked
+			fail("Non-compliant JSON parsed");
+		} catch(ParseException e) {
+			assertEquals("Error parsing the raw JSON string", e.getMessage());
+		}
+	}
+
+
+	@Test
+	public void testIncrementalParsing() throws ParseException, IOException {
+		byte[] data = SUGGESTIONS.getBytes(StandardCharsets.UTF_8);
+		int firstObjectEnd = SUGGESTIONS.indexOf("},{") + 2;
+		int[] bytesRead = {0};
+		List<Integer> bytesReadPerMap = new ArrayList<>();
+
+		InputStream slowStream = new ByteArrayInputStream(data) { //Delivers the data one byte at a time
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				int read = super.read(b, off, Math.min(len, 1));
+				bytesRead[0] += Math.max(read, 0);
+				return read;
+			}
+			
+			@Override
+			public synchronized int available() {
+				return 0;
+			}
+		};
+
+		parser.parseStream(slowStream, map -> bytesReadPerMap.add(bytesRead[0]));
+
+		assertEquals(3, bytesReadPerMap.size());
+		assertTrue(bytesReadPerMap.get(0) < firstObjectEnd + 8); //First Map emitted before reading the rest
+		assertTrue(bytesReadPerMap.get(1) < data.length);
+	}
+
+}
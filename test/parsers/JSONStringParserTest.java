@@ -5,12 +5,19 @@ package parsers;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.text.ParseException;
 import java.util.List;
 import java.util.Map;
 
+import org.json.JSONArray;
+import org.json.JSONObject;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -35,6 +42,11 @@ import parsers.JSONStringParser;
  */
 public class JSONStringParserTest {
 	
+	private static final String SUGGESTION = "{\"_id\":376809,\"name\":\"Leipzig\",\"type\":\"location\","
+			+ "\"geo_position\":{\"latitude\":51.33962,\"longitude\":12.37129},"
+			+ "\"names\":{\"pt\":\"Lípsia\",\"it\":\"Lipsia\",\"pl\":\"Lipsk\"},"
+			+ "\"alternativeNames\":{\"it\":[\"Sassonia - Lipsia\"],\"pl\":[\"Saksonia - Lipsk\"]}}";
+	
 	private JSONStringParser parser;
 
 	@Before
@@ -79,5 +91,74 @@ public class JSONStringParserTest {
 		assertEquals(51.20061, mappedJSONs.get(1).get("geo_position.latitude")); //One level of objects nesting
 		assertEquals("Saksonia - Lipsk", mappedJSONs.get(0).get("alternativeNames.pl.0")); //One level object and array nesting
 	}
+	
+	
+	@Test
+	public void testInternedKeys() throws ParseException {
+		Map<String, Object> first = parser.parseString(SUGGESTION).get(0);
+		Map<String, Object> second = parser.parseString(SUGGESTION).get(0);
+		
+		assertEquals(first, second);
+		assertSame(keyOf(first, "geo_position.latitude"), keyOf(second, "geo_position.latitude")); //Same canonical key
+		assertSame(keyOf(first, "alternativeNames.pl.0"), keyOf(second, "alternativeNames.pl.0"));
+	}
+	
+	
+	@Test
+	public void testKeyAllocation() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		assumeTrue(threads instanceof com.sun.management.ThreadMXBean); //Only measurable in HotSpot-like JVMs
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		JSONStringParser saturated = new JSONStringParser(); //Builds every key again as without interning
+		JSONObject jObj = new JSONObject(SUGGESTION);
+		long built = 0;
+		long interned = 0;
+		
+		saturated.parseSingleJSON(new JSONArray(new int[KeyPath.MAX_INTERNED]));
+		for(int roundI = 0; roundI < 3; roundI++) { //Last round measured after warming up
+			long start = allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+			for(int objI = 0; objI < 10000; objI++)
+				saturated.parseSingleJSON(jObj);
+			long middle = allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+			for(int objI = 0; objI < 10000; objI++)
+				parser.parseSingleJSON(jObj);
+			long end = allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+			
+			built = (middle - start) / 10000;
+			interned = (end - middle) / 10000;
+		}
+		
+		assertTrue("Bytes per object: " + built + " building keys, " + interned + " interning keys",
+				interned < built);
+	}
+	
+	
+	@Test
+	public void testWideObjects() throws ParseException {
+		StringBuilder json = new StringBuilder("{\"array\":[");
+		Map<String, Object> map;
+		
+		for(int objI = 0; objI < KeyPath.MAX_INTERNED + 100; objI++) //More elements than interned keys
+			json.append(objI == 0 ? "" : ",").append(objI);
+		json.append("],\"object\":{");
+		for(int objI = 0; objI < 2000; objI++)
+			json.append(objI == 0 ? "" : ",").append("\"key").append(objI).append("\":").append(objI);
+		map = parser.parseSingleJSON(new JSONObject(json.append("}}").toString()));
+		
+		assertEquals(KeyPath.MAX_INTERNED + 100 + 2000, map.size());
+		assertEquals(0, map.get("array.0"));
+		assertEquals(KeyPath.MAX_INTERNED + 99, map.get("array." + (KeyPath.MAX_INTERNED + 99)));
+		assertEquals(1999, map.get("object.key1999"));
+		assertSame(keyOf(map, "array.5"), keyOf(parser.parseSingleJSON(new JSONObject("{\"array\":[0,1,2,3,4,5]}")),
+				"array.5"));
+	}
+	
+	
+	private static String keyOf(Map<String, Object> map, String key) {
+		for(String mapKey : map.keySet())
+			if(mapKey.equals(key))
+				return mapKey;
+		return null;
+	}
 
 }
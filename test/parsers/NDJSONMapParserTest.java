@@ -0,0 +1,97 @@
+/**
+ * Test class created following the TDD process.
+ */
+package parsers;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Tests the NDJSONMapParser class.
+ * The class responsibility is to parse flat Maps into JSON Lines,
+ * one JSON object per line.
+ * <p>
+ * The functionality of NDJSONMapParser should be:
+ * <ul>
+ * <li>Parse each Map into a flat JSON object per line, without titles.
+ * <li>Re-nest the flat keys into objects and arrays.
+ * <li>Keep flat the keys nested under a value, in any order.
+ * <li>Escape the strings as JSON.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class NDJSONMapParserTest {
+
+	private Map<String,Object> map;
+
+
+	@Before
+	public void setUp() throws Exception {
+		map = new LinkedHashMap<>();
+		map.put("_id", 376809);
+		map.put("name", "Leipzig \"Hbf\"\n");
+		map.put("geo_position.latitude", 51.33962);
+		map.put("geo_position.longitude", 12.37129);
+		map.put("names.0", "Leipzig");
+		map.put("names.1", "Lipsia");
+		map.put("core_country", null);
+	}
+
+
+	@Test
+	public void testFlatLines() throws IOException {
+		NDJSONMapParser ndjson = new NDJSONMapParser();
+		StringBuilder buffer = new StringBuilder();
+		String line = "{\"_id\":376809,\"name\":\"Leipzig \\\"Hbf\\\"\\n\",\"geo_position.latitude\":51.33962,"
+				+ "\"geo_position.longitude\":12.37129,\"names.0\":\"Leipzig\",\"names.1\":\"Lipsia\","
+				+ "\"core_country\":null}";
+
+		assertEquals(line, ndjson.parseMap(map));
+		assertEquals(line + "\n" + line + "\n", ndjson.firstParsing(Arrays.asList(map, map))); //No titles
+		ndjson.parseMaps(Arrays.asList(map), buffer);
+		assertEquals(line + "\n", buffer.toString());
+		assertEquals("", ndjson.getEndings());
+	}
+
+
+	@Test
+	public void testNestedLines() throws ParseException {
+		NDJSONMapParser ndjson = new NDJSONMapParser(true);
+		String line = ndjson.parseMap(map);
+
+		assertEquals("{\"_id\":376809,\"name\":\"Leipzig \\\"Hbf\\\"\\n\",\"geo_position\":{\"latitude\":51.33962,"
+				+ "\"longitude\":12.37129},\"names\":[\"Leipzig\",\"Lipsia\"],\"core_country\":null}", line);
+		assertEquals(map, new NDJSONParser().parseString(line).get(0)); //Flattened back the same
+	}
+
+
+
+	@Test
+	public void testConflictingKeys() throws ParseException {
+		NDJSONMapParser ndjson = new NDJSONMapParser(true);
+		Map<String,Object> nestedFirst = new LinkedHashMap<>();
+		Map<String,Object> valueFirst = new LinkedHashMap<>();
+
+		nestedFirst.put("a.b.c", 1);
+		nestedFirst.put("a.d", 2);
+		nestedFirst.put("a", 3);
+		valueFirst.put("a", 3);
+		valueFirst.put("a.b.c", 1);
+		valueFirst.put("a.d", 2);
+
+		assertEquals("{\"a.b.c\":1,\"a.d\":2,\"a\":3}", ndjson.parseMap(nestedFirst));
+		assertEquals("{\"a\":3,\"a.b.c\":1,\"a.d\":2}", ndjson.parseMap(valueFirst));
+		assertEquals(nestedFirst, new NDJSONParser().parseString(ndjson.parseMap(nestedFirst)).get(0));
+	}
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Test class created following the TDD process.
+ */
+package parsers;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import records.Schema;
+
+
+/**
+ * Tests the NDJSONParser class.
+ * The class responsibility is to parse JSON Lines, one JSON document
+ * per line, into flat Maps.
+ * <p>
+ * The functionality of NDJSONParser should be:
+ * <ul>
+ * <li>Parse every line into Maps in the order of the lines.
+ * <li>Parse big inputs in parallel keeping the order.
+ * <li>Parse streams line by line.
+ * <li>Report the line of invalid documents.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class NDJSONParserTest {
+
+	private NDJSONParser parser;
+	private ForkJoinPool pool;
+	private StringBuilder lines;
+
+
+	@Before
+	public void setUp() throws Exception {
+		parser = new NDJSONParser();
+		pool = new ForkJoinPool(4);
+		lines = new StringBuilder();
+		for(int lineI = 0; lineI < 1000; lineI++)
+			lines.append("{\"_id\":").append(lineI)
+				.append(",\"name\":\"City ").append(lineI)
+				.append("\",\"geo_position\":{\"latitude\":51.33962}}\n");
+	}
+
+
+	@After
+	public void tearDown() throws Exception {
+		pool.shutdown();
+	}
+
+
+	@Test
+	public void testParseLines() throws ParseException {
+		List<Map<String,Object>> maps = parser.parseString("{\"_id\":1,\"a\":{\"b\":true}}\r\n\n"
+				+ "[{\"_id\":2},{\"_id\":3}]\n{\"_id\":4}");
+
+		assertEquals(4, maps.size()); //Blank lines ignored, arrays split
+		assertEquals(true, maps.get(0).get("a.b"));
+		assertEquals(3, maps.get(2).get("_id"));
+		assertEquals(4, maps.get(3).get("_id")); //Last line without line break
+		assertTrue(parser.parseString("").isEmpty());
+	}
+
+
+	@Test
+	public void testParallelParsing() throws ParseException {
+		List<Map<String,Object>> sequential = parser.parseString(lines.toString());
+		List<Map<String,Object>> parallel;
+
+		parser.setParallelism(pool, 100);
+		parallel = parser.parseString(lines.toString());
+
+		assertEquals(1000, parallel.size());
+		assertEquals(sequential, parallel); //Same order
+		assertEquals("City 999", parallel.get(999).get("name"));
+	}
+
+
+	@Test
+	public void testStream() throws ParseException, IOException {
+		List<Map<String,Object>> maps = new ArrayList<>();
+		NDJSONParser projecting = new NDJSONParser(new JSONStreamParser(new Schema("_id", "geo_position.latitude")));
+
+		projecting.setParallelism(pool, 300); //Batches of 300 lines
+		projecting.parseStream(new ByteArrayInputStream(lines.toString().getBytes(StandardCharsets.UTF_8)), maps::add);
+
+		assertEquals(1000, maps.size());
+		assertEquals(500, maps.get(500).get("_id"));
+		assertEquals(51.33962, maps.get(500).get("geo_position.latitude"));
+		assertFalse(maps.get(500).containsKey("name"));
+	}
+
+
+	@Test
+	public void testInvalidLine() {
+		parser.setParallelism(pool, 100);
+		lines.insert(lines.indexOf("{\"_id\":700,"), "{\"_id\":}\n");
+
+		try {
+			parser.parseString(lines.toString());
+			fail("Invalid line parsed");
+		} catch (ParseException e) {
+			assertEquals(700, e.getErrorOffset()); //Zero-based line
+			assertTrue(e.getMessage().startsWith("Error parsing line 701"));
+		}
+	}
+
+}
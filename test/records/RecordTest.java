@@ -0,0 +1,82 @@
+/**
+ * Test class created following the TDD process.
+ */
+package records;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Record class.
+ * The class responsibility is to hold the values of a flat object
+ * in the columns of a compiled Schema.
+ * <p>
+ * The functionality of Record should be:
+ * <ul>
+ * <li>Give access to the values by column index and by attribute name.
+ * <li>Behave as a Map containing every attribute of its Schema in order.
+ * <li>Reject attributes out of its Schema.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class RecordTest {
+
+	private Schema schema;
+	private Record record;
+
+
+	@Before
+	public void setUp() throws Exception {
+		schema = new Schema("_id", "name", "geo_position.latitude", "name");
+		record = new Record(schema);
+		record.setValue(0, 376809);
+		record.put("geo_position.latitude", 51.33962);
+	}
+
+
+	@Test
+	public void testSchema() {
+		assertEquals(3, schema.size()); //Repeated attributes only once
+		assertEquals(Arrays.asList("_id", "name", "geo_position.latitude"), schema.getColumns());
+		assertEquals(2, schema.indexOf("geo_position.latitude"));
+		assertEquals(-1, schema.indexOf("type"));
+		assertEquals(new Schema("_id", "name", "geo_position.latitude"), schema);
+	}
+
+
+	@Test
+	public void testMapAdapter() {
+		Map<String, Object> expected = new HashMap<>();
+		expected.put("_id", 376809);
+		expected.put("name", null);
+		expected.put("geo_position.latitude", 51.33962);
+
+		assertEquals(376809, record.get("_id"));
+		assertEquals(51.33962, record.getValue(2));
+		assertTrue(record.containsKey("name")); //Every attribute of the Schema present
+		assertNull(record.get("name"));
+		assertFalse(record.containsKey("type"));
+		assertEquals(expected, record);
+
+		Iterator<String> keys = record.keySet().iterator(); //Schema order
+		assertEquals("_id", keys.next());
+		assertEquals("name", keys.next());
+		assertEquals("geo_position.latitude", keys.next());
+		assertFalse(keys.hasNext());
+	}
+
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testAttributeOutOfSchema() {
+		record.put("type", "location");
+	}
+
+}
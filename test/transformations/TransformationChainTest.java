@@ -0,0 +1,125 @@
+/**
+ * Test class created following the TDD process.
+ */
+package transformations;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import records.Record;
+
+/**
+ * Tests the TransformationChain class.
+ * The class responsibility is to apply several transformations
+ * to each Map in a single pass.
+ * <p>
+ * The functionality of TransformationChain should be:
+ * <ul>
+ * <li>Apply the steps in order producing the same result as applying them one by one.
+ * <li>Let the steps modify in place the Maps created by previous steps.
+ * <li>Never modify the original Maps.
+ * <li>Report what each step did to every list to a listener.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class TransformationChainTest {
+
+	private Map<String, Object> originalObj;
+
+
+	@Before
+	public void setUp() throws Exception {
+		originalObj = new HashMap<String, Object>();
+		originalObj.put("attr1", "val1");
+		originalObj.put("attr2.attr2_1", "val2");
+		originalObj.put("attr2.attr2_2", "val3");
+		originalObj.put("attr3.attr3_1.0", "val5");
+	}
+
+
+	@Test
+	public void testFilterAndSort() {
+		Map<String, Object> transformed = new AttributesFilterAndSort("attr2.attr2_2", "attr1", "attr4")
+				.transformMap(originalObj);
+
+		assertTrue(transformed instanceof Record); //Only the filtered copy is created
+		Iterator<String> keys = transformed.keySet().iterator();
+		assertEquals("attr2.attr2_2", keys.next());
+		assertEquals("attr1", keys.next());
+		assertEquals("attr4", keys.next());
+		assertFalse(keys.hasNext());
+		assertEquals("val3", transformed.get("attr2.attr2_2"));
+		assertNull(transformed.get("attr4"));
+		assertEquals(4, originalObj.size()); //Original untouched
+	}
+
+
+	@Test
+	public void testOwnedMaps() {
+		Transformation copy = new Transformation() {
+			@Override
+			public Map<String, Object> transformMap(Map<String, Object> originalMap) {
+				return new HashMap<>(originalMap);
+			}
+		};
+		Transformation computed = new Transformation() {
+			@Override
+			public Map<String, Object> transformMap(Map<String, Object> originalMap) {
+				return transformOwnedMap(new HashMap<>(originalMap));
+			}
+
+			@Override
+			protected Map<String, Object> transformOwnedMap(Map<String, Object> ownedMap) {
+				ownedMap.put("attrs", ownedMap.size());
+				return ownedMap;
+			}
+		};
+		TransformationChain chain = new TransformationChain(computed, copy.andThen(computed));
+		Map<String, Object> transformed = chain.transformMap(originalObj);
+
+		assertEquals(Arrays.asList(computed, copy, computed), chain.getSteps()); //Nested chains flattened
+		assertEquals(5, transformed.get("attrs")); //Computed in the Map of the previous step
+		assertEquals(4, originalObj.size()); //Original untouched
+		assertNull(chain.getProjection());
+		assertNotNull(new AttributesFilterAndSort("attr1").getProjection());
+	}
+
+
+	@Test
+	public void testStepListener() {
+		TransformationChain chain = new AttributesFilterAndSort("attr2.attr2_2", "attr1");
+		List<String> steps = new ArrayList<>();
+		long[] records = new long[2];
+
+		chain.setParallelism(new ForkJoinPool(2), 10); //Steps timed by every thread of the pool as well
+		chain.setStepListener((step, recordsIn, recordsOut, nanos) -> {
+			steps.add(step.getClass().getSimpleName());
+			records[0] += recordsIn;
+			records[1] += recordsOut;
+			assertTrue(nanos > 0);
+		});
+		List<Map<String, Object>> transformed = chain.transformMaps(Collections.nCopies(100, originalObj));
+
+		assertEquals(Arrays.asList("AttributesFilter", "AttributesSort"), steps);
+		assertEquals(200, records[0]);
+		assertEquals(200, records[1]);
+		assertEquals("val3", transformed.get(99).get("attr2.attr2_2"));
+
+		chain.setStepListener(null);
+		chain.transformMaps(Collections.nCopies(100, originalObj));
+		assertEquals(2, steps.size());
+	}
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Test class created following the TDD process.
+ */
+package transformations;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the Transformation class.
+ * The class responsibility is to transform lists of Maps.
+ * <p>
+ * The functionality of Transformation should be:
+ * <ul>
+ * <li>Transform every Map of a list keeping their order.
+ * <li>Transform big lists in parallel and small lists sequentially.
+ * </ul>
+ * @author Andres Arturo Sanchez Dorantes
+ *
+ */
+public class TransformationTest {
+
+	private ForkJoinPool pool;
+	private Set<Thread> threads;
+	private Transformation transformation;
+
+
+	@Before
+	public void setUp() throws Exception {
+		pool = new ForkJoinPool(4);
+		threads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+		transformation = new Transformation() {
+			@Override
+			public Map<String, Object> transformMap(Map<String, Object> originalMap) {
+				Map<String, Object> transformedMap = new HashMap<>();
+				threads.add(Thread.currentThread());
+				transformedMap.put("double", (Integer) originalMap.get("value") * 2);
+				return transformedMap;
+			}
+		};
+		transformation.setParallelism(pool, 1000);
+	}
+
+
+	@After
+	public void tearDown() throws Exception {
+		pool.shutdown();
+	}
+
+
+	@Test
+	public void testParallelTransformation() {
+		List<Map<String, Object>> transformedMaps = transformation.transformMaps(createMaps(new LinkedList<>(), 100000));
+
+		assertEquals(100000, transformedMaps.size());
+		for(int mapI = 0; mapI < transformedMaps.size(); mapI++)
+			assertEquals(mapI * 2, transformedMaps.get(mapI).get("double")); //Order kept
+		assertFalse(threads.contains(Thread.currentThread())); //Transformed by the pool
+	}
+
+
+	@Test
+	public void testSequentialTransformation() {
+		List<Map<String, Object>> transformedMaps = transformation.transformMaps(createMaps(new ArrayList<>(), 999));
+
+		assertEquals(999, transformedMaps.size());
+		assertEquals(998 * 2, transformedMaps.get(998).get("double"));
+		assertEquals(Collections.singleton(Thread.currentThread()), threads); //Small lists not split
+	}
+
+
+	private static List<Map<String, Object>> createMaps(List<Map<String, Object>> maps, int size) {
+		for(int mapI = 0; mapI < size; mapI++)
+			maps.add(Collections.singletonMap("value", mapI));
+		return maps;
+	}
+
+}